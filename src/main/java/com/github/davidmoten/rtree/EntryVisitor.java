@@ -0,0 +1,25 @@
+package com.github.davidmoten.rtree;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Callback for {@link RTree#search(Rectangle, EntryVisitor)}.
+ * 
+ * @param <T>
+ *            type of value of entry in tree
+ * @param <S>
+ *            type of geometry of entry in tree
+ */
+public interface EntryVisitor<T, S extends Geometry> {
+
+    /**
+     * Called for each entry found by the search.
+     * 
+     * @param entry
+     *            matching entry
+     * @return true to continue the search, false to stop it
+     */
+    boolean visit(Entry<T, S> entry);
+
+}
@@ -1,7 +1,10 @@
 package com.github.davidmoten.rtree;
 
 import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
 import com.github.davidmoten.rtree.internal.FactoryDefault;
+import com.github.davidmoten.rtree.internal.FactoryPacked;
+import com.github.davidmoten.rtree.internal.FactoryPoints;
 
 public final class Factories {
 
@@ -12,4 +15,38 @@ public final class Factories {
     public static <T, S extends Geometry> Factory<T, S> defaultFactory() {
         return FactoryDefault.instance();
     }
+
+    /**
+     * Returns a factory whose nodes store the bounding rectangles of their
+     * children in primitive float arrays. Point and rectangle entries are not
+     * stored as objects but recreated when read, which greatly reduces the
+     * heap used by large trees and makes rectangle searches scan contiguous
+     * arrays. Entries returned by searches are new objects equal to (but not
+     * the same instances as) the entries added.
+     * 
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return packed node factory
+     */
+    public static <T, S extends Geometry> Factory<T, S> packedFactory() {
+        return FactoryPacked.instance();
+    }
+
+    /**
+     * Returns a factory for trees of {@link Point}s whose leaves store the
+     * point coordinates in primitive float arrays (non-leaves are as for
+     * {@link #packedFactory()}). Rectangle searches and nearest neighbour
+     * searches test the coordinates directly and only create entries for the
+     * results. Entries returned by searches are new objects equal to (but not
+     * the same instances as) the entries added.
+     * 
+     * @param <T>
+     *            value type
+     * @return point node factory
+     */
+    public static <T> Factory<T, Point> pointFactory() {
+        return FactoryPoints.instance();
+    }
 }
@@ -0,0 +1,50 @@
+package com.github.davidmoten.rtree;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+/**
+ * A {@link Serializer} that can also work with files directly. Use
+ * {@link SerializerHelper#write(Serializer, RTree, File)} and
+ * {@link SerializerHelper#read(Serializer, File, InternalStructure)} to write
+ * and read files with any serializer.
+ *
+ * @param <T>
+ *            the value type
+ * @param <S>
+ *            the geometry type
+ */
+public interface FileSerializer<T, S extends Geometry> extends Serializer<T, S> {
+
+    /**
+     * Writes the tree to a file, replacing any existing content.
+     * Implementations may write the file in pieces rather than building the
+     * serialized form in memory first.
+     * 
+     * @param tree
+     *            tree to write
+     * @param file
+     *            destination file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    void write(RTree<T, S> tree, File file) throws IOException;
+
+    /**
+     * Reads a tree written by {@link #write(RTree, java.io.OutputStream)} from
+     * a file. Implementations may memory map the file rather than copy it
+     * into the heap.
+     * 
+     * @param file
+     *            file containing the serialized tree
+     * @param structure
+     *            the internal structure of the tree returned
+     * @return the deserialized tree
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    RTree<T, S> read(File file, InternalStructure structure) throws IOException;
+
+}
@@ -0,0 +1,209 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rx.util.Pair;
+
+import rx.functions.Func2;
+
+/**
+ * Spatial join of two trees by synchronized traversal. Pairs of nodes (one
+ * from each tree) whose bounding rectangles intersect are held on a stack.
+ * Processing a pair considers only the children of each node that intersect
+ * the intersection of the two bounding rectangles and finds the intersecting
+ * child pairs with a plane sweep along x. Child node pairs are pushed on the
+ * stack and entry pairs satisfying the predicate are buffered for return. If
+ * the trees have different heights a leaf is paired with the children of the
+ * other node until leaves are reached on both sides.
+ *
+ * <p>
+ * See <a href="http://dl.acm.org/citation.cfm?id=170075">Brinkhoff, Kriegel
+ * and Seeger, Efficient Processing of Spatial Joins Using R-trees</a>.
+ *
+ * <p>
+ * Not thread-safe.
+ */
+final class JoinIterator<T, S extends Geometry, R, U extends Geometry>
+        implements Iterator<Pair<Entry<T, S>, Entry<R, U>>> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Func2<? super S, ? super U, Boolean> predicate;
+
+    // stack of node pairs to process held as parallel arrays
+    private Node<T, S>[] lefts;
+    private Node<R, U>[] rights;
+    private int size;
+
+    // matches found by the last processed pair
+    private final List<Pair<Entry<T, S>, Entry<R, U>>> results = new ArrayList<Pair<Entry<T, S>, Entry<R, U>>>();
+    private int resultIndex;
+
+    // reused for the candidate children of each processed pair
+    private final List<HasGeometry> leftItems = new ArrayList<HasGeometry>();
+    private final List<HasGeometry> rightItems = new ArrayList<HasGeometry>();
+
+    @SuppressWarnings("unchecked")
+    JoinIterator(Optional<? extends Node<T, S>> left, Optional<? extends Node<R, U>> right,
+            Func2<? super S, ? super U, Boolean> predicate) {
+        this.predicate = predicate;
+        this.lefts = (Node<T, S>[]) new Node<?, ?>[INITIAL_CAPACITY];
+        this.rights = (Node<R, U>[]) new Node<?, ?>[INITIAL_CAPACITY];
+        if (left.isPresent() && right.isPresent()
+                && left.get().geometry().mbr().intersects(right.get().geometry().mbr()))
+            push(left.get(), right.get());
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (resultIndex == results.size() && size > 0) {
+            results.clear();
+            resultIndex = 0;
+            size--;
+            Node<T, S> left = lefts[size];
+            Node<R, U> right = rights[size];
+            lefts[size] = null;
+            rights[size] = null;
+            process(left, right);
+        }
+        return resultIndex < results.size();
+    }
+
+    @Override
+    public Pair<Entry<T, S>, Entry<R, U>> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return results.get(resultIndex++);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("RTree is immutable");
+    }
+
+    private void process(Node<T, S> left, Node<R, U> right) {
+        Rectangle a = left.geometry().mbr();
+        Rectangle b = right.geometry().mbr();
+        // restrict the search space to the intersection of the two nodes
+        float x1 = Math.max(a.x1(), b.x1());
+        float y1 = Math.max(a.y1(), b.y1());
+        float x2 = Math.min(a.x2(), b.x2());
+        float y2 = Math.min(a.y2(), b.y2());
+        leftItems.clear();
+        rightItems.clear();
+        boolean leftIsLeaf = left instanceof Leaf;
+        boolean rightIsLeaf = right instanceof Leaf;
+        if (leftIsLeaf == rightIsLeaf) {
+            addItems(left, leftItems, x1, y1, x2, y2);
+            addItems(right, rightItems, x1, y1, x2, y2);
+        } else if (leftIsLeaf) {
+            leftItems.add(left);
+            addItems(right, rightItems, x1, y1, x2, y2);
+        } else {
+            addItems(left, leftItems, x1, y1, x2, y2);
+            rightItems.add(right);
+        }
+        sweep();
+    }
+
+    private static void addItems(Node<?, ?> node, List<HasGeometry> items, float x1, float y1,
+            float x2, float y2) {
+        int count = node.count();
+        if (node instanceof Leaf) {
+            Leaf<?, ?> leaf = (Leaf<?, ?>) node;
+            for (int i = 0; i < count; i++) {
+                Entry<?, ?> entry = leaf.entry(i);
+                if (intersects(entry.geometry().mbr(), x1, y1, x2, y2))
+                    items.add(entry);
+            }
+        } else {
+            NonLeaf<?, ?> nonLeaf = (NonLeaf<?, ?>) node;
+            for (int i = 0; i < count; i++) {
+                Node<?, ?> child = nonLeaf.child(i);
+                if (intersects(child.geometry().mbr(), x1, y1, x2, y2))
+                    items.add(child);
+            }
+        }
+    }
+
+    /**
+     * Calls {@link #matched(HasGeometry, HasGeometry)} for every pair of left
+     * and right items whose bounding rectangles intersect. Both lists are
+     * sorted by x1 and the item with the lowest x1 is compared with the items
+     * of the other list whose x1 falls within its x extent, then discarded.
+     */
+    private void sweep() {
+        if (leftItems.isEmpty() || rightItems.isEmpty())
+            return;
+        Collections.sort(leftItems, INCREASING_X1);
+        Collections.sort(rightItems, INCREASING_X1);
+        int i = 0;
+        int j = 0;
+        while (i < leftItems.size() && j < rightItems.size()) {
+            Rectangle a = leftItems.get(i).geometry().mbr();
+            Rectangle b = rightItems.get(j).geometry().mbr();
+            if (a.x1() <= b.x1()) {
+                for (int k = j; k < rightItems.size(); k++) {
+                    Rectangle r = rightItems.get(k).geometry().mbr();
+                    if (r.x1() > a.x2())
+                        break;
+                    else if (r.y1() <= a.y2() && a.y1() <= r.y2())
+                        matched(leftItems.get(i), rightItems.get(k));
+                }
+                i++;
+            } else {
+                for (int k = i; k < leftItems.size(); k++) {
+                    Rectangle r = leftItems.get(k).geometry().mbr();
+                    if (r.x1() > b.x2())
+                        break;
+                    else if (r.y1() <= b.y2() && b.y1() <= r.y2())
+                        matched(leftItems.get(k), rightItems.get(j));
+                }
+                j++;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void matched(HasGeometry left, HasGeometry right) {
+        if (left instanceof Entry) {
+            Entry<T, S> a = (Entry<T, S>) left;
+            Entry<R, U> b = (Entry<R, U>) right;
+            if (predicate.call(a.geometry(), b.geometry()))
+                results.add(Pair.create(a, b));
+        } else
+            push((Node<T, S>) left, (Node<R, U>) right);
+    }
+
+    private void push(Node<T, S> left, Node<R, U> right) {
+        if (size == lefts.length) {
+            lefts = Arrays.copyOf(lefts, size * 2);
+            rights = Arrays.copyOf(rights, size * 2);
+        }
+        lefts[size] = left;
+        rights[size] = right;
+        size++;
+    }
+
+    private static boolean intersects(Rectangle m, float x1, float y1, float x2, float y2) {
+        return m.x1() <= x2 && x1 <= m.x2() && m.y1() <= y2 && y1 <= m.y2();
+    }
+
+    private static final Comparator<HasGeometry> INCREASING_X1 = new Comparator<HasGeometry>() {
+        @Override
+        public int compare(HasGeometry g1, HasGeometry g2) {
+            return Float.compare(g1.geometry().mbr().x1(), g2.geometry().mbr().x1());
+        }
+    };
+
+}
@@ -0,0 +1,37 @@
+package com.github.davidmoten.rtree;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+/**
+ * The strategy used by {@link RTree.Builder#create(List)} to pack a known set
+ * of entries into nodes (bulk loading).
+ */
+public interface Loader {
+
+    /**
+     * Returns the root node of a tree containing all the given entries. Every
+     * leaf must be at the same depth and no node may have more than
+     * {@code capacity} children.
+     * 
+     * @param <T>
+     *            type of value of entry in tree
+     * @param <S>
+     *            type of geometry of entry in tree
+     * @param entries
+     *            entries to pack, never empty and must not be modified
+     * @param capacity
+     *            maximum number of children per created node
+     * @param context
+     *            tree context whose factory should create the nodes
+     * @param executor
+     *            executor that may be used to run packing tasks concurrently
+     * @return root node of the packed tree
+     */
+    <T, S extends Geometry> Node<T, S> load(List<Entry<T, S>> entries, int capacity,
+            Context<T, S> context, Optional<ExecutorService> executor);
+
+}
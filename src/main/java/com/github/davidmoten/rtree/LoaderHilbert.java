@@ -0,0 +1,27 @@
+package com.github.davidmoten.rtree;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HilbertCurve;
+import com.github.davidmoten.rtree.internal.PackingHelper;
+
+/**
+ * Packs entries in order of the Hilbert key of the centre of their minimum
+ * bounding rectangles (see {@link HilbertCurve}). The executor is not used.
+ * 
+ * <p>
+ * See <a href="http://www.vldb.org/conf/1994/P500.PDF">Kamel and Faloutsos,
+ * Hilbert R-tree: An improved R-tree using fractals</a>.
+ */
+public final class LoaderHilbert implements Loader {
+
+    @Override
+    public <T, S extends Geometry> Node<T, S> load(List<Entry<T, S>> entries, int capacity,
+            Context<T, S> context, Optional<ExecutorService> executor) {
+        return PackingHelper.packHilbert(entries, capacity, context);
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.github.davidmoten.rtree;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.PackingHelper;
+
+/**
+ * Packs entries top-down using the Overlap Minimizing Top-down algorithm. The
+ * height of the tree is the minimum possible for the capacity and the fan-out
+ * of each level is chosen so that the subtrees below it are as full as
+ * possible. The entries of each node are partitioned into a grid of
+ * non-overlapping slabs so sibling nodes, in particular the children of the
+ * root, overlap little. The executor is not used.
+ * 
+ * <p>
+ * See <a href="http://ceur-ws.org/Vol-74/files/FORUM_18.pdf">Lee and Lee, OMT:
+ * Overlap Minimizing Top-down Bulk Loading Algorithm for R-tree</a>.
+ */
+public final class LoaderOMT implements Loader {
+
+    @Override
+    public <T, S extends Geometry> Node<T, S> load(List<Entry<T, S>> entries, int capacity,
+            Context<T, S> context, Optional<ExecutorService> executor) {
+        return PackingHelper.packOMT(entries, capacity, context);
+    }
+
+}
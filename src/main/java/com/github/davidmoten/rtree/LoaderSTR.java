@@ -0,0 +1,27 @@
+package com.github.davidmoten.rtree;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.PackingHelper;
+
+/**
+ * Packs entries using the Sort-Tile-Recursive algorithm. If an executor is
+ * supplied then the sorting and tiling of large levels is run on it.
+ * 
+ * <p>
+ * See <a href= "http://www.dtic.mil/dtic/tr/fulltext/u2/a324493.pdf">
+ * Leutenegger, Lopez and Edgington, STR: A Simple and Efficient Algorithm for
+ * R-Tree Packing</a>.
+ */
+public final class LoaderSTR implements Loader {
+
+    @Override
+    public <T, S extends Geometry> Node<T, S> load(List<Entry<T, S>> entries, int capacity,
+            Context<T, S> context, Optional<ExecutorService> executor) {
+        return PackingHelper.packSTR(entries, capacity, context, executor);
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.internal.LeafPoints;
+
+/**
+ * Best-first traversal of a tree that returns its entries in ascending order
+ * of distance from a rectangle. Nodes and entries are held in a single priority
+ * queue keyed on their distance from the rectangle (for a node the distance to
+ * its minimum bounding rectangle, which is never more than the distance to
+ * anything below it). When the head of the queue is an entry no node still
+ * queued can contain a closer entry so the entry is returned. Only the nodes
+ * needed to produce the entries consumed are expanded. An entry is queued as
+ * its leaf and index so that leaves that recreate entries on demand (see
+ * {@link LeafPoints}) only do so for the entries returned.
+ *
+ * <p>
+ * See <a href="http://www.cs.umd.edu/~hjs/pubs/incnear2.pdf">Hjaltason and
+ * Samet, Distance Browsing in Spatial Databases</a>.
+ *
+ * <p>
+ * Not thread-safe.
+ */
+final class NearestIterator<T, S extends Geometry> implements Iterator<Entry<T, S>> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Rectangle r;
+
+    // binary min-heap of nodes and entries held as parallel arrays so that
+    // queueing an item does not allocate. An index of NODE means the item is
+    // a node to expand, otherwise the item is the leaf holding the entry at
+    // that index.
+    private Object[] items = new Object[INITIAL_CAPACITY];
+    private int[] indexes = new int[INITIAL_CAPACITY];
+    private double[] distances = new double[INITIAL_CAPACITY];
+    private int size;
+
+    private static final int NODE = -1;
+
+    NearestIterator(Optional<? extends Node<T, S>> root, Rectangle r) {
+        this.r = r;
+        if (root.isPresent())
+            offer(root.get(), NODE, 0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (size > 0 && indexes[0] == NODE) {
+            @SuppressWarnings("unchecked")
+            Node<T, S> node = (Node<T, S>) items[0];
+            poll();
+            expand(node);
+        }
+        return size > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Entry<T, S> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Leaf<T, S> leaf = (Leaf<T, S>) items[0];
+        int index = indexes[0];
+        poll();
+        return leaf.entry(index);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("RTree is immutable");
+    }
+
+    private void expand(Node<T, S> node) {
+        int count = node.count();
+        if (node instanceof Leaf) {
+            Leaf<T, S> leaf = (Leaf<T, S>) node;
+            if (leaf instanceof LeafPoints) {
+                LeafPoints<?> points = (LeafPoints<?>) leaf;
+                for (int i = 0; i < count; i++)
+                    offer(leaf, i, points.distance(i, r));
+            } else {
+                for (int i = 0; i < count; i++)
+                    offer(leaf, i, leaf.entry(i).geometry().distance(r));
+            }
+        } else {
+            NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+            for (int i = 0; i < count; i++) {
+                Node<T, S> child = nonLeaf.child(i);
+                offer(child, NODE, child.geometry().mbr().distance(r));
+            }
+        }
+    }
+
+    private void offer(Object item, int index, double distance) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+            indexes = Arrays.copyOf(indexes, size * 2);
+            distances = Arrays.copyOf(distances, size * 2);
+        }
+        // sift up
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (distances[parent] <= distance)
+                break;
+            items[i] = items[parent];
+            indexes[i] = indexes[parent];
+            distances[i] = distances[parent];
+            i = parent;
+        }
+        items[i] = item;
+        indexes[i] = index;
+        distances[i] = distance;
+    }
+
+    private void poll() {
+        size--;
+        Object item = items[size];
+        int index = indexes[size];
+        double distance = distances[size];
+        items[size] = null;
+        // sift down
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && distances[child + 1] < distances[child])
+                child++;
+            if (distance <= distances[child])
+                break;
+            items[i] = items[child];
+            indexes[i] = indexes[child];
+            distances[i] = distances[child];
+            i = child;
+        }
+        if (size > 0) {
+            items[i] = item;
+            indexes[i] = index;
+            distances[i] = distance;
+        }
+    }
+
+}
@@ -2,9 +2,9 @@ package com.github.davidmoten.rtree;
 
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.github.davidmoten.guavamini.Optional;
 import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
 import com.github.davidmoten.rtree.geometry.Geometry;
-import com.github.davidmoten.rtree.internal.util.ImmutableStack;
 import com.github.davidmoten.rx.util.BackpressureUtils;
 
 import rx.Observable.OnSubscribe;
@@ -33,7 +33,9 @@ final class OnSubscribeSearch<T, S extends Geometry> implements OnSubscribe<Entr
         private final Subscriber<? super Entry<T, S>> subscriber;
         private final Node<T, S> node;
         private final Func1<? super Geometry, Boolean> condition;
-        private volatile ImmutableStack<NodePosition<T, S>> stack;
+        // only accessed by the thread that moves requested from zero so
+        // visibility is ensured by the atomic operations on requested
+        private final SearchIterator<T, S> iterator;
         private final AtomicLong requested = new AtomicLong(0);
 
         SearchProducer(Node<T, S> node, Func1<? super Geometry, Boolean> condition,
@@ -41,7 +43,7 @@ final class OnSubscribeSearch<T, S extends Geometry> implements OnSubscribe<Entr
             this.node = node;
             this.condition = condition;
             this.subscriber = subscriber;
-            stack = ImmutableStack.create(new NodePosition<T, S>(node, 0));
+            this.iterator = new SearchIterator<T, S>(Optional.of(node), condition);
         }
 
         @Override
@@ -75,28 +77,26 @@ final class OnSubscribeSearch<T, S extends Geometry> implements OnSubscribe<Entr
             // but benchmarks showed no benefit here so reverted to AtomicLong
             long previousCount = BackpressureUtils.getAndAddRequest(requested, n);
             if (previousCount == 0) {
-                // don't touch stack every time during the loop because
-                // is a volatile and every write forces a thread memory
-                // cache flush
-                ImmutableStack<NodePosition<T, S>> st = stack;
                 while (true) {
                     // minimize atomic reads by assigning to a variable here
                     long r = requested.get();
-                    st = Backpressure.search(condition, subscriber, st, r);
-                    if (st.isEmpty()) {
-                        // release some state for gc (although empty stack so not very significant)
-                        stack = null;
-                        if (!subscriber.isUnsubscribed()) {
+                    for (long emitted = 0; emitted < r; emitted++) {
+                        if (subscriber.isUnsubscribed())
+                            return;
+                        else if (!iterator.hasNext()) {
                             subscriber.onCompleted();
-                        }
-                        return;
-                    } else {
-                        stack = st;
-                        if (requested.addAndGet(-r) == 0)
                             return;
+                        } else
+                            subscriber.onNext(iterator.next());
                     }
+                    if (subscriber.isUnsubscribed())
+                        return;
+                    else if (!iterator.hasNext()) {
+                        subscriber.onCompleted();
+                        return;
+                    } else if (requested.addAndGet(-r) == 0)
+                        return;
                 }
-
             }
         }
     }
@@ -4,20 +4,29 @@ import static com.github.davidmoten.guavamini.Optional.absent;
 import static com.github.davidmoten.guavamini.Optional.of;
 import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import com.github.davidmoten.guavamini.Lists;
 import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.guavamini.Preconditions;
 import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
 import com.github.davidmoten.rtree.geometry.Circle;
 import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HilbertCurve;
 import com.github.davidmoten.rtree.geometry.Intersects;
 import com.github.davidmoten.rtree.geometry.Line;
 import com.github.davidmoten.rtree.geometry.Point;
 import com.github.davidmoten.rtree.geometry.Rectangle;
-import com.github.davidmoten.rtree.internal.Comparators;
+import com.github.davidmoten.rtree.internal.BatchInsertHelper;
+import com.github.davidmoten.rtree.internal.IntersectsRectangle;
+import com.github.davidmoten.rtree.internal.MoveHelper;
 import com.github.davidmoten.rtree.internal.NodeAndEntries;
-import com.github.davidmoten.rtree.internal.operators.OperatorBoundedPriorityQueue;
+import com.github.davidmoten.rtree.internal.PackingHelper;
+import com.github.davidmoten.rtree.internal.SearchHelper;
+import com.github.davidmoten.rx.util.Pair;
 
 import rx.Observable;
 import rx.functions.Func1;
@@ -102,6 +111,23 @@ public final class RTree<T, S extends Geometry> {
         return new Builder().create();
     }
 
+    /**
+     * Returns a new {@link RTree} containing the given entries, bulk loaded
+     * using the Sort-Tile-Recursive (STR) algorithm with default settings. See
+     * {@link Builder#create(List)}.
+     *
+     * @param entries
+     *            entries to add to the R-tree
+     * @param <T>
+     *            the value type of the entries in the tree
+     * @param <S>
+     *            the geometry type of the entries in the tree
+     * @return a new RTree instance containing the given entries
+     */
+    public static <T, S extends Geometry> RTree<T, S> create(List<Entry<T, S>> entries) {
+        return new Builder().create(entries);
+    }
+
     /**
      * The tree is scanned for depth and the depth returned. This involves
      * recursing down to the leaf level of the tree to get the current depth.
@@ -185,6 +211,42 @@ public final class RTree<T, S extends Geometry> {
         return new Builder().star();
     }
 
+    /**
+     * Sets the proportion of maxChildren that each node is filled to when
+     * the tree is bulk loaded using {@link Builder#create(List)}.
+     * 
+     * @param loadingFactor
+     *            proportion of maxChildren used per node in a bulk load, must
+     *            be in (0, 1]
+     * @return builder
+     */
+    public static Builder loadingFactor(double loadingFactor) {
+        return new Builder().loadingFactor(loadingFactor);
+    }
+
+    /**
+     * Sets bulk loading using {@link Builder#create(List)} to pack entries in
+     * order of the Hilbert key of their centres rather than using
+     * Sort-Tile-Recursive.
+     * 
+     * @return builder
+     */
+    public static Builder hilbert() {
+        return new Builder().hilbert();
+    }
+
+    /**
+     * Sets the {@link Loader} used to pack entries when bulk loading using
+     * {@link Builder#create(List)}.
+     * 
+     * @param loader
+     *            bulk loading strategy
+     * @return builder
+     */
+    public static Builder loader(Loader loader) {
+        return new Builder().loader(loader);
+    }
+
     /**
      * RTree Builder.
      */
@@ -197,12 +259,16 @@ public final class RTree<T, S extends Geometry> {
          * quadratic split and R*-tree split.
          */
         private static final double DEFAULT_FILLING_FACTOR = 0.4;
+        private static final double DEFAULT_LOADING_FACTOR = 0.7;
         private Optional<Integer> maxChildren = absent();
         private Optional<Integer> minChildren = absent();
         private Splitter splitter = new SplitterQuadratic();
         private Selector selector = new SelectorMinimalAreaIncrease();
         private boolean star = false;
         private Factory<Object, Geometry> factory = Factories.defaultFactory();
+        private double loadingFactor = DEFAULT_LOADING_FACTOR;
+        private Optional<ExecutorService> executor = absent();
+        private Loader loader = new LoaderSTR();
 
         private Builder() {
         }
@@ -272,6 +338,72 @@ public final class RTree<T, S extends Geometry> {
             return this;
         }
 
+        /**
+         * Sets the proportion of maxChildren that each node is filled to when
+         * the tree is bulk loaded using {@link #create(List)}. Defaults to
+         * 0.7 which leaves room in each node for later insertions without an
+         * immediate split.
+         * 
+         * @param loadingFactor
+         *            proportion of maxChildren used per node in a bulk load,
+         *            must be in (0, 1]
+         * @return builder
+         */
+        public Builder loadingFactor(double loadingFactor) {
+            Preconditions.checkArgument(loadingFactor > 0 && loadingFactor <= 1,
+                    "loadingFactor must be in (0, 1]");
+            this.loadingFactor = loadingFactor;
+            return this;
+        }
+
+        /**
+         * Sets the executor used to sort and pack entries concurrently when
+         * the tree is bulk loaded using {@link #create(List)}. The tree
+         * produced is identical to the one produced without an executor. The
+         * executor is not shut down by the builder.
+         * 
+         * @param executor
+         *            executor to run bulk loading tasks on, for example
+         *            {@code Executors.newFixedThreadPool(n)}
+         * @return builder
+         */
+        public Builder parallel(ExecutorService executor) {
+            Preconditions.checkNotNull(executor);
+            this.executor = of(executor);
+            return this;
+        }
+
+        /**
+         * Sets the {@link Loader} used to pack entries into nodes when bulk
+         * loading using {@link #create(List)}. Defaults to {@link LoaderSTR}.
+         * 
+         * @param loader
+         *            bulk loading strategy
+         * @return builder
+         */
+        public Builder loader(Loader loader) {
+            Preconditions.checkNotNull(loader);
+            this.loader = loader;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Loader} to {@link LoaderHilbert}. Bulk loading using
+         * {@link #create(List)} then sorts the entries by the Hilbert key of
+         * the centre of their minimum bounding rectangles (see
+         * {@link HilbertCurve}) and packs consecutive runs into nodes filled
+         * to the loading factor (see {@link #loadingFactor(double)}). Hilbert
+         * packing is a single sort so it is quicker than
+         * Sort-Tile-Recursive and gives nodes with good spatial locality for
+         * point and small rectangle data. The executor set with
+         * {@link #parallel(ExecutorService)} is not used by Hilbert packing.
+         * 
+         * @return builder
+         */
+        public Builder hilbert() {
+            return loader(new LoaderHilbert());
+        }
+
         @SuppressWarnings("unchecked")
         public Builder factory(Factory<?, ? extends Geometry> factory) {
             // TODO could change the signature of Builder to have types to
@@ -290,8 +422,46 @@ public final class RTree<T, S extends Geometry> {
          *            geometry type
          * @return RTree
          */
-        @SuppressWarnings("unchecked")
         public <T, S extends Geometry> RTree<T, S> create() {
+            return new RTree<T, S>(Optional.<Node<T, S>> absent(), 0, this.<T, S> createContext());
+        }
+
+        /**
+         * Builds an {@link RTree} containing the given entries using the
+         * configured {@link Loader}, by default the Sort-Tile-Recursive (STR)
+         * packing algorithm. This is much faster than
+         * adding the entries one at a time because no splitting or path
+         * copying takes place. Leaves and non-leaves are filled to
+         * {@code loadingFactor * maxChildren} children and are created using
+         * the configured {@link Factory}. If an executor has been set using
+         * {@link #parallel(ExecutorService)} then it is passed to the loader
+         * ({@link LoaderSTR} runs the sorting and packing on it).
+         * 
+         * <p>
+         * See <a href=
+         * "http://www.dtic.mil/dtic/tr/fulltext/u2/a324493.pdf">Leutenegger,
+         * Lopez and Edgington, STR: A Simple and Efficient Algorithm for
+         * R-Tree Packing</a>.
+         * 
+         * @param entries
+         *            entries to add to the R-tree (the list is not modified)
+         * @param <T>
+         *            value type
+         * @param <S>
+         *            geometry type
+         * @return a new RTree containing the given entries
+         */
+        public <T, S extends Geometry> RTree<T, S> create(List<Entry<T, S>> entries) {
+            Context<T, S> context = createContext();
+            if (entries.isEmpty())
+                return new RTree<T, S>(Optional.<Node<T, S>> absent(), 0, context);
+            int capacity = PackingHelper.capacity(context, loadingFactor);
+            Node<T, S> root = loader.load(entries, capacity, context, executor);
+            return new RTree<T, S>(root, entries.size(), context);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T, S extends Geometry> Context<T, S> createContext() {
             if (!maxChildren.isPresent())
                 if (star)
                     maxChildren = of(MAX_CHILDREN_DEFAULT_STAR);
@@ -299,13 +469,24 @@ public final class RTree<T, S extends Geometry> {
                     maxChildren = of(MAX_CHILDREN_DEFAULT_GUTTMAN);
             if (!minChildren.isPresent())
                 minChildren = of((int) Math.round(maxChildren.get() * DEFAULT_FILLING_FACTOR));
-            return new RTree<T, S>(Optional.<Node<T, S>> absent(), 0,
-                    new Context<T, S>(minChildren.get(), maxChildren.get(), selector, splitter,
-                            (Factory<T, S>) factory));
+            return new Context<T, S>(minChildren.get(), maxChildren.get(), selector, splitter,
+                    (Factory<T, S>) factory);
         }
 
     }
 
+    /**
+     * Returns a transient (mutable) tree with the contents of this tree for
+     * fast single-threaded loading. Call {@link TransientRTree#freeze()} to
+     * get an immutable tree again. This tree is not changed. Only supported
+     * for trees using the default factory.
+     * 
+     * @return a transient tree starting with the entries of this tree
+     */
+    public TransientRTree<T, S> asTransient() {
+        return new TransientRTree<T, S>(root, size, context);
+    }
+
     /**
      * Returns an immutable copy of the RTree with the addition of given entry.
      * 
@@ -347,22 +528,34 @@ public final class RTree<T, S extends Geometry> {
 
     /**
      * Returns an immutable RTree with the current entries and the additional
-     * entries supplied as a parameter.
+     * entries supplied as a parameter. The entries are inserted as one batch:
+     * they are routed down the tree together so each node on the paths to
+     * the affected leaves is copied (and split if it overflows) once rather
+     * than once per entry.
      * 
      * @param entries
      *            entries to add
      * @return R-tree with entries added
      */
     public RTree<T, S> add(Iterable<Entry<T, S>> entries) {
-        RTree<T, S> tree = this;
+        List<Entry<T, S>> list = new ArrayList<Entry<T, S>>();
         for (Entry<T, S> entry : entries)
-            tree = tree.add(entry);
-        return tree;
+            list.add(entry);
+        if (list.isEmpty())
+            return this;
+        else if (list.size() == 1)
+            return add(list.get(0));
+        else
+            return new RTree<T, S>(BatchInsertHelper.add(root, list, context),
+                    size + list.size(), context);
     }
 
     /**
      * Returns the Observable sequence of trees created by progressively adding
-     * entries.
+     * entries. Each entry is added on its own. To add entries in batches
+     * buffer the sequence first (for example with
+     * {@code entries.buffer(1, TimeUnit.SECONDS)}) and add each buffer with
+     * {@link #add(Iterable)}.
      * 
      * @param entries
      *            the entries to add
@@ -511,6 +704,36 @@ public final class RTree<T, S extends Geometry> {
         return delete(entry, false);
     }
 
+    /**
+     * Returns a new R-tree with one entry matching the given entry replaced by
+     * an entry with the same value and the new geometry. If the new geometry
+     * lies within the bounds of the parent of the entry's leaf the entry is
+     * replaced in place and only the path from the root to that leaf is copied
+     * (see {@link MoveHelper}), which is much cheaper than a delete followed
+     * by an add when objects move a short distance. Otherwise the entry is
+     * deleted and the moved entry added. This method has no effect if the
+     * entry is not present.
+     * 
+     * @param entry
+     *            the {@link Entry} to move
+     * @param geometry
+     *            the new geometry
+     * @return a new immutable R-tree with the entry moved
+     */
+    public RTree<T, S> move(Entry<? extends T, ? extends S> entry, S geometry) {
+        if (!root.isPresent())
+            return this;
+        Entry<T, S> moved = context.factory().createEntry(entry.value(), geometry);
+        Optional<Node<T, S>> node = MoveHelper.move(root.get(), entry, moved);
+        if (node.isPresent())
+            return new RTree<T, S>(node, size, context);
+        RTree<T, S> tree = delete(entry);
+        if (tree == this)
+            return this;
+        else
+            return tree.add(moved);
+    }
+
     /**
      * <p>
      * Returns an Observable sequence of {@link Entry} that satisfy the given
@@ -547,12 +770,7 @@ public final class RTree<T, S extends Geometry> {
      * @return whether the geometry and the rectangle intersect
      */
     public static Func1<Geometry, Boolean> intersects(final Rectangle r) {
-        return new Func1<Geometry, Boolean>() {
-            @Override
-            public Boolean call(Geometry g) {
-                return g.intersects(r);
-            }
-        };
+        return new IntersectsRectangle(r);
     }
 
     /**
@@ -579,6 +797,88 @@ public final class RTree<T, S extends Geometry> {
         return search(intersects(r));
     }
 
+    /**
+     * Returns an {@link Iterator} over all {@link Entry}s in the R-tree whose
+     * minimum bounding rectangle intersects with the given rectangle. Unlike
+     * {@link #search(Rectangle)} the traversal allocates no objects per
+     * visited node so this is the cheapest way to consume search results on a
+     * single thread. The iterator is not thread-safe and does not support
+     * {@link Iterator#remove()}.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry mbr
+     * @return iterator over the entries that intersect with the rectangle r
+     */
+    public Iterator<Entry<T, S>> searchIterator(Rectangle r) {
+        return searchIterator(intersects(r));
+    }
+
+    /**
+     * Returns an {@link Iterable} whose iterators are created by
+     * {@link #searchIterator(Rectangle)}. This is convenient for use in a
+     * for-each loop.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry mbr
+     * @return entries that intersect with the rectangle r
+     */
+    public Iterable<Entry<T, S>> searchIterable(final Rectangle r) {
+        return new Iterable<Entry<T, S>>() {
+            @Override
+            public Iterator<Entry<T, S>> iterator() {
+                return searchIterator(r);
+            }
+        };
+    }
+
+    @VisibleForTesting
+    Iterator<Entry<T, S>> searchIterator(Func1<? super Geometry, Boolean> condition) {
+        return new SearchIterator<T, S>(root, condition);
+    }
+
+    /**
+     * Calls {@code visitor} synchronously with each {@link Entry} in the R-tree
+     * whose geometry intersects with the given rectangle, in the same order
+     * as {@link #search(Rectangle)}. The search stops as soon as the visitor
+     * returns false. Bounding rectangles are tested with primitive float
+     * comparisons and no Rx machinery is involved so this is the lowest
+     * overhead way to run many small searches.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry geometry
+     * @param visitor
+     *            called with each matching entry, returns false to stop the
+     *            search
+     */
+    public void search(Rectangle r, EntryVisitor<T, S> visitor) {
+        if (root.isPresent())
+            SearchHelper.search(root.get(), r, visitor);
+    }
+
+    /**
+     * Returns the entries whose geometry intersects each of the given
+     * rectangles. The tree is traversed once for all the queries: each node is
+     * visited at most once and tested only against the queries that intersect
+     * its parent. This is much cheaper than calling {@link #search(Rectangle)}
+     * for each of a large number of small, clustered queries.
+     * 
+     * @param queries
+     *            rectangles to check intersection with the entry geometry
+     * @return list where element i holds the entries intersecting
+     *         {@code queries.get(i)} in the order returned by
+     *         {@link #search(Rectangle)}
+     */
+    public List<List<Entry<T, S>>> searchBatch(List<Rectangle> queries) {
+        if (root.isPresent())
+            return SearchHelper.searchBatch(root.get(), queries);
+        else {
+            List<List<Entry<T, S>>> results = new ArrayList<List<Entry<T, S>>>(queries.size());
+            for (int i = 0; i < queries.size(); i++)
+                results.add(new ArrayList<Entry<T, S>>());
+            return results;
+        }
+    }
+
     /**
      * Returns an {@link Observable} sequence of all {@link Entry}s in the
      * R-tree whose minimum bounding rectangle intersects with the given point.
@@ -706,8 +1006,58 @@ public final class RTree<T, S extends Geometry> {
      */
     public Observable<Entry<T, S>> nearest(final Rectangle r, final double maxDistance,
             int maxCount) {
-        return search(r, maxDistance).lift(new OperatorBoundedPriorityQueue<Entry<T, S>>(maxCount,
-                Comparators.<T, S> ascendingDistance(r)));
+        return nearest(r).takeWhile(new Func1<Entry<T, S>, Boolean>() {
+            @Override
+            public Boolean call(Entry<T, S> entry) {
+                return entry.geometry().distance(r) < maxDistance;
+            }
+        }).take(maxCount);
+    }
+
+    /**
+     * Returns all entries in the tree in ascending order of distance from the
+     * given rectangle. The tree is traversed best-first as entries are
+     * requested so only the nodes needed to find the entries emitted are
+     * visited. Use {@code take(k)} to get the nearest k entries.
+     * 
+     * @param r
+     *            rectangle
+     * @return entries in ascending order of distance from the rectangle
+     */
+    public Observable<Entry<T, S>> nearest(final Rectangle r) {
+        return Observable.from(new Iterable<Entry<T, S>>() {
+            @Override
+            public Iterator<Entry<T, S>> iterator() {
+                return nearestIterator(r);
+            }
+        });
+    }
+
+    /**
+     * Returns all entries in the tree in ascending order of distance from the
+     * given point. See {@link #nearest(Rectangle)}.
+     * 
+     * @param p
+     *            point
+     * @return entries in ascending order of distance from the point
+     */
+    public Observable<Entry<T, S>> nearest(Point p) {
+        return nearest(p.mbr());
+    }
+
+    /**
+     * Returns an {@link Iterator} over all entries in the tree in ascending
+     * order of distance from the given rectangle. Nodes are expanded
+     * best-first only as far as needed to return the next entry. The iterator
+     * is not thread-safe and does not support {@link Iterator#remove()}.
+     * 
+     * @param r
+     *            rectangle
+     * @return iterator over entries in ascending order of distance from the
+     *         rectangle
+     */
+    public Iterator<Entry<T, S>> nearestIterator(Rectangle r) {
+        return new NearestIterator<T, S>(root, r);
     }
 
     /**
@@ -726,6 +1076,40 @@ public final class RTree<T, S extends Geometry> {
         return nearest(p.mbr(), maxDistance, maxCount);
     }
 
+    /**
+     * Returns the pairs of entries, one from this tree and one from
+     * {@code other}, whose geometries satisfy {@code predicate}. The trees are
+     * traversed together so that only pairs of nodes whose bounding rectangles
+     * intersect are visited and the children of each node pair are matched
+     * with a plane sweep. This is much faster than searching one tree for each
+     * entry of the other. As with {@link #search(Geometry, Func2)} the
+     * predicate is only called for pairs whose minimum bounding rectangles
+     * intersect so it should be false for any other pair.
+     * 
+     * <p>
+     * The pairs are produced lazily as they are requested.
+     * 
+     * @param other
+     *            the tree to join with
+     * @param predicate
+     *            returns true if the geometries of an entry of this tree and
+     *            an entry of {@code other} match
+     * @param <R>
+     *            value type of the other tree
+     * @param <U>
+     *            geometry type of the other tree
+     * @return pairs of entries (this tree first) that satisfy the predicate
+     */
+    public <R, U extends Geometry> Observable<Pair<Entry<T, S>, Entry<R, U>>> join(
+            final RTree<R, U> other, final Func2<? super S, ? super U, Boolean> predicate) {
+        return Observable.from(new Iterable<Pair<Entry<T, S>, Entry<R, U>>>() {
+            @Override
+            public Iterator<Pair<Entry<T, S>, Entry<R, U>>> iterator() {
+                return new JoinIterator<T, S, R, U>(root, other.root, predicate);
+            }
+        });
+    }
+
     /**
      * Returns all entries in the tree as an {@link Observable} sequence.
      * 
@@ -0,0 +1,97 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+import rx.functions.Func1;
+
+/**
+ * Depth-first search of a tree that returns the entries satisfying a
+ * condition one at a time. The path from the root to the current position is
+ * held in a pair of arrays (nodes and child positions) that are reused for the
+ * whole traversal so no objects are allocated per visited node.
+ *
+ * <p>
+ * Not thread-safe.
+ */
+final class SearchIterator<T, S extends Geometry> implements Iterator<Entry<T, S>> {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private final Func1<? super Geometry, Boolean> condition;
+    private Node<T, S>[] nodes;
+    private int[] positions;
+    private int depth;
+    private Entry<T, S> next;
+
+    @SuppressWarnings("unchecked")
+    SearchIterator(Optional<? extends Node<T, S>> root,
+            Func1<? super Geometry, Boolean> condition) {
+        this.condition = condition;
+        this.nodes = (Node<T, S>[]) new Node<?, ?>[INITIAL_DEPTH];
+        this.positions = new int[INITIAL_DEPTH];
+        if (root.isPresent())
+            push(root.get());
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null)
+            next = advance();
+        return next != null;
+    }
+
+    @Override
+    public Entry<T, S> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Entry<T, S> entry = next;
+        next = null;
+        return entry;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("RTree is immutable");
+    }
+
+    private Entry<T, S> advance() {
+        while (depth > 0) {
+            int i = depth - 1;
+            Node<T, S> node = nodes[i];
+            int position = positions[i];
+            if (position == node.count()) {
+                // finished with this node so release it and return to parent
+                nodes[i] = null;
+                depth--;
+            } else {
+                positions[i] = position + 1;
+                if (node instanceof Leaf) {
+                    Entry<T, S> entry = ((Leaf<T, S>) node).entry(position);
+                    if (condition.call(entry.geometry()))
+                        return entry;
+                } else {
+                    Node<T, S> child = ((NonLeaf<T, S>) node).child(position);
+                    if (condition.call(child.geometry()))
+                        push(child);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void push(Node<T, S> node) {
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, depth * 2);
+            positions = Arrays.copyOf(positions, depth * 2);
+        }
+        nodes[depth] = node;
+        positions[depth] = 0;
+        depth++;
+    }
+
+}
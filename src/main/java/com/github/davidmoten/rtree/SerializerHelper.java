@@ -1,6 +1,16 @@
 package com.github.davidmoten.rtree;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.guavamini.Preconditions;
 import com.github.davidmoten.rtree.geometry.Geometry;
 
 public final class SerializerHelper {
@@ -14,4 +24,117 @@ public final class SerializerHelper {
         return RTree.create(root, size, context);
     }
 
+    /**
+     * Writes a tree to a file, replacing any existing content. A
+     * {@link FileSerializer} writes the file itself (for example leaf by leaf
+     * without holding the serialized form in memory), any other serializer
+     * writes it as a stream.
+     * 
+     * @param serializer
+     *            the serializer
+     * @param tree
+     *            tree to write
+     * @param file
+     *            destination file
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static <T, S extends Geometry> void write(Serializer<T, S> serializer,
+            RTree<T, S> tree, File file) throws IOException {
+        if (serializer instanceof FileSerializer) {
+            ((FileSerializer<T, S>) serializer).write(tree, file);
+            return;
+        }
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            serializer.write(tree, os);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Reads a tree from a file. A {@link FileSerializer} reads the file itself
+     * (for example by memory mapping it), any other serializer reads it as a
+     * stream.
+     * 
+     * @param serializer
+     *            the serializer
+     * @param file
+     *            file containing the serialized tree
+     * @param structure
+     *            the internal structure of the tree returned
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return the deserialized tree
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static <T, S extends Geometry> RTree<T, S> read(Serializer<T, S> serializer,
+            File file, InternalStructure structure) throws IOException {
+        if (serializer instanceof FileSerializer)
+            return ((FileSerializer<T, S>) serializer).read(file, structure);
+        InputStream is = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return serializer.read(is, file.length(), structure);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Reads exactly {@code sizeBytes} bytes from the stream so that anything
+     * following a serialized tree is left unread.
+     * 
+     * @param is
+     *            the stream
+     * @param sizeBytes
+     *            number of bytes to read
+     * @return the bytes read
+     * @throws IOException
+     *             if the stream ends early
+     */
+    public static byte[] readFully(InputStream is, long sizeBytes) throws IOException {
+        Preconditions.checkArgument(sizeBytes <= Integer.MAX_VALUE,
+                "too large to read as a single buffer: " + sizeBytes);
+        byte[] bytes = new byte[(int) sizeBytes];
+        int count = 0;
+        while (count < bytes.length) {
+            int n = is.read(bytes, count, bytes.length - count);
+            if (n < 0)
+                throw new IOException("unexpected end of stream after " + count + " bytes");
+            count += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * Creates an instance of the named class (for example a selector or
+     * splitter recorded by a serializer) using its public no-argument
+     * constructor.
+     * 
+     * @param className
+     *            the class name
+     * @param cls
+     *            the expected type
+     * @param <R>
+     *            the expected type
+     * @return new instance
+     */
+    public static <R> R newInstance(String className, Class<R> cls) {
+        try {
+            return cls.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (Exception e) {
+            throw new RuntimeException(
+                    "could not create " + className + " using a public no-argument constructor",
+                    e);
+        }
+    }
+
 }
@@ -8,18 +8,19 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 
-import com.esotericsoftware.kryo.Kryo;
 import com.github.davidmoten.guavamini.Preconditions;
 import com.github.davidmoten.rtree.fbs.SerializerFlatBuffers;
 import com.github.davidmoten.rtree.geometry.Geometry;
 import com.github.davidmoten.rtree.kryo.SerializerKryo;
+import com.github.davidmoten.rtree.quantized.SerializerQuantized;
 import com.github.davidmoten.rx.Functions;
 
-import rx.functions.Func0;
 import rx.functions.Func1;
 
 public final class Serializers {
 
+    private static final int DEFAULT_QUANTIZATION_BITS = 16;
+
     private Serializers() {
         // prevent instantiation
     }
@@ -27,30 +28,32 @@ public final class Serializers {
     public static class SerializerBuilder {
 
         private Method method = Method.FLATBUFFERS;
+        private int bits = DEFAULT_QUANTIZATION_BITS;
+        private boolean compress;
 
         private SerializerBuilder() {
 
         }
 
         public <T> SerializerTypedBuilder<T> serializer(Func1<? super T, byte[]> serializer) {
-            return new SerializerTypedBuilder<T>(serializer, null, method);
+            return typed(serializer, null);
         }
 
         public <T> SerializerTypedBuilder<T> deserializer(Func1<byte[], ? extends T> deserializer) {
-            return new SerializerTypedBuilder<T>(null, deserializer, method);
+            return typed(null, deserializer);
         }
 
         public <S extends Geometry> Serializer<String, S> string(Charset charset) {
             Func1<String, byte[]> serializer = createStringSerializer(charset);
             Func1<byte[], String> deserializer = createStringDeserializer(charset);
-            return new SerializerTypedBuilder<String>(serializer, deserializer, method).create();
+            return typed(serializer, deserializer).create();
         }
 
         @SuppressWarnings("unchecked")
         public <T extends Serializable, S extends Geometry> Serializer<T, S> javaIo() {
             Func1<T, byte[]> serializer = (Func1<T, byte[]>) javaIoSerializer();
             Func1<byte[], T> deserializer = (Func1<byte[], T>) javaIoDeserializer();
-            return new SerializerTypedBuilder<T>(serializer, deserializer, method).create();
+            return typed(serializer, deserializer).create();
         }
 
         public <S extends Geometry> Serializer<String, S> utf8() {
@@ -60,7 +63,7 @@ public final class Serializers {
         public <S extends Geometry> Serializer<byte[], S> bytes() {
             Func1<byte[], byte[]> serializer = Functions.identity();
             Func1<byte[], byte[]> deserializer = Functions.identity();
-            return new SerializerTypedBuilder<byte[]>(serializer, deserializer, method).create();
+            return typed(serializer, deserializer).create();
         }
 
         public SerializerBuilder method(Method method) {
@@ -68,6 +71,42 @@ public final class Serializers {
             return this;
         }
 
+        /**
+         * Sets the number of bits (8 or 16) used for each bound of a child
+         * rectangle by the {@link Method#QUANTIZED} method. The default is 16.
+         * 
+         * @param bits
+         *            bits per bound
+         * @return this
+         */
+        public SerializerBuilder quantizationBits(int bits) {
+            Preconditions.checkArgument(bits == 8 || bits == 16, "bits must be 8 or 16");
+            this.bits = bits;
+            return this;
+        }
+
+        /**
+         * Sets whether the {@link Method#QUANTIZED} method compresses values.
+         * The default is false.
+         * 
+         * @param compress
+         *            whether to compress values
+         * @return this
+         */
+        public SerializerBuilder compress(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
+        private <T> SerializerTypedBuilder<T> typed(Func1<? super T, byte[]> serializer,
+                Func1<byte[], ? extends T> deserializer) {
+            SerializerTypedBuilder<T> b = new SerializerTypedBuilder<T>(serializer, deserializer,
+                    method);
+            b.bits = bits;
+            b.compress = compress;
+            return b;
+        }
+
     }
 
     public static final class SerializerTypedBuilder<T> {
@@ -75,12 +114,8 @@ public final class Serializers {
         private Func1<? super T, byte[]> serializer;
         private Func1<byte[], ? extends T> deserializer;
         private Method method;
-        private Func0<Kryo> kryoFactory = new Func0<Kryo>() {
-            @Override
-            public Kryo call() {
-                return new Kryo();
-            }
-        };
+        private int bits = DEFAULT_QUANTIZATION_BITS;
+        private boolean compress;
 
         private SerializerTypedBuilder(Func1<? super T, byte[]> serializer,
                 Func1<byte[], ? extends T> deserializer, Method method) {
@@ -100,32 +135,36 @@ public final class Serializers {
         }
 
         public SerializerTypedBuilder<T> method(Method method) {
-            // TODO remove this check when kryo ready
-            Preconditions.checkArgument(method != Method.KRYO,
-                    "kryo serialization not implemented yet");
+            Preconditions.checkNotNull(method);
             this.method = method;
             return this;
         }
 
-        // TODO enable when ready
-        private SerializerTypedBuilder<T> kryo(Func0<Kryo> kryoFactory) {
-            this.method = Method.KRYO;
-            this.kryoFactory = kryoFactory;
+        public SerializerTypedBuilder<T> quantizationBits(int bits) {
+            Preconditions.checkArgument(bits == 8 || bits == 16, "bits must be 8 or 16");
+            this.bits = bits;
+            return this;
+        }
+
+        public SerializerTypedBuilder<T> compress(boolean compress) {
+            this.compress = compress;
             return this;
         }
 
         @SuppressWarnings("unchecked")
         public <S extends Geometry> Serializer<T, S> create() {
+            if (serializer == null) {
+                serializer = (Func1<T, byte[]>) javaIoSerializer();
+            }
+            if (deserializer == null) {
+                deserializer = (Func1<byte[], T>) javaIoDeserializer();
+            }
             if (method == Method.FLATBUFFERS) {
-                if (serializer == null) {
-                    serializer = (Func1<T, byte[]>) javaIoSerializer();
-                }
-                if (deserializer == null) {
-                    deserializer = (Func1<byte[], T>) javaIoDeserializer();
-                }
                 return SerializerFlatBuffers.create(serializer, deserializer);
+            } else if (method == Method.QUANTIZED) {
+                return SerializerQuantized.create(serializer, deserializer, bits, compress);
             } else {
-                return SerializerKryo.create(serializer, deserializer, kryoFactory);
+                return SerializerKryo.create(serializer, deserializer);
             }
         }
 
@@ -135,8 +174,32 @@ public final class Serializers {
         return new SerializerBuilder().method(Method.FLATBUFFERS);
     }
 
+    /**
+     * Returns a builder for a compact binary serializer that is faster to
+     * write than FlatBuffers. Trees are always read into the default
+     * in-memory structure.
+     * 
+     * @return serializer builder
+     */
+    public static SerializerBuilder kryo() {
+        return new SerializerBuilder().method(Method.KRYO);
+    }
+
+    /**
+     * Returns a builder for a serializer that stores the bounds of the
+     * children of each non-leaf quantized to 8 or 16 bits relative to the
+     * bounds of the non-leaf and optionally compresses values. Trees read with
+     * {@link InternalStructure#SINGLE_ARRAY} are searched in the serialized
+     * form.
+     * 
+     * @return serializer builder
+     */
+    public static SerializerBuilder quantized() {
+        return new SerializerBuilder().method(Method.QUANTIZED);
+    }
+
     public enum Method {
-        FLATBUFFERS, KRYO;
+        FLATBUFFERS, KRYO, QUANTIZED;
     }
 
     private static Func1<String, byte[]> createStringSerializer(final Charset charset) {
@@ -0,0 +1,115 @@
+package com.github.davidmoten.rtree;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.FactoryDefault;
+import com.github.davidmoten.rtree.internal.TransientHelper;
+
+/**
+ * A mutable view of an {@link RTree} for fast single-threaded loading,
+ * obtained from {@link RTree#asTransient()}. Additions change nodes created
+ * by this transient tree in place instead of copying the path from the root
+ * to the leaf for every entry. Nodes shared with the tree it was created from
+ * are copied the first time they are touched so that tree is unaffected.
+ * {@link #freeze()} returns an immutable {@link RTree} in constant time, after
+ * which this transient tree cannot be used.
+ *
+ * <p>
+ * A transient tree must not be used from more than one thread at a time.
+ * Deletions use the immutable algorithm (the affected path is copied).
+ *
+ * @param <T>
+ *            the value type
+ * @param <S>
+ *            the geometry type
+ */
+public final class TransientRTree<T, S extends Geometry> {
+
+    private final Context<T, S> context;
+    // identifies the nodes this tree may change, null once frozen
+    private Object owner = new Object();
+    private Optional<? extends Node<T, S>> root;
+    private int size;
+
+    TransientRTree(Optional<? extends Node<T, S>> root, int size, Context<T, S> context) {
+        Preconditions.checkArgument(context.factory() instanceof FactoryDefault,
+                "transient trees are only supported with the default factory");
+        this.root = root;
+        this.size = size;
+        this.context = context;
+    }
+
+    public TransientRTree<T, S> add(T value, S geometry) {
+        return add(context.factory().createEntry(value, geometry));
+    }
+
+    /**
+     * Adds the entry, changing this tree.
+     *
+     * @param entry
+     *            entry to add
+     * @return this
+     */
+    @SuppressWarnings("unchecked")
+    public TransientRTree<T, S> add(Entry<? extends T, ? extends S> entry) {
+        checkNotFrozen();
+        root = Optional.of(TransientHelper.add(root, (Entry<T, S>) entry, owner, context));
+        size++;
+        return this;
+    }
+
+    public TransientRTree<T, S> add(Iterable<Entry<T, S>> entries) {
+        for (Entry<T, S> entry : entries)
+            add(entry);
+        return this;
+    }
+
+    public TransientRTree<T, S> delete(T value, S geometry) {
+        return delete(context.factory().createEntry(value, geometry), false);
+    }
+
+    public TransientRTree<T, S> delete(Entry<? extends T, ? extends S> entry) {
+        return delete(entry, false);
+    }
+
+    /**
+     * Deletes one or all entries equal to the given entry, changing this
+     * tree.
+     *
+     * @param entry
+     *            entry to delete
+     * @param all
+     *            if true delete all matching entries otherwise just the first
+     * @return this
+     */
+    public TransientRTree<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        checkNotFrozen();
+        RTree<T, S> tree = RTree.create(root, size, context).delete(entry, all);
+        root = tree.root();
+        size = tree.size();
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an immutable tree with the contents of this tree without
+     * copying any nodes. This transient tree cannot be used afterwards.
+     *
+     * @return the immutable tree
+     */
+    public RTree<T, S> freeze() {
+        checkNotFrozen();
+        owner = null;
+        return RTree.create(root, size, context);
+    }
+
+    private void checkNotFrozen() {
+        if (owner == null)
+            throw new IllegalStateException("transient tree has been frozen");
+    }
+
+}
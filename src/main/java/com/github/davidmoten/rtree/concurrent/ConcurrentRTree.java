@@ -0,0 +1,238 @@
+package com.github.davidmoten.rtree.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+/**
+ * A thread-safe holder of an {@link RTree} shared by many writers. The current
+ * immutable tree is kept in an {@link AtomicReference} so {@link #tree()} is a
+ * single volatile read and readers never wait for writers.
+ *
+ * <p>
+ * A mutating call appends its mutation to a lock-free queue and then either
+ * becomes the combiner (if no other thread is combining) or parks until its
+ * mutation has been applied. The combiner drains the queue, applies the
+ * mutations in queue order to the current tree as one batch (runs of
+ * additions use {@link RTree#add(Iterable)}), publishes the resulting tree and
+ * wakes the writers whose mutations it applied. On finishing it wakes the
+ * writer at the head of the queue (if any) to take over, so the combining
+ * work is handed between writers rather than done on a dedicated thread.
+ * The more writers contend, the larger the batches and the fewer trees are
+ * published.
+ *
+ * <p>
+ * If applying a batch throws, its mutations are applied one at a time so
+ * that only the failing mutations throw (in the threads that requested them).
+ *
+ * @param <T>
+ *            the value type
+ * @param <S>
+ *            the geometry type
+ */
+public final class ConcurrentRTree<T, S extends Geometry> {
+
+    private static final int ADD = 0;
+    private static final int DELETE = 1;
+    private static final int DELETE_ALL = 2;
+
+    // bounds the time a combiner spends on other threads' mutations
+    private static final int MAX_BATCH_SIZE = 4096;
+
+    private final AtomicReference<RTree<T, S>> tree;
+    private final Queue<Mutation<T, S>> queue = new ConcurrentLinkedQueue<Mutation<T, S>>();
+    private final AtomicBoolean combining = new AtomicBoolean();
+    private final AtomicLong batches = new AtomicLong();
+
+    private ConcurrentRTree(RTree<T, S> tree) {
+        this.tree = new AtomicReference<RTree<T, S>>(tree);
+    }
+
+    /**
+     * Returns a holder whose current tree is initially the given tree.
+     *
+     * @param tree
+     *            the initial tree
+     * @param <T>
+     *            the value type
+     * @param <S>
+     *            the geometry type
+     * @return thread-safe holder
+     */
+    public static <T, S extends Geometry> ConcurrentRTree<T, S> create(RTree<T, S> tree) {
+        Preconditions.checkNotNull(tree);
+        return new ConcurrentRTree<T, S>(tree);
+    }
+
+    /**
+     * Returns the current tree without waiting for writers. The tree is
+     * immutable so it can be searched while other threads mutate the holder.
+     *
+     * @return the current tree
+     */
+    public RTree<T, S> tree() {
+        return tree.get();
+    }
+
+    public RTree<T, S> add(T value, S geometry) {
+        return add(tree.get().context().factory().createEntry(value, geometry));
+    }
+
+    /**
+     * Adds an entry and returns once a tree containing it has been published.
+     *
+     * @param entry
+     *            entry to add
+     * @return the tree including the added entry (and possibly mutations of
+     *         other threads)
+     */
+    public RTree<T, S> add(Entry<T, S> entry) {
+        return mutate(ADD, entry);
+    }
+
+    public RTree<T, S> delete(T value, S geometry) {
+        return delete(tree.get().context().factory().createEntry(value, geometry), false);
+    }
+
+    public RTree<T, S> delete(Entry<T, S> entry) {
+        return delete(entry, false);
+    }
+
+    /**
+     * Deletes one entry or all entries equal to the given entry and returns
+     * once a tree without it has been published.
+     *
+     * @param entry
+     *            entry to delete
+     * @param all
+     *            if true delete all matching entries otherwise just the first
+     * @return the tree without the entry (and possibly mutations of other
+     *         threads)
+     */
+    public RTree<T, S> delete(Entry<T, S> entry, boolean all) {
+        return mutate(all ? DELETE_ALL : DELETE, entry);
+    }
+
+    /**
+     * Returns the number of batches applied so far. Compared with the number
+     * of mutations this shows how well writes are being combined.
+     *
+     * @return number of batches applied
+     */
+    public long batches() {
+        return batches.get();
+    }
+
+    private RTree<T, S> mutate(int op, Entry<T, S> entry) {
+        Preconditions.checkNotNull(entry);
+        Mutation<T, S> mutation = new Mutation<T, S>(op, entry, Thread.currentThread());
+        queue.offer(mutation);
+        while (!mutation.done) {
+            if (combining.compareAndSet(false, true)) {
+                try {
+                    combine();
+                } finally {
+                    combining.set(false);
+                }
+                // a writer that enqueued while this thread was combining may
+                // have failed to become the combiner and parked, so hand over
+                Mutation<T, S> next = queue.peek();
+                if (next != null)
+                    LockSupport.unpark(next.thread);
+            } else
+                LockSupport.park(this);
+        }
+        if (mutation.error != null) {
+            if (mutation.error instanceof RuntimeException)
+                throw (RuntimeException) mutation.error;
+            else if (mutation.error instanceof Error)
+                throw (Error) mutation.error;
+            else
+                throw new RuntimeException(mutation.error);
+        }
+        return mutation.result;
+    }
+
+    // must be called by the combiner only
+    private void combine() {
+        List<Mutation<T, S>> batch = new ArrayList<Mutation<T, S>>();
+        Mutation<T, S> m;
+        while (batch.size() < MAX_BATCH_SIZE && (m = queue.poll()) != null)
+            batch.add(m);
+        if (batch.isEmpty())
+            return;
+        RTree<T, S> current = tree.get();
+        RTree<T, S> result;
+        try {
+            result = apply(current, batch);
+        } catch (Throwable e) {
+            result = applyOneAtATime(current, batch);
+        }
+        tree.set(result);
+        batches.incrementAndGet();
+        for (Mutation<T, S> mutation : batch) {
+            if (mutation.error == null)
+                mutation.result = result;
+            mutation.done = true;
+            LockSupport.unpark(mutation.thread);
+        }
+    }
+
+    private static <T, S extends Geometry> RTree<T, S> apply(RTree<T, S> tree,
+            List<Mutation<T, S>> batch) {
+        List<Entry<T, S>> additions = new ArrayList<Entry<T, S>>();
+        for (Mutation<T, S> mutation : batch) {
+            if (mutation.op == ADD)
+                additions.add(mutation.entry);
+            else {
+                tree = tree.add(additions);
+                additions.clear();
+                tree = tree.delete(mutation.entry, mutation.op == DELETE_ALL);
+            }
+        }
+        return tree.add(additions);
+    }
+
+    private static <T, S extends Geometry> RTree<T, S> applyOneAtATime(RTree<T, S> tree,
+            List<Mutation<T, S>> batch) {
+        for (Mutation<T, S> mutation : batch) {
+            try {
+                if (mutation.op == ADD)
+                    tree = tree.add(mutation.entry);
+                else
+                    tree = tree.delete(mutation.entry, mutation.op == DELETE_ALL);
+            } catch (Throwable e) {
+                mutation.error = e;
+            }
+        }
+        return tree;
+    }
+
+    private static final class Mutation<T, S extends Geometry> {
+        final int op;
+        final Entry<T, S> entry;
+        final Thread thread;
+
+        // written by the combiner before done is set
+        RTree<T, S> result;
+        Throwable error;
+        volatile boolean done;
+
+        Mutation(int op, Entry<T, S> entry, Thread thread) {
+            this.op = op;
+            this.entry = entry;
+            this.thread = thread;
+        }
+    }
+
+}
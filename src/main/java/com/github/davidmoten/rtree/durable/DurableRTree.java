@@ -0,0 +1,627 @@
+package com.github.davidmoten.rtree.durable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.InternalStructure;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.Serializer;
+import com.github.davidmoten.rtree.SerializerHelper;
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Keeps an {@link RTree} durable across restarts by appending every mutation
+ * to a log before the mutating call returns and periodically writing a full
+ * snapshot of the tree.
+ *
+ * <p>
+ * Mutations are applied to the current tree and encoded into a pending batch
+ * under one lock so that the log order is the order the tree saw them. A
+ * mutating call then waits until its record has been written and forced to
+ * disk. Whichever waiting thread gets to the disk first writes and forces the
+ * whole pending batch, so concurrent writers share one {@code fsync} (group
+ * commit). Readers use {@link #tree()}, which may include mutations whose
+ * callers are still waiting for the log to be forced.
+ *
+ * <p>
+ * The log is split into segments. A checkpoint starts a new segment and
+ * captures the tree version matching the end of the previous segment. Because
+ * that version is immutable it is written through the snapshot
+ * {@link Serializer} (by default on a background thread) while writers carry
+ * on appending to the new segment. Once the snapshot is in place the older
+ * segments and snapshots are deleted. On {@link Builder#open() open} the
+ * newest snapshot is read and the later segments are replayed onto it. A
+ * record torn by a crash ends the replay and is truncated away.
+ *
+ * <p>
+ * Files in the directory are named {@code snapshot.<n>} (the tree after
+ * applying segments before {@code n}) and {@code log.<n>}.
+ *
+ * @param <T>
+ *            the value type
+ * @param <S>
+ *            the geometry type
+ */
+public final class DurableRTree<T, S extends Geometry> implements Closeable {
+
+    private static final String LOG = "log.";
+    private static final String SNAPSHOT = "snapshot.";
+    private static final String TEMP = ".tmp";
+
+    private final File directory;
+    private final Serializer<T, S> snapshotSerializer;
+    private final Func1<? super T, byte[]> valueSerializer;
+    private final long checkpointAfter;
+    private final Scheduler scheduler;
+
+    // lock order is checkpointLock, flushLock, writeLock
+
+    private final Object checkpointLock = new Object();
+    private final Object flushLock = new Object();
+    private final Object writeLock = new Object();
+
+    private volatile RTree<T, S> tree;
+
+    // guarded by writeLock
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingData = new DataOutputStream(pending);
+    private long appended;
+    private long sinceCheckpoint;
+
+    // guarded by flushLock (and writeLock for changes)
+    private FileOutputStream log;
+    private long segment;
+
+    private volatile long durable;
+    private volatile long commits;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    // notified through checkpointLock when a scheduled checkpoint finishes
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+    private volatile IOException checkpointFailure;
+
+    private DurableRTree(Builder<T, S> b, RTree<T, S> tree, long segment) throws IOException {
+        this.directory = b.directory;
+        this.snapshotSerializer = b.snapshotSerializer;
+        this.valueSerializer = b.valueSerializer;
+        this.checkpointAfter = b.checkpointAfter;
+        this.scheduler = b.scheduler;
+        this.tree = tree;
+        this.segment = segment;
+        this.log = new FileOutputStream(file(LOG, segment), true);
+    }
+
+    public static BuilderUntyped directory(File directory) {
+        return new BuilderUntyped(directory);
+    }
+
+    /**
+     * Returns the latest version of the tree.
+     *
+     * @return the current tree
+     */
+    public RTree<T, S> tree() {
+        return tree;
+    }
+
+    public RTree<T, S> add(T value, S geometry) throws IOException {
+        return add(tree.context().factory().createEntry(value, geometry));
+    }
+
+    /**
+     * Adds an entry and returns once the addition is in the log on disk.
+     *
+     * @param entry
+     *            entry to add
+     * @return the tree including the added entry (and possibly mutations of
+     *         other threads)
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public RTree<T, S> add(Entry<T, S> entry) throws IOException {
+        return mutate(LogRecords.ADD, entry);
+    }
+
+    public RTree<T, S> delete(T value, S geometry) throws IOException {
+        return delete(tree.context().factory().createEntry(value, geometry), false);
+    }
+
+    public RTree<T, S> delete(Entry<T, S> entry) throws IOException {
+        return delete(entry, false);
+    }
+
+    /**
+     * Deletes one entry or all entries equal to the given entry and returns
+     * once the deletion is in the log on disk.
+     *
+     * @param entry
+     *            entry to delete
+     * @param all
+     *            if true delete all matching entries otherwise just the first
+     * @return the tree without the entry (and possibly mutations of other
+     *         threads)
+     * @throws IOException
+     *             if the log cannot be written
+     */
+    public RTree<T, S> delete(Entry<T, S> entry, boolean all) throws IOException {
+        return mutate(all ? LogRecords.DELETE_ALL : LogRecords.DELETE, entry);
+    }
+
+    /**
+     * Returns the number of times the log has been forced to disk. Compared
+     * with the number of mutations this shows how well writes are being
+     * grouped.
+     *
+     * @return number of log commits
+     */
+    public long commits() {
+        return commits;
+    }
+
+    private RTree<T, S> mutate(int op, Entry<T, S> entry) throws IOException {
+        checkNotFailed();
+        final RTree<T, S> result;
+        final long sequence;
+        boolean checkpoint = false;
+        synchronized (writeLock) {
+            checkNotClosed();
+            // encode first so that an entry that cannot be logged leaves the
+            // tree unchanged (nothing is added to the batch on failure)
+            LogRecords.write(pendingData, op, entry, valueSerializer);
+            result = apply(tree, op, entry);
+            tree = result;
+            sequence = ++appended;
+            if (checkpointAfter > 0 && ++sinceCheckpoint >= checkpointAfter) {
+                sinceCheckpoint = 0;
+                checkpoint = true;
+            }
+        }
+        flush(sequence);
+        if (checkpoint)
+            checkpointInBackground();
+        return result;
+    }
+
+    private static <T, S extends Geometry> RTree<T, S> apply(RTree<T, S> tree, int op,
+            Entry<T, S> entry) {
+        if (op == LogRecords.ADD)
+            return tree.add(entry);
+        else
+            return tree.delete(entry, op == LogRecords.DELETE_ALL);
+    }
+
+    private void flush(long sequence) throws IOException {
+        if (durable >= sequence)
+            return;
+        synchronized (flushLock) {
+            // another thread may have committed this record while we waited
+            if (durable >= sequence)
+                return;
+            checkNotFailed();
+            writePending();
+        }
+    }
+
+    // must hold flushLock
+    private void writePending() throws IOException {
+        final byte[] batch;
+        final long last;
+        synchronized (writeLock) {
+            batch = pending.toByteArray();
+            pending.reset();
+            last = appended;
+        }
+        write(log, batch, last);
+    }
+
+    // must hold flushLock
+    private void write(FileOutputStream out, byte[] batch, long last) throws IOException {
+        if (batch.length == 0)
+            return;
+        try {
+            out.write(batch);
+            out.getChannel().force(false);
+        } catch (IOException e) {
+            // the tree is now ahead of the log so refuse further mutations
+            failure = e;
+            throw e;
+        }
+        commits++;
+        durable = last;
+    }
+
+    private void checkNotFailed() throws IOException {
+        if (failure != null)
+            throw new IOException("log is unusable after an earlier failure", failure);
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed)
+            throw new IOException("closed");
+    }
+
+    // reports (once) the failure of a checkpoint run in the background
+    private void checkCheckpointNotFailed() throws IOException {
+        IOException e = checkpointFailure;
+        if (e != null) {
+            checkpointFailure = null;
+            throw new IOException("background checkpoint failed", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current tree and deletes the log segments it
+     * covers. Mutations may continue on other threads while the snapshot is
+     * written.
+     *
+     * @throws IOException
+     *             if the snapshot cannot be written, if the tree is closed or
+     *             if a checkpoint run in the background since the last call
+     *             failed
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            checkNotClosed();
+            checkCheckpointNotFailed();
+            writeCheckpoint();
+        }
+    }
+
+    // must hold checkpointLock
+    private void writeCheckpoint() throws IOException {
+        final RTree<T, S> snapshot;
+        final long next;
+        synchronized (flushLock) {
+            checkNotFailed();
+            next = segment + 1;
+            FileOutputStream nextLog = new FileOutputStream(file(LOG, next), true);
+            final FileOutputStream previous;
+            final byte[] batch;
+            final long last;
+            synchronized (writeLock) {
+                // the records still pending belong to the current segment
+                // and then the tree matches its end exactly
+                batch = pending.toByteArray();
+                pending.reset();
+                last = appended;
+                snapshot = tree;
+                previous = log;
+                log = nextLog;
+                segment = next;
+            }
+            try {
+                write(previous, batch, last);
+            } finally {
+                previous.close();
+            }
+        }
+        File temp = new File(directory, SNAPSHOT + next + TEMP);
+        SerializerHelper.write(snapshotSerializer, snapshot, temp);
+        forceFile(temp);
+        if (!temp.renameTo(file(SNAPSHOT, next)))
+            throw new IOException("could not rename " + temp);
+        for (File f : list(directory)) {
+            long n = index(f, SNAPSHOT);
+            if (n == -1)
+                n = index(f, LOG);
+            if (n != -1 && n < next && !f.delete())
+                throw new IOException("could not delete " + f);
+        }
+    }
+
+    private void checkpointInBackground() {
+        if (!checkpointScheduled.compareAndSet(false, true))
+            return;
+        final Worker worker = scheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                try {
+                    synchronized (checkpointLock) {
+                        if (!closed)
+                            writeCheckpoint();
+                    }
+                } catch (IOException e) {
+                    // writers keep going on the log and the next checkpoint
+                    // will try again but the caller of checkpoint() or close()
+                    // gets to hear about it
+                    checkpointFailure = e;
+                } finally {
+                    synchronized (checkpointLock) {
+                        checkpointScheduled.set(false);
+                        checkpointLock.notifyAll();
+                    }
+                    worker.unsubscribe();
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for a scheduled checkpoint to finish, forces any pending records to
+     * disk and closes the log. Later mutations and checkpoints throw an
+     * {@link IOException}.
+     *
+     * @throws IOException
+     *             if the pending records cannot be written or if a checkpoint
+     *             run in the background failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (checkpointLock) {
+            while (checkpointScheduled.get()) {
+                try {
+                    checkpointLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted waiting for checkpoint");
+                }
+            }
+            if (closed)
+                return;
+            synchronized (flushLock) {
+                synchronized (writeLock) {
+                    closed = true;
+                }
+                try {
+                    if (failure == null)
+                        writePending();
+                } finally {
+                    log.close();
+                }
+            }
+            checkCheckpointNotFailed();
+        }
+    }
+
+    private File file(String prefix, long n) {
+        return new File(directory, prefix + n);
+    }
+
+    private static void forceFile(File file) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(file, "rw");
+        try {
+            f.getChannel().force(true);
+        } finally {
+            f.close();
+        }
+    }
+
+    private static List<File> list(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return Collections.emptyList();
+        else {
+            List<File> list = new ArrayList<File>();
+            Collections.addAll(list, files);
+            return list;
+        }
+    }
+
+    // returns -1 if the file is not named prefix followed by a number
+    private static long index(File file, String prefix) {
+        String name = file.getName();
+        if (!name.startsWith(prefix))
+            return -1;
+        try {
+            return Long.parseLong(name.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static <T, S extends Geometry> DurableRTree<T, S> open(Builder<T, S> b)
+            throws IOException {
+        File directory = b.directory;
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("could not create directory " + directory);
+        long snapshotIndex = -1;
+        List<Long> logs = new ArrayList<Long>();
+        for (File f : list(directory)) {
+            if (f.getName().startsWith(SNAPSHOT) && f.getName().endsWith(TEMP)) {
+                // an interrupted checkpoint
+                if (!f.delete())
+                    throw new IOException("could not delete " + f);
+            } else {
+                snapshotIndex = Math.max(snapshotIndex, index(f, SNAPSHOT));
+                long n = index(f, LOG);
+                if (n != -1)
+                    logs.add(n);
+            }
+        }
+        Collections.sort(logs);
+        RTree<T, S> tree;
+        if (snapshotIndex == -1)
+            tree = b.initial;
+        else
+            tree = SerializerHelper.read(b.snapshotSerializer,
+                    new File(directory, SNAPSHOT + snapshotIndex), b.structure);
+        long segment = Math.max(0, snapshotIndex);
+        for (long n : logs) {
+            if (n >= segment) {
+                tree = replay(tree, new File(directory, LOG + n), b.valueDeserializer);
+                segment = n;
+            }
+        }
+        return new DurableRTree<T, S>(b, tree, segment);
+    }
+
+    private static <T, S extends Geometry> RTree<T, S> replay(RTree<T, S> tree, File file,
+            Func1<byte[], ? extends T> deserializer) throws IOException {
+        long position = 0;
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            LogRecords.Record<T, S> record;
+            while ((record = LogRecords.<T, S> read(in, deserializer)) != null) {
+                tree = apply(tree, record.op, record.entry);
+                position += record.size;
+            }
+        } finally {
+            in.close();
+        }
+        if (position < file.length()) {
+            // drop the torn record so that new records follow good ones
+            RandomAccessFile f = new RandomAccessFile(file, "rw");
+            try {
+                f.setLength(position);
+                f.getChannel().force(true);
+            } finally {
+                f.close();
+            }
+        }
+        return tree;
+    }
+
+    public static final class BuilderUntyped {
+
+        private final File directory;
+
+        private BuilderUntyped(File directory) {
+            Preconditions.checkNotNull(directory);
+            this.directory = directory;
+        }
+
+        /**
+         * Sets the serializer used to write and read snapshots.
+         *
+         * @param serializer
+         *            snapshot serializer
+         * @param <T>
+         *            the value type
+         * @param <S>
+         *            the geometry type
+         * @return builder
+         */
+        public <T, S extends Geometry> Builder<T, S> snapshots(Serializer<T, S> serializer) {
+            return new Builder<T, S>(directory, serializer);
+        }
+
+    }
+
+    public static final class Builder<T, S extends Geometry> {
+
+        private static final long DEFAULT_CHECKPOINT_AFTER = 100000;
+
+        private final File directory;
+        private final Serializer<T, S> snapshotSerializer;
+        private Func1<? super T, byte[]> valueSerializer;
+        private Func1<byte[], ? extends T> valueDeserializer;
+        private RTree<T, S> initial = RTree.create();
+        private InternalStructure structure = InternalStructure.DEFAULT;
+        private long checkpointAfter = DEFAULT_CHECKPOINT_AFTER;
+        private Scheduler scheduler = Schedulers.io();
+
+        private Builder(File directory, Serializer<T, S> snapshotSerializer) {
+            Preconditions.checkNotNull(snapshotSerializer);
+            this.directory = directory;
+            this.snapshotSerializer = snapshotSerializer;
+        }
+
+        /**
+         * Sets how values are written to and read from the log.
+         *
+         * @param serializer
+         *            converts a value to bytes
+         * @param deserializer
+         *            converts bytes to a value
+         * @return this
+         */
+        public Builder<T, S> values(Func1<? super T, byte[]> serializer,
+                Func1<byte[], ? extends T> deserializer) {
+            Preconditions.checkNotNull(serializer);
+            Preconditions.checkNotNull(deserializer);
+            this.valueSerializer = serializer;
+            this.valueDeserializer = deserializer;
+            return this;
+        }
+
+        /**
+         * Sets the tree to start from when the directory holds no snapshot
+         * (for example an empty tree with a particular configuration). The
+         * default is {@link RTree#create()}.
+         *
+         * @param tree
+         *            the initial tree
+         * @return this
+         */
+        public Builder<T, S> initial(RTree<T, S> tree) {
+            Preconditions.checkNotNull(tree);
+            this.initial = tree;
+            return this;
+        }
+
+        public Builder<T, S> structure(InternalStructure structure) {
+            Preconditions.checkNotNull(structure);
+            this.structure = structure;
+            return this;
+        }
+
+        /**
+         * Sets the number of mutations after which a checkpoint is started in
+         * the background. Zero disables automatic checkpoints. The default is
+         * 100,000.
+         *
+         * @param mutations
+         *            number of mutations between checkpoints
+         * @return this
+         */
+        public Builder<T, S> checkpointAfter(long mutations) {
+            Preconditions.checkArgument(mutations >= 0, "mutations cannot be negative");
+            this.checkpointAfter = mutations;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler that automatic checkpoints run on. The default
+         * is {@link Schedulers#io()}.
+         *
+         * @param scheduler
+         *            scheduler for background checkpoints
+         * @return this
+         */
+        public Builder<T, S> scheduler(Scheduler scheduler) {
+            Preconditions.checkNotNull(scheduler);
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Recovers the tree from the directory (creating the directory if
+         * necessary) and opens the latest log segment for appending.
+         *
+         * @return the durable tree
+         * @throws IOException
+         *             if the snapshot or log cannot be read
+         */
+        public DurableRTree<T, S> open() throws IOException {
+            Preconditions.checkArgument(valueSerializer != null,
+                    "values serializer and deserializer must be set");
+            return DurableRTree.open(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.github.davidmoten.rtree.durable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Line;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.functions.Func1;
+
+/**
+ * Encodes and decodes mutation records in a log segment. A record is
+ *
+ * <pre>
+ * int payloadLength, int crc32(payload), payload
+ * </pre>
+ *
+ * and the payload is the operation, the geometry (a type byte followed by two
+ * to four floats) and the serialized value:
+ *
+ * <pre>
+ * byte op, byte geometryType, float..., int valueLength, byte[] value
+ * </pre>
+ *
+ * A value length of -1 represents a null value. A record that is cut short or
+ * fails its checksum marks the end of the usable log (a write torn by a
+ * crash).
+ */
+final class LogRecords {
+
+    static final int ADD = 0;
+    static final int DELETE = 1;
+    static final int DELETE_ALL = 2;
+
+    private static final int POINT = 0;
+    private static final int RECTANGLE = 1;
+    private static final int CIRCLE = 2;
+    private static final int LINE = 3;
+
+    // guards against allocating huge arrays for a corrupt length
+    private static final int MAX_PAYLOAD = 1 << 28;
+
+    private LogRecords() {
+        // prevent instantiation
+    }
+
+    static <T, S extends Geometry> void write(DataOutputStream out, int op, Entry<T, S> entry,
+            Func1<? super T, byte[]> serializer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(op);
+        writeGeometry(payload, entry.geometry());
+        T value = entry.value();
+        if (value == null)
+            payload.writeInt(-1);
+        else {
+            byte[] b = serializer.call(value);
+            payload.writeInt(b.length);
+            payload.write(b);
+        }
+        payload.flush();
+        byte[] b = bytes.toByteArray();
+        out.writeInt(b.length);
+        out.writeInt(crc(b, b.length));
+        out.write(b);
+    }
+
+    private static void writeGeometry(DataOutputStream out, Geometry g) throws IOException {
+        // Point must be checked before Rectangle because Point is a Rectangle
+        if (g instanceof Point) {
+            Point p = (Point) g;
+            out.writeByte(POINT);
+            out.writeFloat(p.x());
+            out.writeFloat(p.y());
+        } else if (g instanceof Rectangle) {
+            Rectangle r = (Rectangle) g;
+            out.writeByte(RECTANGLE);
+            writeFloats(out, r.x1(), r.y1(), r.x2(), r.y2());
+        } else if (g instanceof Circle) {
+            Circle c = (Circle) g;
+            out.writeByte(CIRCLE);
+            out.writeFloat(c.x());
+            out.writeFloat(c.y());
+            out.writeFloat(c.radius());
+        } else if (g instanceof Line) {
+            Line line = (Line) g;
+            out.writeByte(LINE);
+            writeFloats(out, line.x1(), line.y1(), line.x2(), line.y2());
+        } else
+            throw new IllegalArgumentException(
+                    "unsupported geometry type for the log: " + g.getClass());
+    }
+
+    private static void writeFloats(DataOutputStream out, float a, float b, float c, float d)
+            throws IOException {
+        out.writeFloat(a);
+        out.writeFloat(b);
+        out.writeFloat(c);
+        out.writeFloat(d);
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record or null if the log ends (cleanly or with a torn
+     *         record)
+     */
+    static <T, S extends Geometry> Record<T, S> read(DataInputStream in,
+            Func1<byte[], ? extends T> deserializer) throws IOException {
+        byte[] b;
+        try {
+            int length = in.readInt();
+            int crc = in.readInt();
+            if (length < 0 || length > MAX_PAYLOAD)
+                return null;
+            b = new byte[length];
+            in.readFully(b);
+            if (crc(b, length) != crc)
+                return null;
+        } catch (EOFException e) {
+            return null;
+        }
+        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(b));
+        int op = payload.readByte();
+        S geometry = LogRecords.<S> readGeometry(payload);
+        int valueLength = payload.readInt();
+        final T value;
+        if (valueLength == -1)
+            value = null;
+        else {
+            byte[] v = new byte[valueLength];
+            payload.readFully(v);
+            value = deserializer.call(v);
+        }
+        return new Record<T, S>(op, Entries.entry(value, geometry), 8 + b.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S extends Geometry> S readGeometry(DataInputStream in) throws IOException {
+        int type = in.readByte();
+        final Geometry g;
+        if (type == POINT)
+            g = Geometries.point(in.readFloat(), in.readFloat());
+        else if (type == RECTANGLE)
+            g = Geometries.rectangle(in.readFloat(), in.readFloat(), in.readFloat(),
+                    in.readFloat());
+        else if (type == CIRCLE)
+            g = Geometries.circle(in.readFloat(), in.readFloat(), in.readFloat());
+        else if (type == LINE)
+            g = Geometries.line(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+        else
+            throw new IOException("unexpected geometry type in log: " + type);
+        return (S) g;
+    }
+
+    private static int crc(byte[] b, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(b, 0, length);
+        return (int) crc.getValue();
+    }
+
+    static final class Record<T, S extends Geometry> {
+        final int op;
+        final Entry<T, S> entry;
+        // bytes occupied in the log including the length and checksum
+        final int size;
+
+        Record(int op, Entry<T, S> entry, int size) {
+            this.op = op;
+            this.entry = entry;
+            this.size = size;
+        }
+    }
+
+}
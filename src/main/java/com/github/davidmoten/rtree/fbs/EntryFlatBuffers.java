@@ -0,0 +1,102 @@
+package com.github.davidmoten.rtree.fbs;
+
+import java.nio.ByteBuffer;
+
+import com.github.davidmoten.guavamini.Objects;
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+import rx.functions.Func1;
+
+/**
+ * Entry read from a flatbuffers backed tree. The serialized value is held as
+ * a view of the underlying buffer and only deserialized on the first call to
+ * {@link #value()}, so searches that only count results or look at
+ * geometries do not pay for deserialization. The serialized form is
+ * available without deserializing from {@link #valueBytes()}.
+ *
+ * @param <T>
+ *            value type
+ * @param <S>
+ *            geometry type
+ */
+public final class EntryFlatBuffers<T, S extends Geometry> implements Entry<T, S> {
+
+    private static final Object UNSET = new Object();
+
+    private final S geometry;
+    // null when the entry has no serialized value
+    private final ByteBuffer bytes;
+    private final Func1<byte[], ? extends T> deserializer;
+    private volatile Object value = UNSET;
+
+    EntryFlatBuffers(S geometry, ByteBuffer bytes, Func1<byte[], ? extends T> deserializer) {
+        Preconditions.checkNotNull(geometry);
+        this.geometry = geometry;
+        this.bytes = bytes;
+        this.deserializer = deserializer;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T value() {
+        Object v = value;
+        if (v == UNSET) {
+            // a race may deserialize more than once which is harmless
+            v = FlatBuffersHelper.parseObject(deserializer, valueBytes());
+            value = v;
+        }
+        return (T) v;
+    }
+
+    /**
+     * Returns a read-only view of the serialized value (positioned at its
+     * first byte and limited to its last) or null if the entry has no
+     * serialized value. The view shares the underlying buffer of the tree
+     * so no bytes are copied.
+     *
+     * @return serialized value or null
+     */
+    public ByteBuffer valueBytes() {
+        if (bytes == null)
+            return null;
+        else
+            return bytes.asReadOnlyBuffer();
+    }
+
+    @Override
+    public S geometry() {
+        return geometry;
+    }
+
+    @Override
+    public String toString() {
+        return "Entry [value=" + value() + ", geometry=" + geometry + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        // consistent with EntryDefault so deserializes the value (hashing is
+        // rare compared with the geometry first equals used by delete)
+        return Objects.hashCode(value(), geometry);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Entry) {
+            Entry<?, ?> other = (Entry<?, ?>) obj;
+            if (!geometry.equals(other.geometry()))
+                return false;
+            else if (obj instanceof EntryFlatBuffers && bytes != null
+                    && deserializer == ((EntryFlatBuffers<?, ?>) obj).deserializer
+                    && bytes.equals(((EntryFlatBuffers<?, ?>) obj).bytes))
+                // the same serialized form deserializes to equal values
+                return true;
+            else
+                return Objects.equal(value(), other.value());
+        } else
+            return false;
+    }
+
+}
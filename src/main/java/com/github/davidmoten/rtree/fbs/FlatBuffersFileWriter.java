@@ -0,0 +1,242 @@
+package com.github.davidmoten.rtree.fbs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.flatbuffers.FlatBufferBuilder;
+
+import rx.functions.Func1;
+
+/**
+ * Writes a tree to a file in the same FlatBuffers format as
+ * {@link SerializerFlatBuffers#write(RTree, java.io.OutputStream)} without
+ * building the whole buffer in memory.
+ * 
+ * <p>
+ * FlatBuffers offsets point forwards so a node must be written before its
+ * children. The size of every non-leaf record is known from its child count
+ * alone, so the non-leaf records are given positions in pre-order at the start
+ * of the file and the leaves (the only records whose size depends on the
+ * serialized values) are streamed after them. Each leaf is built with its own
+ * small {@link FlatBufferBuilder} (FlatBuffers offsets are relative so the
+ * result can be placed anywhere) and a non-leaf record is written to its
+ * reserved position once the positions of its children are known. Memory used
+ * is bounded by the largest leaf and the depth of the tree.
+ * 
+ * <p>
+ * The layout of the file is:
+ * 
+ * <pre>
+ * root offset | Tree_ | Context_ | non-leaf Node_s | leaf Node_s
+ * </pre>
+ */
+final class FlatBuffersFileWriter<T, S extends Geometry> {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // header positions
+    private static final int TREE_VTABLE = 4;
+    private static final int TREE_TABLE = 16;
+    private static final int CONTEXT_VTABLE = 32;
+    private static final int CONTEXT_TABLE = 44;
+    private static final int HEADER_SIZE = 72;
+
+    // a non-leaf record is a vtable (padded to 12 bytes), the table (soffset,
+    // mbb struct and children offset) and the children vector
+    private static final int NON_LEAF_TABLE = 12;
+    private static final int NON_LEAF_VECTOR = 36;
+
+    private final FileChannel channel;
+    private final Func1<? super T, byte[]> serializer;
+    private final FlatBufferBuilder builder = new FlatBufferBuilder(0);
+    private ByteBuffer leafBuffer = ByteBuffer.allocate(1024);
+
+    // leaves are written sequentially through this buffer
+    private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+    private long outPosition;
+
+    private long nonLeafCursor = HEADER_SIZE;
+
+    private FlatBuffersFileWriter(FileChannel channel, Func1<? super T, byte[]> serializer) {
+        this.channel = channel;
+        this.serializer = serializer;
+    }
+
+    static <T, S extends Geometry> void write(RTree<T, S> tree, FileChannel channel,
+            Func1<? super T, byte[]> serializer) throws IOException {
+        new FlatBuffersFileWriter<T, S>(channel, serializer).write(tree);
+    }
+
+    private void write(RTree<T, S> tree) throws IOException {
+        final Rectangle bounds;
+        final long rootPosition;
+        if (tree.root().isPresent()) {
+            Node<T, S> root = tree.root().get();
+            bounds = root.geometry().mbr();
+            outPosition = align(HEADER_SIZE + nonLeafSize(root));
+            checkSize(outPosition);
+            rootPosition = write(root);
+            flush();
+        } else {
+            bounds = Geometries.rectangle(0, 0, 0, 0);
+            outPosition = HEADER_SIZE;
+            rootPosition = 0;
+        }
+        channel.truncate(outPosition);
+        writeHeader(bounds, tree.context().minChildren(), tree.context().maxChildren(),
+                rootPosition, tree.size());
+    }
+
+    private static long nonLeafSize(Node<?, ?> node) {
+        if (node instanceof Leaf)
+            return 0;
+        NonLeaf<?, ?> nonLeaf = (NonLeaf<?, ?>) node;
+        int count = nonLeaf.count();
+        long size = NON_LEAF_VECTOR + 4 + 4 * count;
+        for (int i = 0; i < count; i++)
+            size += nonLeafSize(nonLeaf.child(i));
+        return size;
+    }
+
+    /**
+     * Writes the node and its descendants and returns the file position of
+     * the node's table.
+     */
+    private long write(Node<T, S> node) throws IOException {
+        if (node instanceof Leaf)
+            return writeLeaf((Leaf<T, S>) node);
+        NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+        int count = nonLeaf.count();
+        long start = nonLeafCursor;
+        nonLeafCursor += NON_LEAF_VECTOR + 4 + 4 * count;
+        long[] children = new long[count];
+        for (int i = 0; i < count; i++)
+            children[i] = write(nonLeaf.child(i));
+
+        ByteBuffer b = newBuffer(NON_LEAF_VECTOR + 4 + 4 * count);
+        // vtable: size, table size, then field offsets of mbb, children and
+        // entries (absent)
+        b.putShort(0, (short) 10);
+        b.putShort(2, (short) 24);
+        b.putShort(4, (short) 4);
+        b.putShort(6, (short) 20);
+        b.putShort(8, (short) 0);
+        b.putInt(NON_LEAF_TABLE, NON_LEAF_TABLE);
+        putBox(b, NON_LEAF_TABLE + 4, nonLeaf.geometry().mbr());
+        b.putInt(NON_LEAF_TABLE + 20, NON_LEAF_VECTOR - (NON_LEAF_TABLE + 20));
+        b.putInt(NON_LEAF_VECTOR, count);
+        for (int i = 0; i < count; i++) {
+            int p = NON_LEAF_VECTOR + 4 + 4 * i;
+            b.putInt(p, offset(start + p, children[i]));
+        }
+        writeFully(b, start);
+        return start + NON_LEAF_TABLE;
+    }
+
+    private long writeLeaf(Leaf<T, S> leaf) throws IOException {
+        builder.init(leafBuffer);
+        builder.finish(FlatBuffersHelper.addEntries(leaf.entries(), builder, serializer));
+        ByteBuffer bb = builder.dataBuffer();
+        leafBuffer = bb;
+        long start = outPosition + out.position();
+        long position = start + bb.getInt(bb.position());
+        append(bb);
+        // keep every leaf 8 byte aligned
+        while (out.position() % 8 != 0)
+            out.put((byte) 0);
+        return position;
+    }
+
+    private void append(ByteBuffer bb) throws IOException {
+        checkSize(outPosition + out.position() + bb.remaining());
+        if (bb.remaining() > out.remaining()) {
+            flush();
+            if (bb.remaining() > out.remaining()) {
+                int length = bb.remaining();
+                writeFully(bb, outPosition);
+                outPosition += length;
+                return;
+            }
+        }
+        out.put(bb);
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        int length = out.remaining();
+        writeFully(out, outPosition);
+        outPosition += length;
+        out.clear();
+    }
+
+    private void writeHeader(Rectangle bounds, int minChildren, int maxChildren,
+            long rootPosition, int size) throws IOException {
+        boolean hasRoot = rootPosition != 0;
+        ByteBuffer b = newBuffer(HEADER_SIZE);
+        b.putInt(0, TREE_TABLE);
+        // Tree_ vtable: context, root, size
+        b.putShort(TREE_VTABLE, (short) 10);
+        b.putShort(TREE_VTABLE + 2, (short) 16);
+        b.putShort(TREE_VTABLE + 4, (short) 4);
+        b.putShort(TREE_VTABLE + 6, (short) (hasRoot ? 8 : 0));
+        b.putShort(TREE_VTABLE + 8, (short) 12);
+        b.putInt(TREE_TABLE, TREE_TABLE - TREE_VTABLE);
+        b.putInt(TREE_TABLE + 4, CONTEXT_TABLE - (TREE_TABLE + 4));
+        if (hasRoot)
+            b.putInt(TREE_TABLE + 8, offset(TREE_TABLE + 8, rootPosition));
+        b.putInt(TREE_TABLE + 12, size);
+        // Context_ vtable: bounds, minChildren, maxChildren
+        b.putShort(CONTEXT_VTABLE, (short) 10);
+        b.putShort(CONTEXT_VTABLE + 2, (short) 28);
+        b.putShort(CONTEXT_VTABLE + 4, (short) 4);
+        b.putShort(CONTEXT_VTABLE + 6, (short) 20);
+        b.putShort(CONTEXT_VTABLE + 8, (short) 24);
+        b.putInt(CONTEXT_TABLE, CONTEXT_TABLE - CONTEXT_VTABLE);
+        putBox(b, CONTEXT_TABLE + 4, bounds);
+        b.putInt(CONTEXT_TABLE + 20, minChildren);
+        b.putInt(CONTEXT_TABLE + 24, maxChildren);
+        writeFully(b, 0);
+    }
+
+    private static void putBox(ByteBuffer b, int index, Rectangle r) {
+        b.putFloat(index, r.x1());
+        b.putFloat(index + 4, r.y1());
+        b.putFloat(index + 8, r.x2());
+        b.putFloat(index + 12, r.y2());
+    }
+
+    private static int offset(long from, long to) throws IOException {
+        checkSize(to);
+        return (int) (to - from);
+    }
+
+    private static void checkSize(long position) throws IOException {
+        // FlatBuffers offsets are 32 bit and the java runtime indexes buffers
+        // with ints
+        if (position > Integer.MAX_VALUE)
+            throw new IOException("serialized tree exceeds the maximum FlatBuffers size of 2GB");
+    }
+
+    private void writeFully(ByteBuffer b, long position) throws IOException {
+        while (b.hasRemaining())
+            position += channel.write(b, position);
+    }
+
+    private static ByteBuffer newBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+}
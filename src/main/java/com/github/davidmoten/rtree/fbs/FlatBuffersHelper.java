@@ -2,7 +2,6 @@ package com.github.davidmoten.rtree.fbs;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import com.github.davidmoten.guavamini.Preconditions;
@@ -89,40 +88,50 @@ final class FlatBuffersHelper {
 
     }
 
+    /**
+     * Returns the entries of a leaf with their values deserialized (so that
+     * they hold no reference to the underlying buffer) if {@code lazy} is
+     * false or deserialized on demand if {@code lazy} is true.
+     */
     static <T, S extends Geometry> List<Entry<T, S>> createEntries(Node_ node,
-            Func1<byte[], ? extends T> deserializer) {
+            Func1<byte[], ? extends T> deserializer, boolean lazy) {
         int numEntries = node.entriesLength();
         List<Entry<T, S>> entries = new ArrayList<Entry<T, S>>(numEntries);
         Preconditions.checkArgument(numEntries > 0);
         Entry_ entry = new Entry_();
         Geometry_ geom = new Geometry_();
         for (int i = 0; i < numEntries; i++) {
-            Entry<T, S> ent = createEntry(node, deserializer, entry, geom, i);
+            Entry<T, S> ent = createEntry(node, deserializer, entry, geom, i, lazy);
             entries.add(ent);
         }
         return entries;
     }
 
-    @SuppressWarnings("unchecked")
     private static <T, S extends Geometry> Entry<T, S> createEntry(Node_ node,
-            Func1<byte[], ? extends T> deserializer, Entry_ entry, Geometry_ geom, int i) {
+            Func1<byte[], ? extends T> deserializer, Entry_ entry, Geometry_ geom, int i,
+            boolean lazy) {
         node.entries(entry, i);
         entry.geometry(geom);
-        final Geometry g = toGeometry(geom);
-        return Entries.entry(parseObject(deserializer, entry), (S) g);
+        final S g = toGeometry(geom);
+        if (lazy)
+            return new EntryFlatBuffers<T, S>(g, entry.objectAsByteBuffer(), deserializer);
+        else
+            return Entries.entry(parseObject(deserializer, entry.objectAsByteBuffer()), g);
     }
 
     static <T, S extends Geometry> Entry<T, S> createEntry(Node_ node,
             Func1<byte[], ? extends T> deserializer, int i) {
-        return createEntry(node, deserializer, new Entry_(), new Geometry_(), i);
+        return createEntry(node, deserializer, new Entry_(), new Geometry_(), i, true);
     }
 
-    static <T> T parseObject(Func1<byte[], ? extends T> deserializer, Entry_ entry) {
-        ByteBuffer bb = entry.objectAsByteBuffer();
+    static <T> T parseObject(Func1<byte[], ? extends T> deserializer, ByteBuffer bb) {
         if (bb == null) {
             return null;
         } else {
-            byte[] bytes = Arrays.copyOfRange(bb.array(), bb.position(), bb.limit());
+            // the buffer may be direct or memory mapped so is not
+            // necessarily backed by an array
+            byte[] bytes = new byte[bb.remaining()];
+            bb.get(bytes);
             T t = deserializer.call(bytes);
             return t;
         }
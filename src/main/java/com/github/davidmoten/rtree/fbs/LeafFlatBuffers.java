@@ -79,7 +79,7 @@ final class LeafFlatBuffers<T, S extends Geometry> implements Leaf<T, S> {
 
     @Override
     public List<Entry<T, S>> entries() {
-        return FlatBuffersHelper.createEntries(node, deserializer);
+        return FlatBuffersHelper.createEntries(node, deserializer, true);
     }
 
     @Override
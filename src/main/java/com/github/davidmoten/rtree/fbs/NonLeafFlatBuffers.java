@@ -1,24 +1,27 @@
 package com.github.davidmoten.rtree.fbs;
 
 import static com.github.davidmoten.rtree.fbs.FlatBuffersHelper.createBox;
-import static com.github.davidmoten.rtree.fbs.FlatBuffersHelper.parseObject;
 import static com.github.davidmoten.rtree.fbs.FlatBuffersHelper.toGeometry;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.github.davidmoten.guavamini.Preconditions;
 import com.github.davidmoten.rtree.Context;
-import com.github.davidmoten.rtree.Entries;
 import com.github.davidmoten.rtree.Entry;
 import com.github.davidmoten.rtree.Node;
 import com.github.davidmoten.rtree.NonLeaf;
 import com.github.davidmoten.rtree.fbs.generated.Box_;
+import com.github.davidmoten.rtree.fbs.generated.Circle_;
 import com.github.davidmoten.rtree.fbs.generated.Entry_;
+import com.github.davidmoten.rtree.fbs.generated.GeometryType_;
 import com.github.davidmoten.rtree.fbs.generated.Geometry_;
 import com.github.davidmoten.rtree.fbs.generated.Node_;
+import com.github.davidmoten.rtree.fbs.generated.Point_;
 import com.github.davidmoten.rtree.geometry.Geometries;
 import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.IntersectsRectangle;
 import com.github.davidmoten.rtree.internal.NodeAndEntries;
 import com.github.davidmoten.rtree.internal.NonLeafHelper;
 
@@ -53,14 +56,111 @@ final class NonLeafFlatBuffers<T, S extends Geometry> implements NonLeaf<T, S> {
     @Override
     public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> criterion,
             Subscriber<? super Entry<T, S>> subscriber) {
-        // pass through entry and geometry and box instances to be reused for
-        // flatbuffers extraction this reduces allocation/gc costs (but of
-        // course introduces some mutable ugliness into the codebase)
-        searchWithoutBackpressure(node, criterion, subscriber, deserializer, new Entry_(),
-                new Geometry_(), new Box_());
+        if (criterion instanceof IntersectsRectangle)
+            new RectangleSearch<T, S>((IntersectsRectangle) criterion, subscriber, deserializer)
+                    .search(node, 0);
+        else
+            // pass through entry and geometry and box instances to be reused
+            // for flatbuffers extraction this reduces allocation/gc costs (but
+            // of course introduces some mutable ugliness into the codebase)
+            searchWithoutBackpressure(node, criterion, subscriber, deserializer, new Entry_(),
+                    new Geometry_(), new Box_());
+    }
+
+    /**
+     * Rectangle intersection search that tests the floats stored in the
+     * buffer directly. The flatbuffers accessor objects are allocated once per
+     * search (one {@link Node_} per level) and reused so no objects are
+     * created while traversing. Geometries are only created for the entries
+     * emitted and for circles and lines whose bounding rectangles intersect
+     * (to make the exact test).
+     */
+    private static final class RectangleSearch<T, S extends Geometry> {
+
+        private final IntersectsRectangle criterion;
+        private final Subscriber<? super Entry<T, S>> subscriber;
+        private final Func1<byte[], ? extends T> deserializer;
+        private final Entry_ entry = new Entry_();
+        private final Geometry_ geometry = new Geometry_();
+        private final Box_ box = new Box_();
+        private final Point_ point = new Point_();
+        private final Circle_ circle = new Circle_();
+        private Node_[] nodes = new Node_[8];
+
+        RectangleSearch(IntersectsRectangle criterion, Subscriber<? super Entry<T, S>> subscriber,
+                Func1<byte[], ? extends T> deserializer) {
+            this.criterion = criterion;
+            this.subscriber = subscriber;
+            this.deserializer = deserializer;
+        }
+
+        void search(Node_ node, int depth) {
+            node.mbb(box);
+            if (!criterion.intersects(box.minX(), box.minY(), box.maxX(), box.maxY()))
+                return;
+            int numChildren = node.childrenLength();
+            if (numChildren > 0) {
+                Node_ child = child(depth);
+                for (int i = 0; i < numChildren; i++) {
+                    if (subscriber.isUnsubscribed())
+                        return;
+                    node.children(child, i);
+                    search(child, depth + 1);
+                }
+            } else {
+                int numEntries = node.entriesLength();
+                for (int i = 0; i < numEntries; i++) {
+                    if (subscriber.isUnsubscribed())
+                        return;
+                    node.entries(entry, i);
+                    entry.geometry(geometry);
+                    if (matches())
+                        subscriber.onNext(new EntryFlatBuffers<T, S>(
+                                FlatBuffersHelper.<S> toGeometry(geometry),
+                                entry.objectAsByteBuffer(), deserializer));
+                }
+            }
+        }
+
+        private boolean matches() {
+            byte type = geometry.type();
+            if (type == GeometryType_.Point) {
+                geometry.point(point);
+                float x = point.x();
+                float y = point.y();
+                return criterion.intersects(x, y, x, y);
+            } else if (type == GeometryType_.Box) {
+                geometry.box(box);
+                return criterion.intersects(box.minX(), box.minY(), box.maxX(), box.maxY());
+            } else if (type == GeometryType_.Circle) {
+                geometry.circle(circle);
+                float x = circle.x();
+                float y = circle.y();
+                float r = circle.radius();
+                return criterion.intersects(x - r, y - r, x + r, y + r)
+                        && criterion.call(toGeometry(geometry));
+            } else if (type == GeometryType_.Line) {
+                geometry.line(box);
+                float x1 = box.minX();
+                float y1 = box.minY();
+                float x2 = box.maxX();
+                float y2 = box.maxY();
+                return criterion.intersects(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2),
+                        Math.max(y1, y2)) && criterion.call(toGeometry(geometry));
+            } else
+                throw new RuntimeException("unexpected");
+        }
+
+        private Node_ child(int depth) {
+            if (depth == nodes.length)
+                nodes = Arrays.copyOf(nodes, depth * 2);
+            if (nodes[depth] == null)
+                nodes[depth] = new Node_();
+            return nodes[depth];
+        }
+
     }
 
-    @SuppressWarnings("unchecked")
     private static <T, S extends Geometry> void searchWithoutBackpressure(Node_ node,
             Func1<? super Geometry, Boolean> criterion, Subscriber<? super Entry<T, S>> subscriber,
             Func1<byte[], ? extends T> deserializer, Entry_ entry, Geometry_ geometry, Box_ box) {
@@ -92,11 +192,11 @@ final class NonLeafFlatBuffers<T, S extends Geometry> implements NonLeaf<T, S> {
                 node.entries(entry, i);
                 // set geometry
                 entry.geometry(geometry);
-                final Geometry g = toGeometry(geometry);
+                final S g = toGeometry(geometry);
                 if (criterion.call(g)) {
-                    T t = parseObject(deserializer, entry);
-                    Entry<T, S> ent = Entries.entry(t, (S) g);
-                    subscriber.onNext(ent);
+                    // the value is deserialized when first requested
+                    subscriber.onNext(new EntryFlatBuffers<T, S>(g, entry.objectAsByteBuffer(),
+                            deserializer));
                 }
             }
         }
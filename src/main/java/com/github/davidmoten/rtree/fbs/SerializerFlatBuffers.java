@@ -1,16 +1,22 @@
 package com.github.davidmoten.rtree.fbs;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.List;
 
 import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.guavamini.Preconditions;
 import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
 import com.github.davidmoten.rtree.Context;
 import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.FileSerializer;
 import com.github.davidmoten.rtree.InternalStructure;
 import com.github.davidmoten.rtree.Leaf;
 import com.github.davidmoten.rtree.Node;
@@ -33,7 +39,7 @@ import com.google.flatbuffers.FlatBufferBuilder;
 
 import rx.functions.Func1;
 
-public final class SerializerFlatBuffers<T, S extends Geometry> implements Serializer<T, S> {
+public final class SerializerFlatBuffers<T, S extends Geometry> implements FileSerializer<T, S> {
 
     private final FactoryFlatBuffers<T, S> factory;
 
@@ -89,6 +95,22 @@ public final class SerializerFlatBuffers<T, S extends Geometry> implements Seria
         os.write(bb.array(), bb.position(), bb.remaining());
     }
 
+    /**
+     * Writes the tree to the file in the same format as
+     * {@link #write(RTree, OutputStream)} but without holding the serialized
+     * tree in memory: leaves are serialized one at a time and streamed to the
+     * file.
+     */
+    @Override
+    public void write(RTree<T, S> tree, File file) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(file, "rw");
+        try {
+            FlatBuffersFileWriter.write(tree, f.getChannel(), factory.serializer());
+        } finally {
+            f.close();
+        }
+    }
+
     private static <T, S extends Geometry> int addNode(Node<T, S> node, FlatBufferBuilder builder,
             Func1<? super T, byte[]> serializer) {
         if (node instanceof Leaf) {
@@ -121,7 +143,33 @@ public final class SerializerFlatBuffers<T, S extends Geometry> implements Seria
     public RTree<T, S> read(InputStream is, long sizeBytes, InternalStructure structure)
             throws IOException {
         byte[] bytes = readFully(is, (int) sizeBytes);
-        Tree_ t = Tree_.getRootAsTree_(ByteBuffer.wrap(bytes));
+        return read(ByteBuffer.wrap(bytes), structure);
+    }
+
+    /**
+     * Memory maps the file and reads the tree directly from the mapped
+     * buffer. With {@link InternalStructure#SINGLE_ARRAY} no copy of the file
+     * is made on the heap and pages are loaded by the operating system as
+     * they are searched (and may be shared with other processes mapping the
+     * same file).
+     */
+    @Override
+    public RTree<T, S> read(File file, InternalStructure structure) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = f.getChannel();
+            long size = channel.size();
+            Preconditions.checkArgument(size <= Integer.MAX_VALUE,
+                    "file too large to map as a single buffer: " + size);
+            // the mapping stays valid after the channel is closed
+            return read(channel.map(MapMode.READ_ONLY, 0, size), structure);
+        } finally {
+            f.close();
+        }
+    }
+
+    private RTree<T, S> read(ByteBuffer bb, InternalStructure structure) {
+        Tree_ t = Tree_.getRootAsTree_(bb);
         Context<T, S> context = new Context<T, S>(t.context().minChildren(),
                 t.context().maxChildren(), new SelectorRStar(), new SplitterRStar(), factory);
         Node_ node = t.root();
@@ -152,7 +200,7 @@ public final class SerializerFlatBuffers<T, S extends Geometry> implements Seria
             }
             return new NonLeafDefault<T, S>(children, context);
         } else {
-            List<Entry<T, S>> entries = FlatBuffersHelper.createEntries(node, deserializer);
+            List<Entry<T, S>> entries = FlatBuffersHelper.createEntries(node, deserializer, false);
             return new LeafDefault<T, S>(entries, context);
         }
     }
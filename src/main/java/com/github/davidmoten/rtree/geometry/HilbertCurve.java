@@ -0,0 +1,107 @@
+package com.github.davidmoten.rtree.geometry;
+
+import java.util.Comparator;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Utility methods for the Hilbert space-filling curve. The Hilbert index of
+ * the centre of a geometry's minimum bounding rectangle is used to order
+ * entries when bulk loading a Hilbert packed R-tree. Items that are close on
+ * the curve are close in space so sorting a stream by this key before loading
+ * or inserting gives good locality.
+ */
+public final class HilbertCurve {
+
+    /**
+     * Number of bits per dimension used by {@link #key(Rectangle, Geometry)}.
+     * The curve covers a 65536 x 65536 grid and keys fit in 32 bits.
+     */
+    public static final int DEFAULT_BITS = 16;
+
+    private HilbertCurve() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the distance along the Hilbert curve of order {@code bits} of
+     * the cell (x, y).
+     *
+     * @param x
+     *            cell x coordinate in [0, 2^bits)
+     * @param y
+     *            cell y coordinate in [0, 2^bits)
+     * @param bits
+     *            order of the curve (bits per dimension), 1 to 31
+     * @return the Hilbert index in [0, 4^bits)
+     */
+    public static long index(long x, long y, int bits) {
+        Preconditions.checkArgument(bits >= 1 && bits <= 31, "bits must be between 1 and 31");
+        long n = 1L << bits;
+        Preconditions.checkArgument(x >= 0 && x < n && y >= 0 && y < n,
+                "x and y must be in [0, 2^bits)");
+        long d = 0;
+        for (long s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                long t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Returns the Hilbert key of the centre of the minimum bounding rectangle
+     * of {@code g} where {@code bounds} is mapped onto a grid of
+     * {@link #DEFAULT_BITS} bits per dimension. The Hilbert bulk loader uses
+     * the minimum bounding rectangle of all the entries as {@code bounds}.
+     *
+     * @param bounds
+     *            the region mapped onto the curve
+     * @param g
+     *            geometry to calculate the key for
+     * @return the Hilbert key
+     */
+    public static long key(Rectangle bounds, Geometry g) {
+        Rectangle r = g.mbr();
+        return index(cell(bounds.x1(), bounds.x2(), (r.x1() + r.x2()) / 2),
+                cell(bounds.y1(), bounds.y2(), (r.y1() + r.y2()) / 2), DEFAULT_BITS);
+    }
+
+    /**
+     * Returns a comparator that orders items by increasing
+     * {@link #key(Rectangle, Geometry)}.
+     *
+     * @param bounds
+     *            the region mapped onto the curve
+     * @return comparator by Hilbert key
+     */
+    public static Comparator<HasGeometry> comparator(final Rectangle bounds) {
+        return new Comparator<HasGeometry>() {
+            @Override
+            public int compare(HasGeometry g1, HasGeometry g2) {
+                long k1 = key(bounds, g1.geometry());
+                long k2 = key(bounds, g2.geometry());
+                return k1 < k2 ? -1 : (k1 == k2 ? 0 : 1);
+            }
+        };
+    }
+
+    private static long cell(float min, float max, float value) {
+        long maxCell = (1L << DEFAULT_BITS) - 1;
+        if (max <= min)
+            return 0;
+        long c = (long) ((double) (value - min) / (max - min) * maxCell);
+        return Math.max(0, Math.min(maxCell, c));
+    }
+
+}
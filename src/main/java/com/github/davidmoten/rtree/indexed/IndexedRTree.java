@@ -0,0 +1,151 @@
+package com.github.davidmoten.rtree.indexed;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+import rx.functions.Func1;
+
+/**
+ * Holds an {@link RTree} together with a hash index from a key of each value
+ * to its entry so that entries can be deleted and moved knowing only the key.
+ * Keys are unique: adding a value whose key is already present replaces the
+ * existing entry.
+ *
+ * <p>
+ * The index stores the entry rather than its position in the tree. Every
+ * immutable addition or deletion copies the path to the changed leaf and moves
+ * the copied child to the end of its parent (and may split or merge nodes), so
+ * recorded leaf positions would be stale after almost every mutation. Knowing
+ * the exact geometry, a deletion only descends into children whose bounds
+ * contain the entry's bounds and stops at the first match.
+ *
+ * <p>
+ * This class is not thread-safe. {@link #tree()} returns an immutable tree
+ * that can be shared with other threads.
+ *
+ * @param <K>
+ *            the key type
+ * @param <T>
+ *            the value type
+ * @param <S>
+ *            the geometry type
+ */
+public final class IndexedRTree<K, T, S extends Geometry> {
+
+    private final Func1<? super T, ? extends K> key;
+    private final Map<K, Entry<T, S>> index;
+    private RTree<T, S> tree;
+
+    private IndexedRTree(RTree<T, S> tree, Func1<? super T, ? extends K> key,
+            Map<K, Entry<T, S>> index) {
+        this.tree = tree;
+        this.key = key;
+        this.index = index;
+    }
+
+    /**
+     * Returns an indexed holder of the given tree. The entries of the tree are
+     * indexed straight away and their keys must be unique.
+     *
+     * @param tree
+     *            the initial tree
+     * @param key
+     *            returns the key of a value
+     * @param <K>
+     *            the key type
+     * @param <T>
+     *            the value type
+     * @param <S>
+     *            the geometry type
+     * @return indexed holder
+     * @throws IllegalArgumentException
+     *             if two entries of the tree have the same key
+     */
+    public static <K, T, S extends Geometry> IndexedRTree<K, T, S> create(RTree<T, S> tree,
+            Func1<? super T, ? extends K> key) {
+        Preconditions.checkNotNull(tree);
+        Preconditions.checkNotNull(key);
+        Map<K, Entry<T, S>> index = new HashMap<K, Entry<T, S>>();
+        for (Entry<T, S> entry : tree.entries().toBlocking().toIterable()) {
+            Preconditions.checkArgument(index.put(key.call(entry.value()), entry) == null,
+                    "duplicate key");
+        }
+        return new IndexedRTree<K, T, S>(tree, key, index);
+    }
+
+    public RTree<T, S> tree() {
+        return tree;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public Optional<Entry<T, S>> get(K k) {
+        return Optional.fromNullable(index.get(k));
+    }
+
+    public RTree<T, S> add(T value, S geometry) {
+        return add(tree.context().factory().createEntry(value, geometry));
+    }
+
+    /**
+     * Adds the entry, first deleting the entry with the same key if present.
+     *
+     * @param entry
+     *            entry to add
+     * @return the tree after the addition
+     */
+    public RTree<T, S> add(Entry<T, S> entry) {
+        K k = key.call(entry.value());
+        Entry<T, S> existing = index.get(k);
+        RTree<T, S> t = tree;
+        if (existing != null)
+            t = t.delete(existing);
+        tree = t.add(entry);
+        index.put(k, entry);
+        return tree;
+    }
+
+    /**
+     * Deletes the entry with the given key if present.
+     *
+     * @param k
+     *            key of the entry to delete
+     * @return the tree after the deletion
+     */
+    public RTree<T, S> delete(K k) {
+        Entry<T, S> existing = index.get(k);
+        if (existing != null) {
+            tree = tree.delete(existing);
+            index.remove(k);
+        }
+        return tree;
+    }
+
+    /**
+     * Changes the geometry of the entry with the given key if present,
+     * keeping its value (see {@link RTree#move(Entry, Geometry)}).
+     *
+     * @param k
+     *            key of the entry to change
+     * @param geometry
+     *            the new geometry
+     * @return the tree after the change
+     */
+    public RTree<T, S> update(K k, S geometry) {
+        Entry<T, S> existing = index.get(k);
+        if (existing != null) {
+            tree = tree.move(existing, geometry);
+            index.put(k, tree.context().factory().createEntry(existing.value(), geometry));
+        }
+        return tree;
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.ListPair;
+
+/**
+ * Inserts a batch of entries into a tree in one pass. The entries are routed
+ * down the tree together: at each non-leaf every entry in the batch is
+ * assigned to a child by the tree's {@link com.github.davidmoten.rtree.Selector
+ * Selector} and each child that receives entries is updated once with its
+ * whole group. Every touched node is therefore copied (and split if it
+ * overflows) once per batch rather than once per entry.
+ *
+ * <p>
+ * A node that overflows by up to {@code maxChildren} children is divided with
+ * the tree's {@link com.github.davidmoten.rtree.Splitter Splitter} as
+ * repeated insertion would. A larger overflow (for example many entries
+ * arriving in one small region) is tiled into nodes with the
+ * Sort-Tile-Recursive algorithm because repeated splitting of a long list is
+ * slow with the quadratic splitter. The tiles are then at least half full,
+ * which is never fewer than {@code minChildren} because the splitters need
+ * {@code 2 * minChildren <= maxChildren + 1} too.
+ */
+public final class BatchInsertHelper {
+
+    private BatchInsertHelper() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the root of a tree containing the entries below {@code root}
+     * and the given entries. All leaves remain at the same depth.
+     *
+     * @param root
+     *            the root of the tree to add to, may be absent
+     * @param entries
+     *            entries to add, must not be empty
+     * @param context
+     *            tree context
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return the new root
+     */
+    public static <T, S extends Geometry> Node<T, S> add(Optional<? extends Node<T, S>> root,
+            List<Entry<T, S>> entries, Context<T, S> context) {
+        List<Node<T, S>> nodes;
+        if (root.isPresent())
+            nodes = add(root.get(), entries, context);
+        else
+            nodes = leaves(new ArrayList<Entry<T, S>>(entries), context);
+        // grow the tree upwards until a single root remains
+        while (nodes.size() > 1)
+            nodes = nonLeaves(nodes, context);
+        return nodes.get(0);
+    }
+
+    private static <T, S extends Geometry> List<Node<T, S>> add(Node<T, S> node,
+            List<Entry<T, S>> entries, Context<T, S> context) {
+        if (node instanceof Leaf) {
+            List<Entry<T, S>> all = new ArrayList<Entry<T, S>>(
+                    ((Leaf<T, S>) node).count() + entries.size());
+            all.addAll(((Leaf<T, S>) node).entries());
+            all.addAll(entries);
+            return leaves(all, context);
+        } else {
+            List<Node<T, S>> children = ((NonLeaf<T, S>) node).children();
+            List<List<Entry<T, S>>> groups = new ArrayList<List<Entry<T, S>>>(
+                    Collections.<List<Entry<T, S>>> nCopies(children.size(), null));
+            for (Entry<T, S> entry : entries) {
+                Node<T, S> child = context.selector().select(entry.geometry().mbr(), children);
+                int i = indexOf(children, child);
+                List<Entry<T, S>> group = groups.get(i);
+                if (group == null) {
+                    group = new ArrayList<Entry<T, S>>();
+                    groups.set(i, group);
+                }
+                group.add(entry);
+            }
+            List<Node<T, S>> children2 = new ArrayList<Node<T, S>>(children.size() + 1);
+            for (int i = 0; i < children.size(); i++) {
+                List<Entry<T, S>> group = groups.get(i);
+                if (group == null)
+                    children2.add(children.get(i));
+                else
+                    children2.addAll(add(children.get(i), group, context));
+            }
+            return nonLeaves(children2, context);
+        }
+    }
+
+    private static <T, S extends Geometry> int indexOf(List<Node<T, S>> nodes, Node<T, S> node) {
+        // by identity because node types need not implement equals
+        for (int i = 0; i < nodes.size(); i++)
+            if (nodes.get(i) == node)
+                return i;
+        throw new IllegalStateException("selector returned a node that is not a child");
+    }
+
+    private static <T, S extends Geometry> List<Node<T, S>> leaves(List<Entry<T, S>> entries,
+            Context<T, S> context) {
+        if (entries.size() <= context.maxChildren())
+            return Collections
+                    .singletonList((Node<T, S>) context.factory().createLeaf(entries, context));
+        else if (entries.size() <= 2 * context.maxChildren()) {
+            List<Node<T, S>> list = new ArrayList<Node<T, S>>();
+            for (List<Entry<T, S>> group : split(entries, context))
+                list.add(context.factory().createLeaf(group, context));
+            return list;
+        } else
+            return PackingHelper.tileLeaves(entries, context.maxChildren(), context);
+    }
+
+    private static <T, S extends Geometry> List<Node<T, S>> nonLeaves(List<Node<T, S>> children,
+            Context<T, S> context) {
+        if (children.size() <= context.maxChildren())
+            return Collections.singletonList(
+                    (Node<T, S>) context.factory().createNonLeaf(children, context));
+        else if (children.size() <= 2 * context.maxChildren()) {
+            List<Node<T, S>> list = new ArrayList<Node<T, S>>();
+            for (List<Node<T, S>> group : split(children, context))
+                list.add(context.factory().createNonLeaf(group, context));
+            return list;
+        } else
+            return PackingHelper.tileNonLeaves(children, context.maxChildren(), context);
+    }
+
+    /**
+     * Splits the items with the tree's splitter, splitting again any group
+     * that is still larger than maxChildren.
+     */
+    private static <T extends HasGeometry> List<List<T>> split(List<T> items,
+            Context<?, ?> context) {
+        List<List<T>> result = new ArrayList<List<T>>();
+        if (items.size() <= context.maxChildren())
+            result.add(items);
+        else {
+            ListPair<T> pair = context.splitter().split(items, context.minChildren());
+            result.addAll(split(pair.group1().list(), context));
+            result.addAll(split(pair.group2().list(), context));
+        }
+        return result;
+    }
+
+}
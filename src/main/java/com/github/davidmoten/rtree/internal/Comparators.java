@@ -82,6 +82,11 @@ public final class Comparators {
      * <p>
      * <code>search(100).toSortedList(ascendingDistance(r))</code>
      * </p>
+     * <p>
+     * {@code nearest} no longer uses this comparator because it returns
+     * entries in ascending distance already. It is kept because it is public
+     * and callers may use it to sort the results of other searches.
+     * </p>
      * 
      * @param <T>
      *            the value type
@@ -1,11 +1,9 @@
 package com.github.davidmoten.rtree.internal;
 
 import com.github.davidmoten.guavamini.Objects;
-import com.github.davidmoten.guavamini.Optional;
 import com.github.davidmoten.guavamini.Preconditions;
 import com.github.davidmoten.rtree.Entry;
 import com.github.davidmoten.rtree.geometry.Geometry;
-import com.github.davidmoten.rtree.internal.util.ObjectsHelper;
 
 /**
  * An entry in the R-tree which has a spatial representation.
@@ -80,11 +78,12 @@ public final class EntryDefault<T, S extends Geometry> implements Entry<T, S> {
 
     @Override
     public boolean equals(Object obj) {
-        @SuppressWarnings("rawtypes")
-        Optional<EntryDefault> other = ObjectsHelper.asClass(obj, EntryDefault.class);
-        if (other.isPresent()) {
-            return Objects.equal(value, other.get().value)
-                    && Objects.equal(geometry, other.get().geometry);
+        // compare with any Entry so that entries read lazily from a
+        // serialized tree equal the entries they were written from, checking
+        // the geometry first so a lazy value is only deserialized when needed
+        if (obj instanceof Entry) {
+            Entry<?, ?> other = (Entry<?, ?>) obj;
+            return geometry.equals(other.geometry()) && Objects.equal(value, other.value());
         } else
             return false;
     }
@@ -0,0 +1,41 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Factory;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Point;
+
+public final class FactoryPoints<T> implements Factory<T, Point> {
+
+    private static class Holder {
+        private static final Factory<Object, Point> INSTANCE = new FactoryPoints<Object>();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Factory<T, Point> instance() {
+        return (Factory<T, Point>) Holder.INSTANCE;
+    }
+
+    @Override
+    public Leaf<T, Point> createLeaf(List<Entry<T, Point>> entries, Context<T, Point> context) {
+        return new LeafPoints<T>(entries, context);
+    }
+
+    @Override
+    public NonLeaf<T, Point> createNonLeaf(List<? extends Node<T, Point>> children,
+            Context<T, Point> context) {
+        return new NonLeafPacked<T, Point>(children, context);
+    }
+
+    @Override
+    public Entry<T, Point> createEntry(T value, Point geometry) {
+        return Entries.entry(value, geometry);
+    }
+
+}
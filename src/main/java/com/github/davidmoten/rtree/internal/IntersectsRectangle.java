@@ -0,0 +1,58 @@
+package com.github.davidmoten.rtree.internal;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.functions.Func1;
+
+/**
+ * Search criterion that is true for geometries intersecting a rectangle. Node
+ * implementations that store bounding rectangles as primitives can recognize
+ * this criterion and test the stored values with
+ * {@link #intersects(float, float, float, float)} instead of creating a
+ * geometry to pass to {@link #call(Geometry)}.
+ */
+public final class IntersectsRectangle implements Func1<Geometry, Boolean> {
+
+    private final Rectangle r;
+    private final float x1;
+    private final float y1;
+    private final float x2;
+    private final float y2;
+
+    public IntersectsRectangle(Rectangle r) {
+        this.r = r;
+        this.x1 = r.x1();
+        this.y1 = r.y1();
+        this.x2 = r.x2();
+        this.y2 = r.y2();
+    }
+
+    public Rectangle rectangle() {
+        return r;
+    }
+
+    @Override
+    public Boolean call(Geometry g) {
+        return g.intersects(r);
+    }
+
+    /**
+     * Returns true if and only if the rectangle with the given corners
+     * intersects the criterion rectangle.
+     * 
+     * @param a1
+     *            min x
+     * @param b1
+     *            min y
+     * @param a2
+     *            max x
+     * @param b2
+     *            max y
+     * @return true if the rectangles intersect
+     */
+    public boolean intersects(float a1, float b1, float a2, float b2) {
+        return a1 <= x2 && x1 <= a2 && b1 <= y2 && y1 <= b2;
+    }
+
+}
@@ -26,11 +26,13 @@ public final class LeafHelper {
     public static <T, S extends Geometry> NodeAndEntries<T, S> delete(
             Entry<? extends T, ? extends S> entry, boolean all, Leaf<T, S> leaf) {
         List<Entry<T, S>> entries = leaf.entries();
-        if (!entries.contains(entry)) {
+        int index = entries.indexOf(entry);
+        if (index == -1) {
             return new NodeAndEntries<T, S>(of(leaf), Collections.<Entry<T, S>> emptyList(), 0);
         } else {
             final List<Entry<T, S>> entries2 = new ArrayList<Entry<T, S>>(entries);
-            entries2.remove(entry);
+            // remove by position rather than search for the entry again
+            entries2.remove(index);
             int numDeleted = 1;
             // keep deleting if all specified
             while (all && entries2.remove(entry))
@@ -0,0 +1,153 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Leaf that stores the bounding rectangles of its entries in one
+ * {@code float[]} (x1, y1, x2, y2 per entry) next to an array of values.
+ * When every entry geometry is a {@link Point} or every one is a plain
+ * rectangle the geometries are not kept at all and are recreated from the
+ * stored floats on demand, as are the {@link Entry} objects. Searches for
+ * rectangle intersection are a scan of the float array.
+ */
+public final class LeafPacked<T, S extends Geometry> implements Leaf<T, S> {
+
+    private static final Class<?> RECTANGLE_CLASS = Geometries.rectangle(0, 0, 0, 0).getClass();
+
+    private static final byte POINTS = 0;
+    private static final byte RECTANGLES = 1;
+    private static final byte OTHER = 2;
+
+    private final float[] mbrs;
+    private final Object[] values;
+    // only kept when the geometries cannot be recreated from mbrs
+    private final Object[] geometries;
+    private final byte kind;
+    private final Rectangle mbr;
+    private final Context<T, S> context;
+
+    public LeafPacked(List<Entry<T, S>> entries, Context<T, S> context) {
+        Preconditions.checkArgument(!entries.isEmpty());
+        int n = entries.size();
+        this.context = context;
+        this.mbrs = new float[4 * n];
+        this.values = new Object[n];
+        boolean allPoints = true;
+        boolean allRectangles = true;
+        for (int i = 0; i < n; i++) {
+            Entry<T, S> entry = entries.get(i);
+            S g = entry.geometry();
+            allPoints &= g instanceof Point;
+            allRectangles &= g.getClass() == RECTANGLE_CLASS;
+            values[i] = entry.value();
+            PackedHelper.setMbr(mbrs, i, g.mbr());
+        }
+        if (allPoints)
+            kind = POINTS;
+        else if (allRectangles)
+            kind = RECTANGLES;
+        else
+            kind = OTHER;
+        if (kind == OTHER) {
+            geometries = new Object[n];
+            for (int i = 0; i < n; i++)
+                geometries[i] = entries.get(i).geometry();
+        } else
+            geometries = null;
+        this.mbr = PackedHelper.mbr(mbrs, n);
+    }
+
+    @Override
+    public Geometry geometry() {
+        return mbr;
+    }
+
+    @Override
+    public List<Entry<T, S>> entries() {
+        List<Entry<T, S>> list = new ArrayList<Entry<T, S>>(values.length);
+        for (int i = 0; i < values.length; i++)
+            list.add(entry(i));
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Entry<T, S> entry(int i) {
+        return Entries.entry((T) values[i], geometry(i));
+    }
+
+    @SuppressWarnings("unchecked")
+    private S geometry(int i) {
+        int j = 4 * i;
+        if (kind == POINTS)
+            return (S) Geometries.point(mbrs[j], mbrs[j + 1]);
+        else if (kind == RECTANGLES)
+            return (S) Geometries.rectangle(mbrs[j], mbrs[j + 1], mbrs[j + 2], mbrs[j + 3]);
+        else
+            return (S) geometries[i];
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> condition,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        if (condition instanceof IntersectsRectangle) {
+            IntersectsRectangle c = (IntersectsRectangle) condition;
+            if (c.intersects(mbr.x1(), mbr.y1(), mbr.x2(), mbr.y2()))
+                search(c, subscriber);
+        } else
+            LeafHelper.search(condition, subscriber, this);
+    }
+
+    /**
+     * Emits the entries intersecting the criterion rectangle without checking
+     * the bounding rectangle of this leaf (the parent has done that).
+     */
+    void search(IntersectsRectangle c, Subscriber<? super Entry<T, S>> subscriber) {
+        for (int i = 0; i < values.length; i++) {
+            if (subscriber.isUnsubscribed())
+                return;
+            int j = 4 * i;
+            if (c.intersects(mbrs[j], mbrs[j + 1], mbrs[j + 2], mbrs[j + 3])) {
+                // points and rectangles intersect exactly when their mbrs do
+                if (kind != OTHER || c.call((Geometry) geometries[i]))
+                    subscriber.onNext(entry(i));
+            }
+        }
+    }
+
+    @Override
+    public int count() {
+        return values.length;
+    }
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        return LeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return LeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, S> context() {
+        return context;
+    }
+
+}
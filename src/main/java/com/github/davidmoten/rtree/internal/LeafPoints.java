@@ -0,0 +1,144 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Leaf of {@link Point} entries that stores the coordinates in two
+ * {@code float[]} next to an array of values. Points and entries are
+ * recreated on demand. Searches for rectangle intersection and distance
+ * calculations work directly on the coordinate arrays.
+ */
+public final class LeafPoints<T> implements Leaf<T, Point> {
+
+    private final float[] xs;
+    private final float[] ys;
+    private final Object[] values;
+    private final Rectangle mbr;
+    private final Context<T, Point> context;
+
+    public LeafPoints(List<Entry<T, Point>> entries, Context<T, Point> context) {
+        Preconditions.checkArgument(!entries.isEmpty());
+        int n = entries.size();
+        this.context = context;
+        this.xs = new float[n];
+        this.ys = new float[n];
+        this.values = new Object[n];
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            Entry<T, Point> entry = entries.get(i);
+            Point p = entry.geometry();
+            xs[i] = p.x();
+            ys[i] = p.y();
+            values[i] = entry.value();
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        this.mbr = Geometries.rectangle(minX, minY, maxX, maxY);
+    }
+
+    @Override
+    public Geometry geometry() {
+        return mbr;
+    }
+
+    @Override
+    public List<Entry<T, Point>> entries() {
+        List<Entry<T, Point>> list = new ArrayList<Entry<T, Point>>(values.length);
+        for (int i = 0; i < values.length; i++)
+            list.add(entry(i));
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Entry<T, Point> entry(int i) {
+        return Entries.entry((T) values[i], Geometries.point(xs[i], ys[i]));
+    }
+
+    /**
+     * Returns the distance from the point of the i-th entry to the rectangle
+     * without creating the point. Equal to
+     * {@code entry(i).geometry().distance(r)}.
+     * 
+     * @param i
+     *            entry index
+     * @param r
+     *            rectangle to measure distance to
+     * @return distance from the point to the rectangle
+     */
+    public double distance(int i, Rectangle r) {
+        float x = xs[i];
+        float y = ys[i];
+        double dx = Math.max(0, x < r.x1() ? r.x1() - x : x - r.x2());
+        double dy = Math.max(0, y < r.y1() ? r.y1() - y : y - r.y2());
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> condition,
+            Subscriber<? super Entry<T, Point>> subscriber) {
+        if (condition instanceof IntersectsRectangle) {
+            IntersectsRectangle c = (IntersectsRectangle) condition;
+            if (c.intersects(mbr.x1(), mbr.y1(), mbr.x2(), mbr.y2()))
+                search(c, subscriber);
+        } else
+            LeafHelper.search(condition, subscriber, this);
+    }
+
+    /**
+     * Emits the entries inside the criterion rectangle without checking the
+     * bounding rectangle of this leaf (the parent has done that).
+     */
+    void search(IntersectsRectangle c, Subscriber<? super Entry<T, Point>> subscriber) {
+        for (int i = 0; i < values.length; i++) {
+            if (subscriber.isUnsubscribed())
+                return;
+            float x = xs[i];
+            float y = ys[i];
+            if (c.intersects(x, y, x, y))
+                subscriber.onNext(entry(i));
+        }
+    }
+
+    @Override
+    public int count() {
+        return values.length;
+    }
+
+    @Override
+    public List<Node<T, Point>> add(Entry<? extends T, ? extends Point> entry) {
+        return LeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, Point> delete(Entry<? extends T, ? extends Point> entry,
+            boolean all) {
+        return LeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, Point> context() {
+        return context;
+    }
+
+}
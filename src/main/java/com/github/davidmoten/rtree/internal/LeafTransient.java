@@ -0,0 +1,97 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * A leaf that the transient tree identified by {@code owner} may change in
+ * place (see {@link TransientHelper}). Once that tree is frozen the leaf is
+ * never changed again and behaves like a {@link LeafDefault}.
+ */
+final class LeafTransient<T, S extends Geometry> implements Leaf<T, S> {
+
+    private final Object owner;
+    private final List<Entry<T, S>> entries;
+    private final Context<T, S> context;
+    private Rectangle mbr;
+
+    LeafTransient(Object owner, List<Entry<T, S>> entries, Context<T, S> context) {
+        this.owner = owner;
+        this.entries = entries;
+        this.context = context;
+        this.mbr = Util.mbr(entries);
+    }
+
+    Object owner() {
+        return owner;
+    }
+
+    /**
+     * Adds the entry in place and returns the new sibling if the leaf split
+     * or null otherwise.
+     */
+    Node<T, S> insert(Entry<T, S> entry) {
+        entries.add(entry);
+        if (entries.size() <= context.maxChildren()) {
+            mbr = TransientHelper.grow(mbr, entry.geometry().mbr());
+            return null;
+        } else {
+            List<List<Entry<T, S>>> groups = TransientHelper.split(entries, context);
+            entries.clear();
+            entries.addAll(groups.get(0));
+            mbr = Util.mbr(entries);
+            return new LeafTransient<T, S>(owner, groups.get(1), context);
+        }
+    }
+
+    @Override
+    public Geometry geometry() {
+        return mbr;
+    }
+
+    @Override
+    public List<Entry<T, S>> entries() {
+        return entries;
+    }
+
+    @Override
+    public Entry<T, S> entry(int i) {
+        return entries.get(i);
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> condition,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        LeafHelper.search(condition, subscriber, this);
+    }
+
+    @Override
+    public int count() {
+        return entries.size();
+    }
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        return LeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return LeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, S> context() {
+        return context;
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Changes the geometry of an entry without removing it from its leaf (the
+ * bottom-up update of the LUR-tree). The leaf holding the entry is found by
+ * descending only into nodes whose bounds contain the entry's bounds. If the
+ * new geometry lies within the bounds of the leaf's parent the entry is
+ * replaced in place: the leaf may grow or shrink but stays inside its parent
+ * so no other leaf changes and no node underflows or splits. Only the path
+ * from the root to the leaf is copied and every child keeps its position.
+ */
+public final class MoveHelper {
+
+    private MoveHelper() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the root of the tree with {@code entry} replaced by
+     * {@code replacement} in the same leaf, or absent if the entry was not
+     * found or the replacement does not lie within the bounds of the leaf's
+     * parent (in which case the caller should delete and add instead).
+     *
+     * @param root
+     *            the root of the tree
+     * @param entry
+     *            the entry to move
+     * @param replacement
+     *            the entry with the new geometry
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return the new root if moved in place
+     */
+    public static <T, S extends Geometry> Optional<Node<T, S>> move(Node<T, S> root,
+            Entry<? extends T, ? extends S> entry, Entry<T, S> replacement) {
+        // the path from the leaf up to the root and the position of the entry
+        // (then of each node) in the node above it
+        List<Node<T, S>> path = new ArrayList<Node<T, S>>();
+        List<Integer> positions = new ArrayList<Integer>();
+        if (!find(root, entry, entry.geometry().mbr(), path, positions))
+            return Optional.absent();
+        if (path.size() > 1 && !Util.contains(path.get(1).geometry().mbr(),
+                replacement.geometry().mbr()))
+            return Optional.absent();
+        Context<T, S> context = root.context();
+        Leaf<T, S> leaf = (Leaf<T, S>) path.get(0);
+        Node<T, S> node = context.factory().createLeaf(
+                Util.set(leaf.entries(), positions.get(0), replacement), context);
+        for (int i = 1; i < path.size(); i++) {
+            NonLeaf<T, S> parent = (NonLeaf<T, S>) path.get(i);
+            node = context.factory().createNonLeaf(
+                    Util.set(parent.children(), positions.get(i), node), context);
+        }
+        return Optional.of(node);
+    }
+
+    private static <T, S extends Geometry> boolean find(Node<T, S> node,
+            Entry<? extends T, ? extends S> entry, Rectangle r, List<Node<T, S>> path,
+            List<Integer> positions) {
+        if (node instanceof Leaf) {
+            int index = ((Leaf<T, S>) node).entries().indexOf(entry);
+            if (index == -1)
+                return false;
+            path.add(node);
+            positions.add(index);
+            return true;
+        } else {
+            NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+            int count = nonLeaf.count();
+            for (int i = 0; i < count; i++) {
+                Node<T, S> child = nonLeaf.child(i);
+                if (Util.contains(child.geometry().mbr(), r)
+                        && find(child, entry, r, path, positions)) {
+                    path.add(node);
+                    positions.add(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
@@ -13,6 +13,7 @@ import com.github.davidmoten.rtree.Node;
 import com.github.davidmoten.rtree.NonLeaf;
 import com.github.davidmoten.rtree.geometry.Geometry;
 import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
 
 import rx.Subscriber;
 import rx.functions.Func1;
@@ -79,8 +80,11 @@ public final class NonLeafHelper {
         List<Node<T, S>> addTheseNodes = new ArrayList<Node<T, S>>();
         int countDeleted = 0;
         List<? extends Node<T, S>> children = node.children();
+        Rectangle r = entry.geometry().mbr();
         for (final Node<T, S> child : children) {
-            if (entry.geometry().intersects(child.geometry().mbr())) {
+            // a node's bounds contain the bounds of every entry below it so
+            // this prunes more children than an intersection test
+            if (Util.contains(child.geometry().mbr(), r)) {
                 final NodeAndEntries<T, S> result = child.delete(entry, all);
                 if (result.node().isPresent()) {
                     if (result.node().get() != child) {
@@ -0,0 +1,116 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Non-leaf that stores the bounding rectangles of its children in one
+ * {@code float[]} (x1, y1, x2, y2 per child) next to an array of the children
+ * so that searches for rectangle intersection scan the float array and only
+ * dereference the children that match.
+ */
+public final class NonLeafPacked<T, S extends Geometry> implements NonLeaf<T, S> {
+
+    private final float[] mbrs;
+    private final Node<T, S>[] children;
+    private final Rectangle mbr;
+    private final Context<T, S> context;
+
+    @SuppressWarnings("unchecked")
+    public NonLeafPacked(List<? extends Node<T, S>> children, Context<T, S> context) {
+        Preconditions.checkArgument(!children.isEmpty());
+        int n = children.size();
+        this.context = context;
+        this.children = (Node<T, S>[]) children.toArray(new Node<?, ?>[n]);
+        this.mbrs = new float[4 * n];
+        for (int i = 0; i < n; i++)
+            PackedHelper.setMbr(mbrs, i, this.children[i].geometry().mbr());
+        this.mbr = PackedHelper.mbr(mbrs, n);
+    }
+
+    @Override
+    public Geometry geometry() {
+        return mbr;
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> criterion,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        if (criterion instanceof IntersectsRectangle) {
+            IntersectsRectangle c = (IntersectsRectangle) criterion;
+            if (c.intersects(mbr.x1(), mbr.y1(), mbr.x2(), mbr.y2()))
+                search(c, subscriber);
+        } else
+            NonLeafHelper.search(criterion, subscriber, this);
+    }
+
+    /**
+     * Searches the children intersecting the criterion rectangle without
+     * checking the bounding rectangle of this node (the parent has done that).
+     */
+    @SuppressWarnings("unchecked")
+    void search(IntersectsRectangle c, Subscriber<? super Entry<T, S>> subscriber) {
+        for (int i = 0; i < children.length; i++) {
+            if (subscriber.isUnsubscribed())
+                return;
+            int j = 4 * i;
+            if (c.intersects(mbrs[j], mbrs[j + 1], mbrs[j + 2], mbrs[j + 3])) {
+                Node<T, S> child = children[i];
+                if (child instanceof NonLeafPacked)
+                    ((NonLeafPacked<T, S>) child).search(c, subscriber);
+                else if (child instanceof LeafPacked)
+                    ((LeafPacked<T, S>) child).search(c, subscriber);
+                else if (child instanceof LeafPoints)
+                    // S is Point (or a supertype) so the subscriber accepts
+                    // point entries
+                    ((LeafPoints<T>) (Node<T, ?>) child).search(c,
+                            (Subscriber<? super Entry<T, Point>>) (Subscriber<?>) subscriber);
+                else
+                    child.searchWithoutBackpressure(c, subscriber);
+            }
+        }
+    }
+
+    @Override
+    public int count() {
+        return children.length;
+    }
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        return NonLeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return NonLeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, S> context() {
+        return context;
+    }
+
+    @Override
+    public Node<T, S> child(int i) {
+        return children[i];
+    }
+
+    @Override
+    public List<Node<T, S>> children() {
+        return Arrays.asList(children);
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * A non-leaf that the transient tree identified by {@code owner} may change in
+ * place (see {@link TransientHelper}). Once that tree is frozen the node is
+ * never changed again and behaves like a {@link NonLeafDefault}.
+ */
+final class NonLeafTransient<T, S extends Geometry> implements NonLeaf<T, S> {
+
+    private final Object owner;
+    private final List<Node<T, S>> children;
+    private final Context<T, S> context;
+    private Rectangle mbr;
+
+    NonLeafTransient(Object owner, List<Node<T, S>> children, Context<T, S> context) {
+        this.owner = owner;
+        this.children = children;
+        this.context = context;
+        this.mbr = Util.mbr(children);
+    }
+
+    Object owner() {
+        return owner;
+    }
+
+    /**
+     * Adds the entry in place below this node and returns the new sibling if
+     * the node split or null otherwise.
+     */
+    Node<T, S> insert(Entry<T, S> entry) {
+        Rectangle r = entry.geometry().mbr();
+        Node<T, S> child = context.selector().select(r, children);
+        Node<T, S> editable = TransientHelper.editable(child, owner);
+        Node<T, S> sibling = TransientHelper.insert(editable, entry);
+        // move the child to the end as Util.replace does so that the tree
+        // matches one built by immutable insertion
+        children.remove(indexOf(child));
+        children.add(editable);
+        if (sibling != null)
+            children.add(sibling);
+        if (children.size() <= context.maxChildren()) {
+            // a split below only rearranges the existing entries so the
+            // bounds grow by the new entry alone
+            mbr = TransientHelper.grow(mbr, r);
+            return null;
+        } else {
+            List<List<Node<T, S>>> groups = TransientHelper.split(children, context);
+            children.clear();
+            children.addAll(groups.get(0));
+            mbr = Util.mbr(children);
+            return new NonLeafTransient<T, S>(owner, groups.get(1), context);
+        }
+    }
+
+    private int indexOf(Node<T, S> child) {
+        // by identity because node types need not implement equals
+        for (int i = 0; i < children.size(); i++)
+            if (children.get(i) == child)
+                return i;
+        throw new IllegalStateException("selector returned a node that is not a child");
+    }
+
+    @Override
+    public Geometry geometry() {
+        return mbr;
+    }
+
+    @Override
+    public Node<T, S> child(int i) {
+        return children.get(i);
+    }
+
+    @Override
+    public List<Node<T, S>> children() {
+        return children;
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> criterion,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        NonLeafHelper.search(criterion, subscriber, this);
+    }
+
+    @Override
+    public int count() {
+        return children.size();
+    }
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        return NonLeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return NonLeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, S> context() {
+        return context;
+    }
+
+}
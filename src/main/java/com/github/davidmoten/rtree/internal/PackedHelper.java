@@ -0,0 +1,38 @@
+package com.github.davidmoten.rtree.internal;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Utility methods for bounding rectangles stored as x1, y1, x2, y2 runs in a
+ * {@code float[]}.
+ */
+final class PackedHelper {
+
+    private PackedHelper() {
+        // prevent instantiation
+    }
+
+    static void setMbr(float[] mbrs, int i, Rectangle r) {
+        int j = 4 * i;
+        mbrs[j] = r.x1();
+        mbrs[j + 1] = r.y1();
+        mbrs[j + 2] = r.x2();
+        mbrs[j + 3] = r.y2();
+    }
+
+    static Rectangle mbr(float[] mbrs, int n) {
+        float minX1 = Float.MAX_VALUE;
+        float minY1 = Float.MAX_VALUE;
+        float maxX2 = -Float.MAX_VALUE;
+        float maxY2 = -Float.MAX_VALUE;
+        for (int j = 0; j < 4 * n; j += 4) {
+            minX1 = Math.min(minX1, mbrs[j]);
+            minY1 = Math.min(minY1, mbrs[j + 1]);
+            maxX2 = Math.max(maxX2, mbrs[j + 2]);
+            maxY2 = Math.max(maxY2, mbrs[j + 3]);
+        }
+        return Geometries.rectangle(minX1, minY1, maxX2, maxY2);
+    }
+
+}
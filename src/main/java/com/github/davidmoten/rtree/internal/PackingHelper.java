@@ -0,0 +1,460 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.HilbertCurve;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.functions.Func1;
+
+/**
+ * Builds R-tree nodes bottom-up from a known set of entries (bulk loading)
+ * rather than by repeated insertion.
+ */
+public final class PackingHelper {
+
+    /**
+     * Levels with fewer items than this are packed on the calling thread even
+     * when an executor is supplied because the task overhead outweighs the
+     * gain.
+     */
+    private static final int PARALLEL_THRESHOLD = 8192;
+
+    /**
+     * Largest number of entries that can be Hilbert packed, also used as the
+     * mask for the position part of a packed sort key.
+     */
+    private static final int MAX_HILBERT_ITEMS = Integer.MAX_VALUE;
+
+    private PackingHelper() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the number of children per node to use when bulk loading.
+     *
+     * @param context
+     *            the tree context
+     * @param loadingFactor
+     *            proportion of maxChildren to fill each node to
+     * @return number of children per node, between 2 (or minChildren) and
+     *         maxChildren inclusive
+     */
+    public static int capacity(Context<?, ?> context, double loadingFactor) {
+        int capacity = (int) Math.round(context.maxChildren() * loadingFactor);
+        return Math.min(context.maxChildren(),
+                Math.max(capacity, Math.max(2, context.minChildren())));
+    }
+
+    /**
+     * Packs the entries into a tree using the Sort-Tile-Recursive algorithm and
+     * returns the root node. If an executor is present then the sorting and
+     * tiling of large levels is split into tasks run on the executor. The
+     * sorts used are stable and the slices are the same in both modes so the
+     * tree produced is identical to the one produced without an executor.
+     *
+     * @param entries
+     *            entries to pack, must not be empty (the list is not
+     *            modified)
+     * @param capacity
+     *            maximum number of children per created node
+     * @param context
+     *            tree context whose factory creates the nodes
+     * @param executor
+     *            optional executor to run packing tasks on. Tasks submitted do
+     *            not block on other tasks so any executor is suitable
+     *            including a single threaded one.
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return root node of the packed tree
+     */
+    public static <T, S extends Geometry> Node<T, S> packSTR(List<Entry<T, S>> entries,
+            int capacity, Context<T, S> context, Optional<ExecutorService> executor) {
+        Preconditions.checkArgument(!entries.isEmpty());
+        Preconditions.checkArgument(capacity >= 2);
+        List<Node<T, S>> nodes = tile(entries, capacity, PackingHelper.<T, S> leafCreator(context),
+                executor);
+        while (nodes.size() > 1)
+            nodes = tile(nodes, capacity, PackingHelper.<T, S> nonLeafCreator(context), executor);
+        return nodes.get(0);
+    }
+
+    /**
+     * Packs the entries into leaves of at most {@code capacity} entries using
+     * one level of Sort-Tile-Recursive tiling.
+     *
+     * @param entries
+     *            entries to pack, must not be empty (the list is not
+     *            modified)
+     * @param capacity
+     *            maximum number of entries per leaf
+     * @param context
+     *            tree context whose factory creates the nodes
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return the leaves
+     */
+    public static <T, S extends Geometry> List<Node<T, S>> tileLeaves(List<Entry<T, S>> entries,
+            int capacity, Context<T, S> context) {
+        return tile(entries, capacity, PackingHelper.<T, S> leafCreator(context),
+                Optional.<ExecutorService> absent());
+    }
+
+    /**
+     * Packs the nodes (all at the same depth) into non-leaf nodes of at most
+     * {@code capacity} children using one level of Sort-Tile-Recursive
+     * tiling.
+     *
+     * @param children
+     *            nodes to pack, must not be empty (the list is not modified)
+     * @param capacity
+     *            maximum number of children per created node
+     * @param context
+     *            tree context whose factory creates the nodes
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return the non-leaf nodes
+     */
+    public static <T, S extends Geometry> List<Node<T, S>> tileNonLeaves(
+            List<Node<T, S>> children, int capacity, Context<T, S> context) {
+        return tile(children, capacity, PackingHelper.<T, S> nonLeafCreator(context),
+                Optional.<ExecutorService> absent());
+    }
+
+    /**
+     * Packs the entries into a tree by sorting them on the Hilbert key of the
+     * centre of their minimum bounding rectangle (see {@link HilbertCurve})
+     * and cutting the sorted list into consecutive groups of at most
+     * {@code capacity} entries. Each higher level is built the same way from
+     * the nodes of the level below, which are already in Hilbert order.
+     * Returns the root node.
+     *
+     * @param entries
+     *            entries to pack, must not be empty (the list is not
+     *            modified)
+     * @param capacity
+     *            maximum number of children per created node
+     * @param context
+     *            tree context whose factory creates the nodes
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return root node of the packed tree
+     */
+    public static <T, S extends Geometry> Node<T, S> packHilbert(List<Entry<T, S>> entries,
+            int capacity, Context<T, S> context) {
+        Preconditions.checkArgument(!entries.isEmpty());
+        Preconditions.checkArgument(capacity >= 2);
+        Preconditions.checkArgument(entries.size() <= MAX_HILBERT_ITEMS);
+        Rectangle bounds = Util.mbr(entries);
+        // Hilbert keys use at most 32 bits so pack the key and the original
+        // position into one long and sort primitives. Including the position
+        // makes the order stable without comparing boxed keys.
+        long[] keys = new long[entries.size()];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = (HilbertCurve.key(bounds, entries.get(i).geometry()) << 31) | i;
+        Arrays.sort(keys);
+        List<Entry<T, S>> sorted = new ArrayList<Entry<T, S>>(keys.length);
+        for (long key : keys)
+            sorted.add(entries.get((int) (key & MAX_HILBERT_ITEMS)));
+        List<Node<T, S>> nodes = group(sorted, capacity, PackingHelper.<T, S> leafCreator(context));
+        while (nodes.size() > 1)
+            nodes = group(nodes, capacity, PackingHelper.<T, S> nonLeafCreator(context));
+        return nodes.get(0);
+    }
+
+    /**
+     * Packs the entries top-down using the Overlap Minimizing Top-down (OMT)
+     * algorithm and returns the root node. The height of the tree is the
+     * smallest {@code h} such that {@code capacity^h >= entries.size()}. A
+     * node at height {@code h} splits its entries into
+     * {@code ceil(n / capacity^(h-1))} near equal parts by sorting on x centre
+     * into {@code sqrt} of that many vertical slabs and then sorting each slab
+     * on y centre. Each part becomes a subtree of height {@code h - 1}.
+     *
+     * @param entries
+     *            entries to pack, must not be empty (the list is not
+     *            modified)
+     * @param capacity
+     *            maximum number of children per created node
+     * @param context
+     *            tree context whose factory creates the nodes
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return root node of the packed tree
+     */
+    public static <T, S extends Geometry> Node<T, S> packOMT(List<Entry<T, S>> entries,
+            int capacity, Context<T, S> context) {
+        Preconditions.checkArgument(!entries.isEmpty());
+        Preconditions.checkArgument(capacity >= 2);
+        int height = 1;
+        long subtreeCapacity = capacity;
+        while (subtreeCapacity < entries.size()) {
+            subtreeCapacity *= capacity;
+            height++;
+        }
+        // sorted in place level by level so work on a copy
+        return packOMT(new ArrayList<Entry<T, S>>(entries), height, subtreeCapacity / capacity,
+                capacity, context);
+    }
+
+    private static <T, S extends Geometry> Node<T, S> packOMT(List<Entry<T, S>> entries,
+            int height, long childCapacity, int capacity, Context<T, S> context) {
+        if (height == 1)
+            return context.factory().createLeaf(new ArrayList<Entry<T, S>>(entries), context);
+        int n = entries.size();
+        int numChildren = (int) ((n + childCapacity - 1) / childCapacity);
+        int numSlabs = (int) Math.ceil(Math.sqrt(numChildren));
+        Collections.sort(entries, INCREASING_X_CENTRE);
+        List<Node<T, S>> children = new ArrayList<Node<T, S>>(numChildren);
+        for (int slab = 0; slab < numSlabs; slab++) {
+            int firstChild = split(numChildren, slab, numSlabs);
+            int lastChild = split(numChildren, slab + 1, numSlabs);
+            Collections.sort(entries.subList(split(n, firstChild, numChildren),
+                    split(n, lastChild, numChildren)), INCREASING_Y_CENTRE);
+            for (int child = firstChild; child < lastChild; child++)
+                children.add(packOMT(
+                        entries.subList(split(n, child, numChildren),
+                                split(n, child + 1, numChildren)),
+                        height - 1, childCapacity / capacity, capacity, context));
+        }
+        return context.factory().createNonLeaf(children, context);
+    }
+
+    /**
+     * Cuts the items in their current order into groups of at most
+     * {@code capacity} items sized as evenly as possible and returns a node
+     * for each group.
+     */
+    private static <T, R> List<R> group(List<T> items, int capacity,
+            Func1<List<T>, R> nodeCreator) {
+        int numGroups = (int) Math.ceil((double) items.size() / capacity);
+        List<R> nodes = new ArrayList<R>(numGroups);
+        for (int i = 0; i < numGroups; i++) {
+            nodes.add(nodeCreator.call(new ArrayList<T>(items.subList(
+                    split(items.size(), i, numGroups), split(items.size(), i + 1, numGroups)))));
+        }
+        return nodes;
+    }
+
+    private static <T, S extends Geometry> Func1<List<Entry<T, S>>, Node<T, S>> leafCreator(
+            final Context<T, S> context) {
+        return new Func1<List<Entry<T, S>>, Node<T, S>>() {
+            @Override
+            public Node<T, S> call(List<Entry<T, S>> entries) {
+                return context.factory().createLeaf(entries, context);
+            }
+        };
+    }
+
+    private static <T, S extends Geometry> Func1<List<Node<T, S>>, Node<T, S>> nonLeafCreator(
+            final Context<T, S> context) {
+        return new Func1<List<Node<T, S>>, Node<T, S>>() {
+            @Override
+            public Node<T, S> call(List<Node<T, S>> children) {
+                return context.factory().createNonLeaf(children, context);
+            }
+        };
+    }
+
+    /**
+     * Sorts the items by x centre into vertical slices of
+     * {@code sqrt(numNodes)} nodes each, then sorts each slice by y centre and
+     * cuts it into groups of at most {@code capacity} items. The groups in a
+     * slice are sized as evenly as possible so that the last group is not left
+     * nearly empty. A last slice too small to fill one node joins the slice
+     * before it, so every group holds at least half of {@code capacity}
+     * (rounded up) items when there is more than one group. Returns a node for
+     * each group.
+     */
+    private static <T extends HasGeometry, R> List<R> tile(List<T> items, int capacity,
+            Func1<List<T>, R> nodeCreator, Optional<ExecutorService> executor) {
+        int numNodes = (int) Math.ceil((double) items.size() / capacity);
+        int nodesPerSlice = (int) Math.ceil(Math.sqrt(numNodes));
+        int sliceCapacity = nodesPerSlice * capacity;
+        boolean parallel = executor.isPresent() && items.size() >= PARALLEL_THRESHOLD;
+        final List<T> sorted;
+        if (parallel)
+            sorted = sort(items, INCREASING_X_CENTRE, executor.get(),
+                    Runtime.getRuntime().availableProcessors());
+        else {
+            sorted = new ArrayList<T>(items);
+            Collections.sort(sorted, INCREASING_X_CENTRE);
+        }
+        List<Callable<List<R>>> slices = new ArrayList<Callable<List<R>>>();
+        int start = 0;
+        while (start < sorted.size()) {
+            int end = Math.min(sorted.size(), start + sliceCapacity);
+            if (sorted.size() - end < capacity)
+                end = sorted.size();
+            slices.add(slice(sorted.subList(start, end), capacity, nodeCreator));
+            start = end;
+        }
+        List<R> nodes = new ArrayList<R>(numNodes);
+        if (parallel)
+            for (List<R> list : invokeAll(executor.get(), slices))
+                nodes.addAll(list);
+        else
+            for (Callable<List<R>> slice : slices)
+                nodes.addAll(call(slice));
+        return nodes;
+    }
+
+    private static <T extends HasGeometry, R> Callable<List<R>> slice(final List<T> items,
+            final int capacity, final Func1<List<T>, R> nodeCreator) {
+        return new Callable<List<R>>() {
+            @Override
+            public List<R> call() {
+                // copy so that the nodes do not hold a view of the whole list
+                // and so that slices can be sorted concurrently
+                List<T> slice = new ArrayList<T>(items);
+                Collections.sort(slice, INCREASING_Y_CENTRE);
+                return group(slice, capacity, nodeCreator);
+            }
+        };
+    }
+
+    /**
+     * Returns the start index of the ith of n near equal sized parts of a list
+     * of the given size (long arithmetic avoids overflow for large lists).
+     */
+    private static int split(int size, int i, int n) {
+        return (int) ((long) i * size / n);
+    }
+
+    /**
+     * Returns a sorted copy of the list. The list is split into
+     * {@code numChunks} chunks that are sorted concurrently and then merged
+     * pairwise (also concurrently). Both the chunk sorts and the merges are
+     * stable so the result is the same as {@link Collections#sort(List)}.
+     */
+    static <T> List<T> sort(List<T> items, final Comparator<? super T> comparator,
+            ExecutorService executor, int numChunks) {
+        numChunks = Math.max(1, Math.min(numChunks, items.size()));
+        List<Callable<List<T>>> sorts = new ArrayList<Callable<List<T>>>(numChunks);
+        for (int i = 0; i < numChunks; i++) {
+            final List<T> chunk = items.subList(split(items.size(), i, numChunks),
+                    split(items.size(), i + 1, numChunks));
+            sorts.add(new Callable<List<T>>() {
+                @Override
+                public List<T> call() {
+                    List<T> list = new ArrayList<T>(chunk);
+                    Collections.sort(list, comparator);
+                    return list;
+                }
+            });
+        }
+        List<List<T>> runs = invokeAll(executor, sorts);
+        while (runs.size() > 1) {
+            List<Callable<List<T>>> merges = new ArrayList<Callable<List<T>>>();
+            for (int i = 0; i < runs.size(); i += 2) {
+                if (i + 1 < runs.size())
+                    merges.add(merge(runs.get(i), runs.get(i + 1), comparator));
+                else
+                    merges.add(constant(runs.get(i)));
+            }
+            runs = invokeAll(executor, merges);
+        }
+        return runs.get(0);
+    }
+
+    private static <T> Callable<List<T>> merge(final List<T> a, final List<T> b,
+            final Comparator<? super T> comparator) {
+        return new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                List<T> list = new ArrayList<T>(a.size() + b.size());
+                int i = 0;
+                int j = 0;
+                while (i < a.size() && j < b.size()) {
+                    // take from the left run on ties to keep the merge stable
+                    if (comparator.compare(b.get(j), a.get(i)) < 0)
+                        list.add(b.get(j++));
+                    else
+                        list.add(a.get(i++));
+                }
+                list.addAll(a.subList(i, a.size()));
+                list.addAll(b.subList(j, b.size()));
+                return list;
+            }
+        };
+    }
+
+    private static <T> Callable<T> constant(final T value) {
+        return new Callable<T>() {
+            @Override
+            public T call() {
+                return value;
+            }
+        };
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService executor,
+            List<? extends Callable<T>> tasks) {
+        try {
+            List<Future<T>> futures = executor.invokeAll(tasks);
+            List<T> results = new ArrayList<T>(futures.size());
+            for (Future<T> future : futures)
+                results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static <T> T call(Callable<T> callable) {
+        try {
+            return callable.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final Comparator<HasGeometry> INCREASING_X_CENTRE = new Comparator<HasGeometry>() {
+        @Override
+        public int compare(HasGeometry g1, HasGeometry g2) {
+            Rectangle r1 = g1.geometry().mbr();
+            Rectangle r2 = g2.geometry().mbr();
+            return Float.compare(r1.x1() + r1.x2(), r2.x1() + r2.x2());
+        }
+    };
+
+    private static final Comparator<HasGeometry> INCREASING_Y_CENTRE = new Comparator<HasGeometry>() {
+        @Override
+        public int compare(HasGeometry g1, HasGeometry g2) {
+            Rectangle r1 = g1.geometry().mbr();
+            Rectangle r2 = g2.geometry().mbr();
+            return Float.compare(r1.y1() + r1.y2(), r2.y1() + r2.y2());
+        }
+    };
+
+}
@@ -0,0 +1,192 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.EntryVisitor;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Synchronous searches that report results to an {@link EntryVisitor} or
+ * collect them rather than emitting them to an Rx subscriber.
+ */
+public final class SearchHelper {
+
+    private SearchHelper() {
+        // prevent instantiation
+    }
+
+    /**
+     * Visits the entries under {@code node} whose geometry intersects
+     * {@code r}. Node bounding rectangles (and entry geometries that are
+     * rectangles or points) are tested against the corners of {@code r} with
+     * primitive float comparisons. Other entry geometries are tested with
+     * {@link Geometry#intersects(Rectangle)}.
+     * 
+     * @param node
+     *            node to search (its own bounding rectangle is not checked)
+     * @param r
+     *            rectangle to check intersection with
+     * @param visitor
+     *            receives the matching entries
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return false if the visitor stopped the search, otherwise true
+     */
+    public static <T, S extends Geometry> boolean search(Node<T, S> node, Rectangle r,
+            EntryVisitor<T, S> visitor) {
+        return search(node, r, r.x1(), r.y1(), r.x2(), r.y2(), visitor);
+    }
+
+    private static <T, S extends Geometry> boolean search(Node<T, S> node, Rectangle r,
+            float x1, float y1, float x2, float y2, EntryVisitor<T, S> visitor) {
+        int count = node.count();
+        if (node instanceof Leaf) {
+            Leaf<T, S> leaf = (Leaf<T, S>) node;
+            for (int i = 0; i < count; i++) {
+                Entry<T, S> entry = leaf.entry(i);
+                S g = entry.geometry();
+                boolean matches;
+                if (g instanceof Rectangle) {
+                    Rectangle m = (Rectangle) g;
+                    matches = intersects(m, x1, y1, x2, y2);
+                } else
+                    matches = g.intersects(r);
+                if (matches && !visitor.visit(entry))
+                    return false;
+            }
+        } else {
+            NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+            for (int i = 0; i < count; i++) {
+                Node<T, S> child = nonLeaf.child(i);
+                if (intersects(child.geometry().mbr(), x1, y1, x2, y2)
+                        && !search(child, r, x1, y1, x2, y2, visitor))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Searches for the entries under {@code node} intersecting each of the
+     * given rectangles in a single traversal. Each node is visited once with
+     * the indexes of the queries that intersect its bounding rectangle and only
+     * those queries are carried into its children. Node bounding rectangles
+     * (and entry geometries that are rectangles or points) are tested with
+     * primitive float comparisons. Other entry geometries are tested with
+     * {@link Geometry#intersects(Rectangle)}.
+     * 
+     * @param node
+     *            node to search (its own bounding rectangle is not checked)
+     * @param queries
+     *            rectangles to check intersection with
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return list where element i holds the entries intersecting query i in
+     *         the same order as a search of query i alone would return them
+     */
+    public static <T, S extends Geometry> List<List<Entry<T, S>>> searchBatch(Node<T, S> node,
+            List<Rectangle> queries) {
+        BatchSearch<T, S> search = new BatchSearch<T, S>(queries);
+        int[] active = search.buffer(0);
+        for (int q = 0; q < active.length; q++)
+            active[q] = q;
+        search.search(node, 0, active.length);
+        return search.results;
+    }
+
+    private static final class BatchSearch<T, S extends Geometry> {
+
+        private final List<Rectangle> queries;
+        private final float[] x1;
+        private final float[] y1;
+        private final float[] x2;
+        private final float[] y2;
+        private final List<List<Entry<T, S>>> results;
+        // one buffer of active query indexes per depth, reused by siblings
+        private final List<int[]> buffers = new ArrayList<int[]>();
+
+        BatchSearch(List<Rectangle> queries) {
+            this.queries = queries;
+            int n = queries.size();
+            x1 = new float[n];
+            y1 = new float[n];
+            x2 = new float[n];
+            y2 = new float[n];
+            results = new ArrayList<List<Entry<T, S>>>(n);
+            for (int q = 0; q < n; q++) {
+                Rectangle r = queries.get(q);
+                x1[q] = r.x1();
+                y1[q] = r.y1();
+                x2[q] = r.x2();
+                y2[q] = r.y2();
+                results.add(new ArrayList<Entry<T, S>>());
+            }
+        }
+
+        int[] buffer(int depth) {
+            if (depth == buffers.size())
+                buffers.add(new int[queries.size()]);
+            return buffers.get(depth);
+        }
+
+        /**
+         * Searches {@code node} for the first {@code numActive} query indexes
+         * in the buffer for {@code depth}.
+         */
+        void search(Node<T, S> node, int depth, int numActive) {
+            int[] active = buffers.get(depth);
+            int count = node.count();
+            if (node instanceof Leaf) {
+                Leaf<T, S> leaf = (Leaf<T, S>) node;
+                for (int i = 0; i < count; i++) {
+                    Entry<T, S> entry = leaf.entry(i);
+                    S g = entry.geometry();
+                    if (g instanceof Rectangle) {
+                        Rectangle m = (Rectangle) g;
+                        for (int j = 0; j < numActive; j++) {
+                            int q = active[j];
+                            if (intersects(m, x1[q], y1[q], x2[q], y2[q]))
+                                results.get(q).add(entry);
+                        }
+                    } else {
+                        for (int j = 0; j < numActive; j++) {
+                            int q = active[j];
+                            if (g.intersects(queries.get(q)))
+                                results.get(q).add(entry);
+                        }
+                    }
+                }
+            } else {
+                NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+                int[] childActive = buffer(depth + 1);
+                for (int i = 0; i < count; i++) {
+                    Node<T, S> child = nonLeaf.child(i);
+                    Rectangle m = child.geometry().mbr();
+                    int numChildActive = 0;
+                    for (int j = 0; j < numActive; j++) {
+                        int q = active[j];
+                        if (intersects(m, x1[q], y1[q], x2[q], y2[q]))
+                            childActive[numChildActive++] = q;
+                    }
+                    if (numChildActive > 0)
+                        search(child, depth + 1, numChildActive);
+                }
+            }
+        }
+    }
+
+    private static boolean intersects(Rectangle m, float x1, float y1, float x2, float y2) {
+        return m.x1() <= x2 && x1 <= m.x2() && m.y1() <= y2 && y1 <= m.y2();
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.github.davidmoten.rtree.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Insertion that changes nodes in place for a transient tree. Every node
+ * created by a transient tree records the tree's owner token. A node with the
+ * same owner is changed in place. Any other node (shared with an immutable
+ * tree or created by another transient tree) is first copied into a node the
+ * owner may change, so only the path from the root to the leaf is copied and
+ * only the first time it is touched. The selection and split decisions (and
+ * the order of children) are the same as for immutable insertion so the
+ * resulting tree is the same as one built by repeated
+ * {@link com.github.davidmoten.rtree.RTree#add(Entry) RTree.add}.
+ */
+public final class TransientHelper {
+
+    private TransientHelper() {
+        // prevent instantiation
+    }
+
+    /**
+     * Adds the entry to the tree with the given root, changing nodes owned by
+     * {@code owner} in place, and returns the root afterwards (which may be a
+     * new node if the root was copied or split).
+     *
+     * @param root
+     *            the root of the tree, may be absent
+     * @param entry
+     *            entry to add
+     * @param owner
+     *            token identifying the transient tree
+     * @param context
+     *            tree context
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return the new root
+     */
+    public static <T, S extends Geometry> Node<T, S> add(Optional<? extends Node<T, S>> root,
+            Entry<T, S> entry, Object owner, Context<T, S> context) {
+        if (!root.isPresent()) {
+            List<Entry<T, S>> entries = new ArrayList<Entry<T, S>>(context.maxChildren() + 1);
+            entries.add(entry);
+            return new LeafTransient<T, S>(owner, entries, context);
+        }
+        Node<T, S> node = editable(root.get(), owner);
+        Node<T, S> sibling = insert(node, entry);
+        if (sibling == null)
+            return node;
+        else {
+            List<Node<T, S>> children = new ArrayList<Node<T, S>>(context.maxChildren() + 1);
+            children.add(node);
+            children.add(sibling);
+            return new NonLeafTransient<T, S>(owner, children, context);
+        }
+    }
+
+    /**
+     * Returns the node itself if the owner may change it, otherwise a copy
+     * that the owner may change.
+     */
+    static <T, S extends Geometry> Node<T, S> editable(Node<T, S> node, Object owner) {
+        Context<T, S> context = node.context();
+        if (node instanceof LeafTransient) {
+            if (((LeafTransient<T, S>) node).owner() == owner)
+                return node;
+        } else if (node instanceof NonLeafTransient) {
+            if (((NonLeafTransient<T, S>) node).owner() == owner)
+                return node;
+        }
+        if (node instanceof Leaf) {
+            List<Entry<T, S>> entries = new ArrayList<Entry<T, S>>(context.maxChildren() + 1);
+            entries.addAll(((Leaf<T, S>) node).entries());
+            return new LeafTransient<T, S>(owner, entries, context);
+        } else {
+            List<Node<T, S>> children = new ArrayList<Node<T, S>>(context.maxChildren() + 1);
+            children.addAll(((NonLeaf<T, S>) node).children());
+            return new NonLeafTransient<T, S>(owner, children, context);
+        }
+    }
+
+    static <T, S extends Geometry> Node<T, S> insert(Node<T, S> node, Entry<T, S> entry) {
+        if (node instanceof LeafTransient)
+            return ((LeafTransient<T, S>) node).insert(entry);
+        else
+            return ((NonLeafTransient<T, S>) node).insert(entry);
+    }
+
+    /**
+     * Splits the items in two with the context's splitter. The groups are
+     * copied into lists that can be changed in place.
+     */
+    static <T extends HasGeometry> List<List<T>> split(List<T> items, Context<?, ?> context) {
+        ListPair<T> pair = context.splitter().split(items, context.minChildren());
+        List<List<T>> groups = new ArrayList<List<T>>(2);
+        groups.add(copy(pair.group1().list(), context));
+        groups.add(copy(pair.group2().list(), context));
+        return groups;
+    }
+
+    private static <T> List<T> copy(List<T> list, Context<?, ?> context) {
+        List<T> copy = new ArrayList<T>(context.maxChildren() + 1);
+        copy.addAll(list);
+        return copy;
+    }
+
+    static Rectangle grow(Rectangle mbr, Rectangle r) {
+        // avoid creating a rectangle when the bounds do not change
+        if (r.x1() >= mbr.x1() && r.y1() >= mbr.y1() && r.x2() <= mbr.x2()
+                && r.y2() <= mbr.y2())
+            return mbr;
+        else
+            return mbr.add(r);
+    }
+
+}
@@ -83,4 +83,37 @@ public final class Util {
         return list2;
     }
 
+    /**
+     * Returns true if and only if {@code b} lies within {@code a}.
+     * 
+     * @param a
+     *            the outer rectangle
+     * @param b
+     *            the inner rectangle
+     * @return true if a contains b
+     */
+    public static boolean contains(Rectangle a, Rectangle b) {
+        return a.x1() <= b.x1() && a.y1() <= b.y1() && b.x2() <= a.x2() && b.y2() <= a.y2();
+    }
+
+    /**
+     * Returns a copy of the list with the element at the given position
+     * replaced.
+     * 
+     * @param list
+     *            the list to copy
+     * @param index
+     *            position of the element to replace
+     * @param element
+     *            the new element
+     * @param <T>
+     *            the element type
+     * @return the changed copy
+     */
+    public static <T> List<T> set(List<? extends T> list, int index, T element) {
+        final List<T> result = new ArrayList<T>(list);
+        result.set(index, element);
+        return result;
+    }
+
 }
@@ -1,55 +1,98 @@
 package com.github.davidmoten.rtree.kryo;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
-import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.github.davidmoten.guavamini.Optional;
 import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entries;
 import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Factory;
+import com.github.davidmoten.rtree.FileSerializer;
 import com.github.davidmoten.rtree.InternalStructure;
 import com.github.davidmoten.rtree.Leaf;
 import com.github.davidmoten.rtree.Node;
 import com.github.davidmoten.rtree.NonLeaf;
 import com.github.davidmoten.rtree.RTree;
-import com.github.davidmoten.rtree.SelectorRStar;
+import com.github.davidmoten.rtree.Selector;
 import com.github.davidmoten.rtree.Serializer;
 import com.github.davidmoten.rtree.SerializerHelper;
-import com.github.davidmoten.rtree.SplitterRStar;
+import com.github.davidmoten.rtree.Splitter;
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometries;
 import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Line;
+import com.github.davidmoten.rtree.geometry.Point;
 import com.github.davidmoten.rtree.geometry.Rectangle;
 import com.github.davidmoten.rtree.internal.FactoryDefault;
 
-import rx.functions.Func0;
 import rx.functions.Func1;
 
-public class SerializerKryo<T, S extends Geometry> implements Serializer<T, S> {
+/**
+ * Compact binary serializer written with Kryo's buffered {@link Output}. The
+ * format is:
+ * 
+ * <pre>
+ * version, minChildren, maxChildren, selector class, splitter class, size, hasRoot, root
+ * </pre>
+ * 
+ * followed by the nodes in pre-order, each a leaf flag and a child count. A
+ * leaf lists its entries as a geometry type, the floats of the geometry and
+ * the serialized value preceded by its length plus one (zero for a null
+ * value). Counts and lengths are variable length integers. Bounding
+ * rectangles are not written because they are recalculated when the nodes
+ * are recreated.
+ * 
+ * <p>
+ * Trees are always read into the default in-memory structure.
+ */
+public class SerializerKryo<T, S extends Geometry> implements FileSerializer<T, S> {
+
+	private static final int VERSION = 1;
+
+	private static final byte POINT = 0;
+	private static final byte RECTANGLE = 1;
+	private static final byte CIRCLE = 2;
+	private static final byte LINE = 3;
 
 	private final Func1<? super T, byte[]> serializer;
 	private final Func1<byte[], ? extends T> deserializer;
-	private final Func0<Kryo> kryoFactory;
 
-	public SerializerKryo(Func1<? super T, byte[]> serializer, Func1<byte[], ? extends T> deserializer,
-			Func0<Kryo> kryoFactory) {
+	public SerializerKryo(Func1<? super T, byte[]> serializer, Func1<byte[], ? extends T> deserializer) {
 		this.serializer = serializer;
 		this.deserializer = deserializer;
-		this.kryoFactory = kryoFactory;
 	}
 
 	@Override
 	public void write(RTree<T, S> tree, OutputStream os) throws IOException {
 		Output output = new Output(os);
-		Kryo kryo = kryoFactory.call();
-		write(kryo, output, tree);
+		write(output, tree);
+		output.flush();
+	}
+
+	@Override
+	public void write(RTree<T, S> tree, File file) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			write(tree, os);
+		} finally {
+			os.close();
+		}
 	}
 
-	private void write(Kryo kryo, Output output, RTree<T, S> tree) {
+	private void write(Output output, RTree<T, S> tree) {
+		output.writeByte(VERSION);
 		writeContext(tree.context(), output);
+		output.writeInt(tree.size(), true);
 		output.writeBoolean(tree.root().isPresent());
-		output.writeInt(tree.size());
 		if (tree.root().isPresent()) {
 			writeNode(tree.root().get(), output);
 		}
@@ -58,88 +101,171 @@ public class SerializerKryo<T, S extends Geometry> implements Serializer<T, S> {
 	private void writeNode(Node<T, S> node, Output output) {
 		boolean isLeaf = node instanceof Leaf;
 		output.writeBoolean(isLeaf);
+		int count = node.count();
+		output.writeInt(count, true);
 		if (isLeaf) {
 			Leaf<T, S> leaf = (Leaf<T, S>) node;
-			writeBounds(output, leaf.geometry().mbr());
-			output.writeInt(leaf.count());
-			for (Entry<T, S> entry : leaf.entries()) {
-				S g = entry.geometry();
+			for (int i = 0; i < count; i++) {
+				Entry<T, S> entry = leaf.entry(i);
+				writeGeometry(output, entry.geometry());
 				writeValue(output, entry.value());
-				writeGeometry(output, g);
 			}
 		} else {
 			NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
-			writeBounds(output, nonLeaf.geometry().mbr());
-			output.writeInt(nonLeaf.count());
-			for (Node<T, S> nd : nonLeaf.children()) {
-				writeNode(nd, output);
+			for (int i = 0; i < count; i++) {
+				writeNode(nonLeaf.child(i), output);
 			}
 		}
 	}
 
 	private void writeValue(Output output, T t) {
-		byte[] bytes = serializer.call(t);
-		output.write(bytes.length);
-		output.write(bytes);
-	}
-
-	private void writeRectangle(Output output, S g) {
-		Rectangle r = (Rectangle) g;
-		output.write(0);
-		writeBounds(output, r);
+		byte[] bytes = t == null ? null : serializer.call(t);
+		if (bytes == null) {
+			output.writeInt(0, true);
+		} else {
+			output.writeInt(bytes.length + 1, true);
+			output.writeBytes(bytes);
+		}
 	}
 
-	private void writeGeometry(Output output, S g) {
-		if (g instanceof Rectangle) {
-			writeRectangle(output, g);
+	private static void writeGeometry(Output output, Geometry g) {
+		// Point must be checked before Rectangle because Point is a Rectangle
+		if (g instanceof Point) {
+			Point p = (Point) g;
+			output.writeByte(POINT);
+			output.writeFloat(p.x());
+			output.writeFloat(p.y());
+		} else if (g instanceof Rectangle) {
+			output.writeByte(RECTANGLE);
+			writeBounds(output, (Rectangle) g);
+		} else if (g instanceof Circle) {
+			Circle c = (Circle) g;
+			output.writeByte(CIRCLE);
+			output.writeFloat(c.x());
+			output.writeFloat(c.y());
+			output.writeFloat(c.radius());
+		} else if (g instanceof Line) {
+			Line line = (Line) g;
+			output.writeByte(LINE);
+			output.writeFloat(line.x1());
+			output.writeFloat(line.y1());
+			output.writeFloat(line.x2());
+			output.writeFloat(line.y2());
 		} else {
-			throw new RuntimeException("unexpected");
+			throw new IllegalArgumentException("unsupported geometry type: " + g.getClass());
 		}
 	}
 
-	private void writeBounds(Output output, Rectangle mbr) {
+	private static void writeBounds(Output output, Rectangle mbr) {
 		output.writeFloat(mbr.x1());
 		output.writeFloat(mbr.y1());
-		output.writeFloat(mbr.y1());
+		output.writeFloat(mbr.x2());
 		output.writeFloat(mbr.y2());
 	}
 
-	private void writeContext(Context<T, S> context, Output output) {
-		output.writeInt(context.minChildren());
-		output.writeInt(context.maxChildren());
+	private static void writeContext(Context<?, ?> context, Output output) {
+		output.writeInt(context.minChildren(), true);
+		output.writeInt(context.maxChildren(), true);
+		output.writeString(context.selector().getClass().getName());
+		output.writeString(context.splitter().getClass().getName());
 	}
 
+	/**
+	 * Reads exactly {@code sizeBytes} bytes from the stream (so a tree can be
+	 * read from a larger stream) into the default in-memory structure. The
+	 * {@code structure} parameter is ignored because this format has no
+	 * serialized form that can be searched in place.
+	 */
 	@Override
 	public RTree<T, S> read(InputStream is, long sizeBytes, InternalStructure structure) throws IOException {
-		Input input = new Input(is);
-		return read(input);
+		return read(new Input(SerializerHelper.readFully(is, sizeBytes)));
+	}
+
+	@Override
+	public RTree<T, S> read(File file, InternalStructure structure) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			return read(is, file.length(), structure);
+		} finally {
+			is.close();
+		}
 	}
 
-	private static <T, S extends Geometry> RTree<T, S> read(Input input) {
+	private RTree<T, S> read(Input input) throws IOException {
+		int version = input.readByte();
+		if (version != VERSION) {
+			throw new IOException("unsupported format version " + version);
+		}
 		Context<T, S> context = readContext(input);
+		int size = input.readInt(true);
 		boolean hasRoot = input.readBoolean();
-		int size = input.readInt();
 		final Optional<Node<T, S>> root;
 		if (hasRoot) {
-			root = Optional.of(SerializerKryo.<T, S>readNode(input));
+			root = Optional.of(readNode(input, context));
 		} else {
 			root = Optional.absent();
 		}
 		return SerializerHelper.create(root, size, context);
 	}
 
-	private static <T, S extends Geometry> Node<T, S> readNode(Input input) {
-		// TODO
-		return null;
+	private Node<T, S> readNode(Input input, Context<T, S> context) {
+		boolean isLeaf = input.readBoolean();
+		int count = input.readInt(true);
+		Factory<T, S> factory = context.factory();
+		if (isLeaf) {
+			List<Entry<T, S>> entries = new ArrayList<Entry<T, S>>(count);
+			for (int i = 0; i < count; i++) {
+				S geometry = SerializerKryo.<S> readGeometry(input);
+				entries.add(Entries.entry(readValue(input), geometry));
+			}
+			return factory.createLeaf(entries, context);
+		} else {
+			List<Node<T, S>> children = new ArrayList<Node<T, S>>(count);
+			for (int i = 0; i < count; i++) {
+				children.add(readNode(input, context));
+			}
+			return factory.createNonLeaf(children, context);
+		}
+	}
+
+	private T readValue(Input input) {
+		int length = input.readInt(true);
+		if (length == 0) {
+			return null;
+		} else {
+			return deserializer.call(input.readBytes(length - 1));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <S extends Geometry> S readGeometry(Input input) {
+		byte type = input.readByte();
+		final Geometry g;
+		if (type == POINT) {
+			g = Geometries.point(input.readFloat(), input.readFloat());
+		} else if (type == RECTANGLE) {
+			g = Geometries.rectangle(input.readFloat(), input.readFloat(), input.readFloat(), input.readFloat());
+		} else if (type == CIRCLE) {
+			g = Geometries.circle(input.readFloat(), input.readFloat(), input.readFloat());
+		} else if (type == LINE) {
+			g = Geometries.line(input.readFloat(), input.readFloat(), input.readFloat(), input.readFloat());
+		} else {
+			throw new RuntimeException("unexpected geometry type " + type);
+		}
+		return (S) g;
 	}
 
 	private static <T, S extends Geometry> Context<T, S> readContext(Input input) {
-		return new Context<T, S>(2, 4, new SelectorRStar(), new SplitterRStar(), FactoryDefault.<T, S>instance());
+		int minChildren = input.readInt(true);
+		int maxChildren = input.readInt(true);
+		Selector selector = SerializerHelper.newInstance(input.readString(), Selector.class);
+		Splitter splitter = SerializerHelper.newInstance(input.readString(), Splitter.class);
+		return new Context<T, S>(minChildren, maxChildren, selector, splitter, FactoryDefault.<T, S> instance());
 	}
 
 	public static <T, S extends Geometry> Serializer<T, S> create(Func1<? super T, byte[]> serializer,
-			Func1<byte[], ? extends T> deserializer, Func0<Kryo> kryoFactory) {
-		return new SerializerKryo<T, S>(serializer, deserializer, kryoFactory);
+			Func1<byte[], ? extends T> deserializer) {
+		return new SerializerKryo<T, S>(serializer, deserializer);
 	}
 
 }
@@ -0,0 +1,123 @@
+package com.github.davidmoten.rtree.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+import rx.functions.Func1;
+
+/**
+ * Append-only storage for node records held in {@link ByteBuffer}s allocated
+ * outside the Java heap. Records are allocated by bumping an offset in the
+ * current chunk and are addressed by a {@code long} combining the chunk index
+ * and the offset within the chunk.
+ *
+ * <p>
+ * Nothing is ever freed: nodes replaced by adding to or deleting from a tree
+ * stay in the arena until the arena itself is garbage collected. An arena is
+ * best suited to bulk loaded trees that change little.
+ *
+ * <p>
+ * Allocation is thread-safe. Records are only read using absolute
+ * {@link ByteBuffer} methods so may be read concurrently.
+ */
+public final class Arena {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final Func1<Integer, ByteBuffer> DIRECT = new Func1<Integer, ByteBuffer>() {
+        @Override
+        public ByteBuffer call(Integer size) {
+            return ByteBuffer.allocateDirect(size);
+        }
+    };
+
+    private final int chunkSize;
+    private final Func1<Integer, ByteBuffer> allocator;
+
+    // replaced (never modified) when a chunk is added so that readers need no
+    // locking
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    // guarded by this
+    private int position;
+    private long bytesAllocated;
+
+    public Arena() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public Arena(int chunkSize) {
+        this(chunkSize, DIRECT);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param chunkSize
+     *            the size in bytes of the buffers requested from the
+     *            allocator (a record larger than this gets a buffer of its
+     *            own)
+     * @param allocator
+     *            returns a new buffer with at least the requested capacity,
+     *            for example a direct buffer or a region of a memory mapped
+     *            file
+     */
+    public Arena(int chunkSize, Func1<Integer, ByteBuffer> allocator) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        Preconditions.checkNotNull(allocator);
+        this.chunkSize = chunkSize;
+        this.allocator = allocator;
+    }
+
+    /**
+     * Returns the total number of bytes of records allocated so far.
+     * 
+     * @return bytes allocated
+     */
+    public synchronized long bytesAllocated() {
+        return bytesAllocated;
+    }
+
+    /**
+     * Returns the number of buffers obtained from the allocator so far.
+     * 
+     * @return number of chunks
+     */
+    public int chunks() {
+        return chunks.length;
+    }
+
+    synchronized long allocate(int size) {
+        ByteBuffer[] c = chunks;
+        if (c.length == 0 || position + size > c[c.length - 1].capacity()) {
+            ByteBuffer chunk = allocator.call(Math.max(size, chunkSize));
+            Preconditions.checkArgument(chunk.capacity() >= size,
+                    "allocator returned a buffer that is too small");
+            chunk.order(ByteOrder.nativeOrder());
+            c = Arrays.copyOf(c, c.length + 1);
+            c[c.length - 1] = chunk;
+            chunks = c;
+            position = 0;
+        }
+        long address = address(c.length - 1, position);
+        position += size;
+        bytesAllocated += size;
+        return address;
+    }
+
+    ByteBuffer buffer(long address) {
+        return chunks[(int) (address >>> 32)];
+    }
+
+    static int offset(long address) {
+        return (int) address;
+    }
+
+    private static long address(int chunk, int offset) {
+        return ((long) chunk << 32) | offset;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.github.davidmoten.rtree.offheap;
+
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Factory;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+import rx.functions.Func1;
+
+/**
+ * Stores nodes outside the Java heap as records in an {@link Arena} so that
+ * large trees add little to heap size and garbage collection times. Node
+ * objects are small handles created on demand from record addresses and
+ * values are stored in serialized form. Points, rectangles, circles and lines
+ * are supported.
+ *
+ * @param <T>
+ *            the object type
+ * @param <S>
+ *            the geometry type
+ */
+public final class FactoryOffHeap<T, S extends Geometry> implements Factory<T, S> {
+
+    private final Arena arena;
+    private final Func1<? super T, byte[]> serializer;
+    private final Func1<byte[], ? extends T> deserializer;
+
+    public FactoryOffHeap(Func1<? super T, byte[]> serializer,
+            Func1<byte[], ? extends T> deserializer) {
+        this(new Arena(), serializer, deserializer);
+    }
+
+    public FactoryOffHeap(Arena arena, Func1<? super T, byte[]> serializer,
+            Func1<byte[], ? extends T> deserializer) {
+        Preconditions.checkNotNull(arena);
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(deserializer);
+        this.arena = arena;
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+    }
+
+    @Override
+    public Leaf<T, S> createLeaf(List<Entry<T, S>> entries, Context<T, S> context) {
+        return new LeafOffHeap<T, S>(this, context,
+                OffHeapHelper.writeLeaf(arena, entries, serializer));
+    }
+
+    @Override
+    public NonLeaf<T, S> createNonLeaf(List<? extends Node<T, S>> children, Context<T, S> context) {
+        return new NonLeafOffHeap<T, S>(this, context,
+                OffHeapHelper.writeNonLeaf(arena, children));
+    }
+
+    @Override
+    public Entry<T, S> createEntry(T value, S geometry) {
+        return Entries.entry(value, geometry);
+    }
+
+    public Arena arena() {
+        return arena;
+    }
+
+    public Func1<? super T, byte[]> serializer() {
+        return serializer;
+    }
+
+    public Func1<byte[], ? extends T> deserializer() {
+        return deserializer;
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.github.davidmoten.rtree.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.IntersectsRectangle;
+import com.github.davidmoten.rtree.internal.LeafHelper;
+import com.github.davidmoten.rtree.internal.NodeAndEntries;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+final class LeafOffHeap<T, S extends Geometry> implements Leaf<T, S>, NodeOffHeap {
+
+    private final FactoryOffHeap<T, S> factory;
+    private final Context<T, S> context;
+    private final long address;
+    private final ByteBuffer buffer;
+    private final int offset;
+
+    LeafOffHeap(FactoryOffHeap<T, S> factory, Context<T, S> context, long address) {
+        this.factory = factory;
+        this.context = context;
+        this.address = address;
+        this.buffer = factory.arena().buffer(address);
+        this.offset = Arena.offset(address);
+    }
+
+    @Override
+    public Arena arena() {
+        return factory.arena();
+    }
+
+    @Override
+    public long address() {
+        return address;
+    }
+
+    @Override
+    public Geometry geometry() {
+        // create on demand so that the node holds no rectangle on the heap
+        return OffHeapHelper.mbr(buffer, offset);
+    }
+
+    @Override
+    public List<Entry<T, S>> entries() {
+        int count = count();
+        List<Entry<T, S>> list = new ArrayList<Entry<T, S>>(count);
+        for (int i = 0; i < count; i++)
+            list.add(entry(i));
+        return list;
+    }
+
+    @Override
+    public Entry<T, S> entry(int i) {
+        return OffHeapHelper.entry(buffer, offset, i, factory.deserializer());
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> condition,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        if (condition instanceof IntersectsRectangle) {
+            if (condition.call(geometry()))
+                OffHeapHelper.search(factory.arena(), address, (IntersectsRectangle) condition,
+                        subscriber, factory.deserializer());
+        } else
+            LeafHelper.search(condition, subscriber, this);
+    }
+
+    @Override
+    public int count() {
+        return OffHeapHelper.count(buffer, offset);
+    }
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        return LeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return LeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, S> context() {
+        return context;
+    }
+
+}
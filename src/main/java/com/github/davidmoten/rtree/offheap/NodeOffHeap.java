@@ -0,0 +1,12 @@
+package com.github.davidmoten.rtree.offheap;
+
+/**
+ * A node whose record is stored in an {@link Arena}.
+ */
+interface NodeOffHeap {
+
+    Arena arena();
+
+    long address();
+
+}
@@ -0,0 +1,97 @@
+package com.github.davidmoten.rtree.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.IntersectsRectangle;
+import com.github.davidmoten.rtree.internal.NodeAndEntries;
+import com.github.davidmoten.rtree.internal.NonLeafHelper;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+final class NonLeafOffHeap<T, S extends Geometry> implements NonLeaf<T, S>, NodeOffHeap {
+
+    private final FactoryOffHeap<T, S> factory;
+    private final Context<T, S> context;
+    private final long address;
+    private final ByteBuffer buffer;
+    private final int offset;
+
+    NonLeafOffHeap(FactoryOffHeap<T, S> factory, Context<T, S> context, long address) {
+        this.factory = factory;
+        this.context = context;
+        this.address = address;
+        this.buffer = factory.arena().buffer(address);
+        this.offset = Arena.offset(address);
+    }
+
+    @Override
+    public Arena arena() {
+        return factory.arena();
+    }
+
+    @Override
+    public long address() {
+        return address;
+    }
+
+    @Override
+    public Geometry geometry() {
+        // create on demand so that the node holds no rectangle on the heap
+        return OffHeapHelper.mbr(buffer, offset);
+    }
+
+    @Override
+    public Node<T, S> child(int i) {
+        return OffHeapHelper.node(factory, context, OffHeapHelper.childAddress(buffer, offset, i));
+    }
+
+    @Override
+    public List<Node<T, S>> children() {
+        int count = count();
+        List<Node<T, S>> list = new ArrayList<Node<T, S>>(count);
+        for (int i = 0; i < count; i++)
+            list.add(child(i));
+        return list;
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> criterion,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        if (criterion instanceof IntersectsRectangle) {
+            // walk the records directly without creating node objects
+            if (criterion.call(geometry()))
+                OffHeapHelper.search(factory.arena(), address, (IntersectsRectangle) criterion,
+                        subscriber, factory.deserializer());
+        } else
+            NonLeafHelper.search(criterion, subscriber, this);
+    }
+
+    @Override
+    public int count() {
+        return OffHeapHelper.count(buffer, offset);
+    }
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        return NonLeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return NonLeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, S> context() {
+        return context;
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.github.davidmoten.rtree.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Line;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.internal.IntersectsRectangle;
+import com.github.davidmoten.rtree.internal.Util;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Reads and writes node records in an {@link Arena}. Every record starts with
+ * a header of the record type, the number of children and the bounding
+ * rectangle of the node:
+ * 
+ * <pre>
+ * int type, int count, float x1, float y1, float x2, float y2
+ * </pre>
+ * 
+ * A non-leaf record follows the header with a slot per child holding the
+ * child's bounding rectangle and address:
+ * 
+ * <pre>
+ * float x1, float y1, float x2, float y2, long address
+ * </pre>
+ * 
+ * A leaf record follows the header with a slot per entry holding the geometry
+ * type, up to four floats describing the geometry and the position (relative
+ * to the start of the record) and length of the serialized value, then the
+ * serialized values:
+ * 
+ * <pre>
+ * int geometryType, float, float, float, float, int valueOffset, int valueLength
+ * </pre>
+ * 
+ * A value length of -1 represents a null value.
+ */
+final class OffHeapHelper {
+
+    static final int LEAF = 0;
+    static final int NON_LEAF = 1;
+
+    static final int HEADER_SIZE = 24;
+    static final int CHILD_SIZE = 24;
+    static final int ENTRY_SIZE = 28;
+
+    // offsets within the header
+    static final int COUNT = 4;
+    static final int MBR = 8;
+
+    private static final int POINT = 0;
+    private static final int RECTANGLE = 1;
+    private static final int CIRCLE = 2;
+    private static final int LINE = 3;
+
+    private OffHeapHelper() {
+        // prevent instantiation
+    }
+
+    static <T, S extends Geometry> long writeLeaf(Arena arena, List<Entry<T, S>> entries,
+            Func1<? super T, byte[]> serializer) {
+        int n = entries.size();
+        byte[][] values = new byte[n][];
+        int size = HEADER_SIZE + n * ENTRY_SIZE;
+        for (int i = 0; i < n; i++) {
+            T value = entries.get(i).value();
+            values[i] = value == null ? null : serializer.call(value);
+            if (values[i] != null)
+                size += values[i].length;
+        }
+        long address = arena.allocate(size);
+        ByteBuffer b = arena.buffer(address);
+        int o = Arena.offset(address);
+        writeHeader(b, o, LEAF, n, Util.mbr(entries));
+        int valueOffset = HEADER_SIZE + n * ENTRY_SIZE;
+        for (int i = 0; i < n; i++) {
+            int slot = o + HEADER_SIZE + i * ENTRY_SIZE;
+            writeGeometry(b, slot, entries.get(i).geometry());
+            byte[] bytes = values[i];
+            if (bytes == null) {
+                b.putInt(slot + 20, 0);
+                b.putInt(slot + 24, -1);
+            } else {
+                b.putInt(slot + 20, valueOffset);
+                b.putInt(slot + 24, bytes.length);
+                for (int j = 0; j < bytes.length; j++)
+                    b.put(o + valueOffset + j, bytes[j]);
+                valueOffset += bytes.length;
+            }
+        }
+        return address;
+    }
+
+    static <T, S extends Geometry> long writeNonLeaf(Arena arena,
+            List<? extends Node<T, S>> children) {
+        int n = children.size();
+        long address = arena.allocate(HEADER_SIZE + n * CHILD_SIZE);
+        ByteBuffer b = arena.buffer(address);
+        int o = Arena.offset(address);
+        writeHeader(b, o, NON_LEAF, n, Util.mbr(children));
+        for (int i = 0; i < n; i++) {
+            Node<T, S> child = children.get(i);
+            if (!(child instanceof NodeOffHeap)
+                    || ((NodeOffHeap) child).arena() != arena)
+                throw new IllegalArgumentException(
+                        "children must be off-heap nodes stored in the same arena");
+            int slot = o + HEADER_SIZE + i * CHILD_SIZE;
+            writeRectangle(b, slot, child.geometry().mbr());
+            b.putLong(slot + 16, ((NodeOffHeap) child).address());
+        }
+        return address;
+    }
+
+    private static void writeHeader(ByteBuffer b, int o, int type, int count, Rectangle mbr) {
+        b.putInt(o, type);
+        b.putInt(o + COUNT, count);
+        writeRectangle(b, o + MBR, mbr);
+    }
+
+    private static void writeRectangle(ByteBuffer b, int o, Rectangle r) {
+        b.putFloat(o, r.x1());
+        b.putFloat(o + 4, r.y1());
+        b.putFloat(o + 8, r.x2());
+        b.putFloat(o + 12, r.y2());
+    }
+
+    private static void writeGeometry(ByteBuffer b, int slot, Geometry g) {
+        // Point must be checked before Rectangle because Point is a Rectangle
+        if (g instanceof Point) {
+            Point p = (Point) g;
+            b.putInt(slot, POINT);
+            writeFloats(b, slot + 4, p.x(), p.y(), p.x(), p.y());
+        } else if (g instanceof Rectangle) {
+            Rectangle r = (Rectangle) g;
+            b.putInt(slot, RECTANGLE);
+            writeFloats(b, slot + 4, r.x1(), r.y1(), r.x2(), r.y2());
+        } else if (g instanceof Circle) {
+            Circle c = (Circle) g;
+            b.putInt(slot, CIRCLE);
+            writeFloats(b, slot + 4, c.x(), c.y(), c.radius(), 0);
+        } else if (g instanceof Line) {
+            Line line = (Line) g;
+            b.putInt(slot, LINE);
+            writeFloats(b, slot + 4, line.x1(), line.y1(), line.x2(), line.y2());
+        } else
+            throw new IllegalArgumentException(
+                    "unsupported geometry type for off-heap storage: " + g.getClass());
+    }
+
+    private static void writeFloats(ByteBuffer b, int o, float a, float c, float d, float e) {
+        b.putFloat(o, a);
+        b.putFloat(o + 4, c);
+        b.putFloat(o + 8, d);
+        b.putFloat(o + 12, e);
+    }
+
+    static int count(ByteBuffer b, int o) {
+        return b.getInt(o + COUNT);
+    }
+
+    static Rectangle mbr(ByteBuffer b, int o) {
+        return Geometries.rectangle(b.getFloat(o + MBR), b.getFloat(o + MBR + 4),
+                b.getFloat(o + MBR + 8), b.getFloat(o + MBR + 12));
+    }
+
+    static long childAddress(ByteBuffer b, int o, int i) {
+        return b.getLong(o + HEADER_SIZE + i * CHILD_SIZE + 16);
+    }
+
+    static <T, S extends Geometry> Node<T, S> node(FactoryOffHeap<T, S> factory,
+            Context<T, S> context, long address) {
+        Arena arena = factory.arena();
+        ByteBuffer b = arena.buffer(address);
+        if (b.getInt(Arena.offset(address)) == LEAF)
+            return new LeafOffHeap<T, S>(factory, context, address);
+        else
+            return new NonLeafOffHeap<T, S>(factory, context, address);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T, S extends Geometry> Entry<T, S> entry(ByteBuffer b, int o, int i,
+            Func1<byte[], ? extends T> deserializer) {
+        int slot = o + HEADER_SIZE + i * ENTRY_SIZE;
+        return Entries.entry(value(b, o, slot, deserializer), (S) geometry(b, slot));
+    }
+
+    private static Geometry geometry(ByteBuffer b, int slot) {
+        int type = b.getInt(slot);
+        float a = b.getFloat(slot + 4);
+        float c = b.getFloat(slot + 8);
+        float d = b.getFloat(slot + 12);
+        float e = b.getFloat(slot + 16);
+        if (type == POINT)
+            return Geometries.point(a, c);
+        else if (type == RECTANGLE)
+            return Geometries.rectangle(a, c, d, e);
+        else if (type == CIRCLE)
+            return Geometries.circle(a, c, d);
+        else if (type == LINE)
+            return Geometries.line(a, c, d, e);
+        else
+            throw new RuntimeException("unexpected");
+    }
+
+    private static <T> T value(ByteBuffer b, int o, int slot,
+            Func1<byte[], ? extends T> deserializer) {
+        int length = b.getInt(slot + 24);
+        if (length == -1)
+            return null;
+        int start = o + b.getInt(slot + 20);
+        byte[] bytes = new byte[length];
+        for (int j = 0; j < length; j++)
+            bytes[j] = b.get(start + j);
+        return deserializer.call(bytes);
+    }
+
+    /**
+     * Emits the entries below the node record at the given address that
+     * intersect the criterion rectangle. The bounding rectangle of the node
+     * itself is assumed to have been checked already. No node objects are
+     * created.
+     */
+    static <T, S extends Geometry> void search(Arena arena, long address, IntersectsRectangle c,
+            Subscriber<? super Entry<T, S>> subscriber, Func1<byte[], ? extends T> deserializer) {
+        ByteBuffer b = arena.buffer(address);
+        int o = Arena.offset(address);
+        int count = count(b, o);
+        if (b.getInt(o) == LEAF) {
+            for (int i = 0; i < count; i++) {
+                if (subscriber.isUnsubscribed())
+                    return;
+                int slot = o + HEADER_SIZE + i * ENTRY_SIZE;
+                int type = b.getInt(slot);
+                if (type == POINT || type == RECTANGLE) {
+                    if (c.intersects(b.getFloat(slot + 4), b.getFloat(slot + 8),
+                            b.getFloat(slot + 12), b.getFloat(slot + 16)))
+                        subscriber.onNext(OffHeapHelper.<T, S> entry(b, o, i, deserializer));
+                } else if (c.call(geometry(b, slot)))
+                    subscriber.onNext(OffHeapHelper.<T, S> entry(b, o, i, deserializer));
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                if (subscriber.isUnsubscribed())
+                    return;
+                int slot = o + HEADER_SIZE + i * CHILD_SIZE;
+                if (c.intersects(b.getFloat(slot), b.getFloat(slot + 4), b.getFloat(slot + 8),
+                        b.getFloat(slot + 12)))
+                    search(arena, b.getLong(slot + 16), c, subscriber, deserializer);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.github.davidmoten.rtree.paged;
+
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Factory;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+import rx.functions.Func1;
+
+/**
+ * Stores nodes as records in the pages of a {@link PageFile} so that a tree
+ * can be larger than the memory available to it. Node objects are small
+ * handles holding only the number of the first page of their record and every
+ * access goes through the page cache, so only recently touched pages are held
+ * in memory and a search reads just the pages of the nodes it visits. Values
+ * are stored in serialized form. Points, rectangles, circles and lines are
+ * supported.
+ *
+ * @param <T>
+ *            the object type
+ * @param <S>
+ *            the geometry type
+ */
+public final class FactoryPaged<T, S extends Geometry> implements Factory<T, S> {
+
+    private final PageFile pageFile;
+    private final Func1<? super T, byte[]> serializer;
+    private final Func1<byte[], ? extends T> deserializer;
+
+    public FactoryPaged(PageFile pageFile, Func1<? super T, byte[]> serializer,
+            Func1<byte[], ? extends T> deserializer) {
+        Preconditions.checkNotNull(pageFile);
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(deserializer);
+        this.pageFile = pageFile;
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+    }
+
+    @Override
+    public Leaf<T, S> createLeaf(List<Entry<T, S>> entries, Context<T, S> context) {
+        return new LeafPaged<T, S>(this, context,
+                PagedHelper.writeLeaf(pageFile, entries, serializer));
+    }
+
+    @Override
+    public NonLeaf<T, S> createNonLeaf(List<? extends Node<T, S>> children, Context<T, S> context) {
+        return new NonLeafPaged<T, S>(this, context,
+                PagedHelper.writeNonLeaf(pageFile, children));
+    }
+
+    @Override
+    public Entry<T, S> createEntry(T value, S geometry) {
+        return Entries.entry(value, geometry);
+    }
+
+    public PageFile pageFile() {
+        return pageFile;
+    }
+
+    public Func1<? super T, byte[]> serializer() {
+        return serializer;
+    }
+
+    public Func1<byte[], ? extends T> deserializer() {
+        return deserializer;
+    }
+
+}
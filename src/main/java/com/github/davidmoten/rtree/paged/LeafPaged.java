@@ -0,0 +1,97 @@
+package com.github.davidmoten.rtree.paged;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.IntersectsRectangle;
+import com.github.davidmoten.rtree.internal.LeafHelper;
+import com.github.davidmoten.rtree.internal.NodeAndEntries;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+final class LeafPaged<T, S extends Geometry> implements Leaf<T, S>, NodePaged {
+
+    private final FactoryPaged<T, S> factory;
+    private final Context<T, S> context;
+    private final long page;
+
+    LeafPaged(FactoryPaged<T, S> factory, Context<T, S> context, long page) {
+        this.factory = factory;
+        this.context = context;
+        this.page = page;
+    }
+
+    @Override
+    public PageFile pageFile() {
+        return factory.pageFile();
+    }
+
+    @Override
+    public long page() {
+        return page;
+    }
+
+    private ByteBuffer record() {
+        // read through the cache on every access so that the node does not
+        // keep its page in memory
+        return factory.pageFile().read(page);
+    }
+
+    @Override
+    public Geometry geometry() {
+        return PagedHelper.mbr(record());
+    }
+
+    @Override
+    public List<Entry<T, S>> entries() {
+        int count = count();
+        List<Entry<T, S>> list = new ArrayList<Entry<T, S>>(count);
+        for (int i = 0; i < count; i++)
+            list.add(entry(i));
+        return list;
+    }
+
+    @Override
+    public Entry<T, S> entry(int i) {
+        return PagedHelper.entry(record(), i, factory.deserializer());
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> condition,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        if (condition instanceof IntersectsRectangle) {
+            if (condition.call(geometry()))
+                PagedHelper.search(factory.pageFile(), page, (IntersectsRectangle) condition,
+                        subscriber, factory.deserializer());
+        } else
+            LeafHelper.search(condition, subscriber, this);
+    }
+
+    @Override
+    public int count() {
+        return PagedHelper.count(record());
+    }
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        return LeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return LeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, S> context() {
+        return context;
+    }
+
+}
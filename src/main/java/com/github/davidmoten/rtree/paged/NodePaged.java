@@ -0,0 +1,12 @@
+package com.github.davidmoten.rtree.paged;
+
+/**
+ * A node whose record is stored in a {@link PageFile}.
+ */
+interface NodePaged {
+
+    PageFile pageFile();
+
+    long page();
+
+}
@@ -0,0 +1,98 @@
+package com.github.davidmoten.rtree.paged;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.IntersectsRectangle;
+import com.github.davidmoten.rtree.internal.NodeAndEntries;
+import com.github.davidmoten.rtree.internal.NonLeafHelper;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+final class NonLeafPaged<T, S extends Geometry> implements NonLeaf<T, S>, NodePaged {
+
+    private final FactoryPaged<T, S> factory;
+    private final Context<T, S> context;
+    private final long page;
+
+    NonLeafPaged(FactoryPaged<T, S> factory, Context<T, S> context, long page) {
+        this.factory = factory;
+        this.context = context;
+        this.page = page;
+    }
+
+    @Override
+    public PageFile pageFile() {
+        return factory.pageFile();
+    }
+
+    @Override
+    public long page() {
+        return page;
+    }
+
+    private ByteBuffer record() {
+        // read through the cache on every access so that the node does not
+        // keep its page in memory
+        return factory.pageFile().read(page);
+    }
+
+    @Override
+    public Geometry geometry() {
+        return PagedHelper.mbr(record());
+    }
+
+    @Override
+    public Node<T, S> child(int i) {
+        return PagedHelper.node(factory, context, PagedHelper.childPage(record(), i));
+    }
+
+    @Override
+    public List<Node<T, S>> children() {
+        int count = count();
+        List<Node<T, S>> list = new ArrayList<Node<T, S>>(count);
+        for (int i = 0; i < count; i++)
+            list.add(child(i));
+        return list;
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> criterion,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        if (criterion instanceof IntersectsRectangle) {
+            // walk the records directly without creating node objects
+            if (criterion.call(geometry()))
+                PagedHelper.search(factory.pageFile(), page, (IntersectsRectangle) criterion,
+                        subscriber, factory.deserializer());
+        } else
+            NonLeafHelper.search(criterion, subscriber, this);
+    }
+
+    @Override
+    public int count() {
+        return PagedHelper.count(record());
+    }
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        return NonLeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return NonLeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, S> context() {
+        return context;
+    }
+
+}
@@ -0,0 +1,254 @@
+package com.github.davidmoten.rtree.paged;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * A file of fixed size pages holding node records, read through a bounded
+ * least recently used cache of pages. A record occupies a run of whole pages
+ * starting with the length of the record, so a node is read with one page
+ * fault unless it is larger than a page. Only the pages of records that have
+ * been read (or written) recently are held in memory, the rest stay on disk
+ * until a search touches them.
+ *
+ * <p>
+ * Records are appended and never rewritten: nodes replaced by adding to or
+ * deleting from a tree stay in the file until the file is discarded. The file
+ * is truncated when a {@code PageFile} is created for it.
+ *
+ * <p>
+ * All methods are thread-safe. Page faults are serialized by the lock on the
+ * cache.
+ */
+public final class PageFile implements Closeable {
+
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int DEFAULT_CACHE_PAGES = 1024;
+
+    private static final int LENGTH_SIZE = 4;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int pageSize;
+    private final int cachePages;
+
+    // guarded by this, iterates from least to most recently used
+    private final LinkedHashMap<Long, Record> cache = new LinkedHashMap<Long, Record>(16, 0.75f,
+            true);
+    private long pages;
+    private int residentPages;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public PageFile(File file) {
+        this(file, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file
+     *            the file to store pages in, truncated if it exists
+     * @param pageSize
+     *            the size of a page in bytes
+     * @param cachePages
+     *            the maximum number of pages to keep in memory (a record
+     *            larger than this is still cached on its own)
+     */
+    public PageFile(File file, int pageSize, int cachePages) {
+        Preconditions.checkNotNull(file);
+        Preconditions.checkArgument(pageSize > LENGTH_SIZE, "pageSize must be more than 4");
+        Preconditions.checkArgument(cachePages > 0, "cachePages must be positive");
+        this.pageSize = pageSize;
+        this.cachePages = cachePages;
+        try {
+            this.file = new RandomAccessFile(file, "rw");
+            this.file.setLength(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.channel = this.file.getChannel();
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public int cachePages() {
+        return cachePages;
+    }
+
+    /**
+     * Returns the number of pages written to the file.
+     *
+     * @return number of pages in the file
+     */
+    public synchronized long pages() {
+        return pages;
+    }
+
+    /**
+     * Returns the number of pages currently held in the cache.
+     *
+     * @return number of cached pages
+     */
+    public synchronized int residentPages() {
+        return residentPages;
+    }
+
+    /**
+     * Returns the number of record reads served from the cache.
+     *
+     * @return cache hits
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of record reads that had to read pages from the file.
+     *
+     * @return cache misses
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of records removed from the cache to keep it within
+     * {@link #cachePages()}.
+     *
+     * @return cache evictions
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Sets the hit, miss and eviction counters to zero.
+     */
+    public synchronized void resetCounters() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Removes all pages from the cache (the counters are not changed).
+     */
+    public synchronized void clearCache() {
+        cache.clear();
+        residentPages = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            clearCache();
+        }
+        file.close();
+    }
+
+    /**
+     * Appends a record to the file starting at a new page and returns the
+     * number of that page. The record is also put in the cache because a new
+     * node is usually read again soon after it is written.
+     */
+    synchronized long write(byte[] record) {
+        int n = pagesFor(record.length);
+        ByteBuffer bb = ByteBuffer.allocate(n * pageSize);
+        bb.putInt(record.length);
+        bb.put(record);
+        bb.clear();
+        long page = pages;
+        try {
+            long position = page * pageSize;
+            while (bb.hasRemaining())
+                position += channel.write(bb, position);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        pages += n;
+        put(page, new Record(ByteBuffer.wrap(record), n));
+        return page;
+    }
+
+    /**
+     * Returns the record starting at the given page, reading it from the file
+     * if it is not in the cache. The returned buffer must only be read with
+     * absolute methods because it is shared.
+     */
+    synchronized ByteBuffer read(long page) {
+        Record record = cache.get(page);
+        if (record != null) {
+            hits++;
+            return record.buffer;
+        }
+        misses++;
+        try {
+            ByteBuffer first = ByteBuffer.allocate(pageSize);
+            readFully(first, page * pageSize);
+            int length = first.getInt(0);
+            byte[] bytes = new byte[length];
+            int n = pagesFor(length);
+            int inFirst = Math.min(length, pageSize - LENGTH_SIZE);
+            System.arraycopy(first.array(), LENGTH_SIZE, bytes, 0, inFirst);
+            if (n > 1)
+                readFully(ByteBuffer.wrap(bytes, inFirst, length - inFirst),
+                        (page + 1) * pageSize);
+            record = new Record(ByteBuffer.wrap(bytes), n);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        put(page, record);
+        return record.buffer;
+    }
+
+    private void readFully(ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            int count = channel.read(bb, position);
+            if (count < 0)
+                throw new IOException("unexpected end of page file");
+            position += count;
+        }
+    }
+
+    private void put(long page, Record record) {
+        cache.put(page, record);
+        residentPages += record.pages;
+        // evict least recently used records but always keep the newest
+        Iterator<Map.Entry<Long, Record>> it = cache.entrySet().iterator();
+        while (residentPages > cachePages && cache.size() > 1) {
+            Record eldest = it.next().getValue();
+            it.remove();
+            residentPages -= eldest.pages;
+            evictions++;
+        }
+    }
+
+    private int pagesFor(int recordLength) {
+        long bytes = (long) recordLength + LENGTH_SIZE;
+        return (int) ((bytes + pageSize - 1) / pageSize);
+    }
+
+    private static final class Record {
+        final ByteBuffer buffer;
+        final int pages;
+
+        Record(ByteBuffer buffer, int pages) {
+            this.buffer = buffer;
+            this.pages = pages;
+        }
+    }
+
+}
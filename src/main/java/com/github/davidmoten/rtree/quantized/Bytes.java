@@ -0,0 +1,95 @@
+package com.github.davidmoten.rtree.quantized;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte array written in little endian order.
+ */
+final class Bytes {
+
+    private byte[] bytes;
+    private int position;
+
+    Bytes(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int position() {
+        return position;
+    }
+
+    void reset() {
+        position = 0;
+    }
+
+    void skip(int n) {
+        ensure(n);
+        position += n;
+    }
+
+    void putByte(int b) {
+        ensure(1);
+        bytes[position++] = (byte) b;
+    }
+
+    void putShort(int s) {
+        ensure(2);
+        setShort(position, s);
+        position += 2;
+    }
+
+    void putInt(int i) {
+        ensure(4);
+        setInt(position, i);
+        position += 4;
+    }
+
+    void putFloat(float f) {
+        putInt(Float.floatToRawIntBits(f));
+    }
+
+    void putBytes(byte[] b, int length) {
+        ensure(length);
+        System.arraycopy(b, 0, bytes, position, length);
+        position += length;
+    }
+
+    void putVarint(int v) {
+        while ((v & ~0x7F) != 0) {
+            putByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        putByte(v);
+    }
+
+    void setByte(int index, int b) {
+        bytes[index] = (byte) b;
+    }
+
+    void setShort(int index, int s) {
+        bytes[index] = (byte) s;
+        bytes[index + 1] = (byte) (s >>> 8);
+    }
+
+    void setInt(int index, int i) {
+        bytes[index] = (byte) i;
+        bytes[index + 1] = (byte) (i >>> 8);
+        bytes[index + 2] = (byte) (i >>> 16);
+        bytes[index + 3] = (byte) (i >>> 24);
+    }
+
+    private void ensure(int n) {
+        long required = (long) position + n;
+        if (required > bytes.length) {
+            if (required > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("serialized tree would exceed 2GB");
+            bytes = Arrays.copyOf(bytes,
+                    (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * bytes.length)));
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.github.davidmoten.rtree.quantized;
+
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.IntersectsRectangle;
+import com.github.davidmoten.rtree.internal.LeafHelper;
+import com.github.davidmoten.rtree.internal.NodeAndEntries;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Leaf read in place from a quantized buffer. Entry geometries are stored
+ * exactly, the bounds of the leaf are those dequantized from the parent.
+ */
+final class LeafQuantized<T, S extends Geometry> implements Leaf<T, S> {
+
+    private final QuantizedBuffer<T> buffer;
+    private final Context<T, S> context;
+    private final int offset;
+    private final float x1;
+    private final float y1;
+    private final float x2;
+    private final float y2;
+
+    LeafQuantized(QuantizedBuffer<T> buffer, Context<T, S> context, int offset, float x1,
+            float y1, float x2, float y2) {
+        this.buffer = buffer;
+        this.context = context;
+        this.offset = offset;
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+    }
+
+    @Override
+    public Geometry geometry() {
+        return Geometries.rectangle(x1, y1, x2, y2);
+    }
+
+    @Override
+    public List<Entry<T, S>> entries() {
+        return buffer.entries(offset);
+    }
+
+    @Override
+    public Entry<T, S> entry(int i) {
+        return buffer.entry(offset, i);
+    }
+
+    @Override
+    public void searchWithoutBackpressure(Func1<? super Geometry, Boolean> criterion,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        if (criterion instanceof IntersectsRectangle) {
+            IntersectsRectangle c = (IntersectsRectangle) criterion;
+            if (c.intersects(x1, y1, x2, y2))
+                buffer.search(offset, x1, y1, x2, y2, c, subscriber);
+        } else
+            LeafHelper.search(criterion, subscriber, this);
+    }
+
+    @Override
+    public int count() {
+        return buffer.count(offset);
+    }
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        return LeafHelper.add(entry, this);
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return LeafHelper.delete(entry, all, this);
+    }
+
+    @Override
+    public Context<T, S> context() {
+        return context;
+    }
+
+}
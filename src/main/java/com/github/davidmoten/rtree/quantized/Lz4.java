@@ -0,0 +1,164 @@
+package com.github.davidmoten.rtree.quantized;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compression in the LZ4 block format: a sequence of literal runs and back
+ * references of at least four bytes found with a single hash table of recent
+ * positions. It favours speed of decompression over compression ratio. See
+ * <a href="https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md">LZ4
+ * Block Format Description</a>.
+ */
+final class Lz4 {
+
+    private static final int MIN_MATCH = 4;
+    // the last match must start at least this many bytes before the end
+    private static final int MF_LIMIT = 12;
+    // the last bytes are always literals
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+
+    private Lz4() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the compressed form of the first {@code length} bytes of
+     * {@code src}. The result may be longer than the input if it does not
+     * compress.
+     *
+     * @param src
+     *            bytes to compress
+     * @param length
+     *            number of bytes to compress
+     * @return compressed bytes
+     */
+    static byte[] compress(byte[] src, int length) {
+        byte[] out = new byte[length + length / 255 + 16];
+        int[] table = new int[1 << HASH_LOG];
+        // positions are stored plus one so zero means empty
+        int anchor = 0;
+        int i = 0;
+        int o = 0;
+        int limit = length - MF_LIMIT;
+        while (i <= limit) {
+            int h = hash(readInt(src, i));
+            int ref = table[h] - 1;
+            table[h] = i + 1;
+            if (ref >= 0 && i - ref <= MAX_OFFSET && readInt(src, ref) == readInt(src, i)) {
+                int matchLength = MIN_MATCH;
+                int maxMatch = length - LAST_LITERALS - i;
+                while (matchLength < maxMatch && src[ref + matchLength] == src[i + matchLength])
+                    matchLength++;
+                o = writeSequence(src, anchor, i - anchor, i - ref, matchLength, out, o);
+                i += matchLength;
+                anchor = i;
+            } else
+                i++;
+        }
+        o = writeSequence(src, anchor, length - anchor, 0, 0, out, o);
+        byte[] result = new byte[o];
+        System.arraycopy(out, 0, result, 0, o);
+        return result;
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literalLength,
+            int offset, int matchLength, byte[] out, int o) {
+        int tokenPosition = o++;
+        int token = Math.min(literalLength, 15) << 4;
+        if (literalLength >= 15)
+            o = writeLength(literalLength - 15, out, o);
+        System.arraycopy(src, literalStart, out, o, literalLength);
+        o += literalLength;
+        if (matchLength > 0) {
+            out[o++] = (byte) offset;
+            out[o++] = (byte) (offset >>> 8);
+            int m = matchLength - MIN_MATCH;
+            token |= Math.min(m, 15);
+            if (m >= 15)
+                o = writeLength(m - 15, out, o);
+        }
+        out[tokenPosition] = (byte) token;
+        return o;
+    }
+
+    private static int writeLength(int length, byte[] out, int o) {
+        while (length >= 255) {
+            out[o++] = (byte) 255;
+            length -= 255;
+        }
+        out[o++] = (byte) length;
+        return o;
+    }
+
+    /**
+     * Decompresses {@code srcLength} bytes of {@code src} starting at absolute
+     * position {@code srcOffset} into {@code dest} which must be exactly the
+     * size of the decompressed data. The position of {@code src} is not
+     * changed.
+     *
+     * @param src
+     *            compressed bytes
+     * @param srcOffset
+     *            position of the first compressed byte
+     * @param srcLength
+     *            number of compressed bytes
+     * @param dest
+     *            destination of the decompressed bytes
+     */
+    static void decompress(ByteBuffer src, int srcOffset, int srcLength, byte[] dest) {
+        int s = srcOffset;
+        int end = srcOffset + srcLength;
+        int d = 0;
+        while (true) {
+            int token = src.get(s++) & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int b;
+                do {
+                    b = src.get(s++) & 0xFF;
+                    literalLength += b;
+                } while (b == 255);
+            }
+            checkCorrupt(d + literalLength <= dest.length && s + literalLength <= end);
+            for (int k = 0; k < literalLength; k++)
+                dest[d++] = src.get(s++);
+            if (s == end)
+                break;
+            int offset = (src.get(s) & 0xFF) | ((src.get(s + 1) & 0xFF) << 8);
+            s += 2;
+            int matchLength = token & 15;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    b = src.get(s++) & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            int m = d - offset;
+            checkCorrupt(offset > 0 && m >= 0 && d + matchLength <= dest.length);
+            // byte by byte because the match may overlap the bytes being
+            // written
+            for (int k = 0; k < matchLength; k++)
+                dest[d++] = dest[m++];
+        }
+        checkCorrupt(d == dest.length);
+    }
+
+    private static void checkCorrupt(boolean ok) {
+        if (!ok)
+            throw new IllegalStateException("corrupt compressed block");
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8) | ((b[i + 2] & 0xFF) << 16)
+                | ((b[i + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int x) {
+        return (x * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+}
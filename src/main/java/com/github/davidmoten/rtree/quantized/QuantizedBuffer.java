@@ -0,0 +1,366 @@
+package com.github.davidmoten.rtree.quantized;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.internal.IntersectsRectangle;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Read access to a tree serialized by {@link SerializerQuantized}. The layout
+ * constants are shared with the writer.
+ *
+ * @param <T>
+ *            value type
+ */
+final class QuantizedBuffer<T> {
+
+    static final int MAGIC = 0x51545452;
+    static final byte VERSION = 1;
+    static final byte FLAG_COMPRESSED = 1;
+
+    // offsets within the header
+    static final int BITS = 5;
+    static final int FLAGS = 6;
+    static final int MIN_CHILDREN = 8;
+    static final int MAX_CHILDREN = 12;
+    static final int SIZE = 16;
+    static final int ROOT = 20;
+    static final int VALUES = 24;
+    static final int MBR = 28;
+    static final int NAMES = 44;
+
+    static final byte NON_LEAF = 0;
+    static final byte LEAF = 1;
+
+    // offsets within a node record
+    static final int COUNT = 1;
+    static final int CHILDREN = 5;
+    static final int FIRST_VALUE = 5;
+    static final int ENTRIES = 9;
+
+    static final byte POINT = 0;
+    static final byte RECTANGLE = 1;
+    static final byte CIRCLE = 2;
+    static final byte LINE = 3;
+
+    // size of a values block table slot: first value index, offset, stored
+    // length, raw length
+    static final int BLOCK_SLOT = 16;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer bb;
+    private final Func1<byte[], ? extends T> deserializer;
+    private final int max;
+    private final int step;
+    private final int valueCount;
+    private final int blockCount;
+    private final int blockTable;
+
+    // the last decompressed values block
+    private volatile Block block;
+
+    private QuantizedBuffer(ByteBuffer bb, Func1<byte[], ? extends T> deserializer) {
+        this.bb = bb;
+        this.deserializer = deserializer;
+        int bits = bb.get(BITS);
+        this.max = (1 << bits) - 1;
+        this.step = bits / 8;
+        int values = bb.getInt(VALUES);
+        this.valueCount = bb.getInt(values);
+        this.blockCount = bb.getInt(values + 4);
+        this.blockTable = values + 8;
+    }
+
+    static <T> QuantizedBuffer<T> create(ByteBuffer bb, Func1<byte[], ? extends T> deserializer)
+            throws IOException {
+        bb = bb.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (bb.limit() < NAMES || bb.getInt(0) != MAGIC)
+            throw new IOException("not a quantized rtree");
+        if (bb.get(4) != VERSION)
+            throw new IOException("unsupported format version " + bb.get(4));
+        return new QuantizedBuffer<T>(bb, deserializer);
+    }
+
+    ByteBuffer buffer() {
+        return bb;
+    }
+
+    /**
+     * Returns the class names of the selector and splitter.
+     */
+    String[] names() {
+        String[] names = new String[2];
+        int position = NAMES;
+        for (int i = 0; i < names.length; i++) {
+            int length = bb.getShort(position) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            for (int j = 0; j < length; j++)
+                bytes[j] = bb.get(position + 2 + j);
+            names[i] = new String(bytes, UTF_8);
+            position += 2 + length;
+        }
+        return names;
+    }
+
+    boolean isLeaf(int node) {
+        return bb.get(node) == LEAF;
+    }
+
+    int count(int node) {
+        return bb.getInt(node + COUNT);
+    }
+
+    int slot(int node, int i) {
+        return node + CHILDREN + i * (4 * step + 4);
+    }
+
+    /**
+     * Returns the {@code k}th quantized bound (x1, y1, x2, y2) of the child
+     * at {@code slot} dequantized relative to the parent bounds.
+     */
+    float bound(int slot, int k, float p1, float p2) {
+        int position = slot + k * step;
+        int q = step == 1 ? bb.get(position) & 0xFF : bb.getShort(position) & 0xFFFF;
+        return Quantizer.value(q, p1, p2, max);
+    }
+
+    int childOffset(int slot) {
+        return bb.getInt(slot + 4 * step);
+    }
+
+    int firstValue(int leaf) {
+        return bb.getInt(leaf + FIRST_VALUE);
+    }
+
+    static int geometrySize(byte type) {
+        if (type == POINT)
+            return 8;
+        else if (type == CIRCLE)
+            return 12;
+        else
+            return 16;
+    }
+
+    /**
+     * Returns the position of the entry record (geometry type then floats)
+     * for entry {@code i} of a leaf.
+     */
+    int entryPosition(int leaf, int i) {
+        int position = leaf + ENTRIES;
+        for (int j = 0; j < i; j++)
+            position += 1 + geometrySize(bb.get(position));
+        return position;
+    }
+
+    @SuppressWarnings("unchecked")
+    <S extends Geometry> S geometry(int entry) {
+        byte type = bb.get(entry);
+        int p = entry + 1;
+        final Geometry g;
+        if (type == POINT)
+            g = Geometries.point(bb.getFloat(p), bb.getFloat(p + 4));
+        else if (type == RECTANGLE)
+            g = Geometries.rectangle(bb.getFloat(p), bb.getFloat(p + 4), bb.getFloat(p + 8),
+                    bb.getFloat(p + 12));
+        else if (type == CIRCLE)
+            g = Geometries.circle(bb.getFloat(p), bb.getFloat(p + 4), bb.getFloat(p + 8));
+        else if (type == LINE)
+            g = Geometries.line(bb.getFloat(p), bb.getFloat(p + 4), bb.getFloat(p + 8),
+                    bb.getFloat(p + 12));
+        else
+            throw new IllegalStateException("unexpected geometry type " + type);
+        return (S) g;
+    }
+
+    /**
+     * Returns true if the geometry of the entry record intersects the
+     * criterion rectangle. Points and rectangles are tested on the stored
+     * floats, circles and lines are created for the exact test only if their
+     * bounding rectangles intersect.
+     */
+    boolean intersects(int entry, IntersectsRectangle c) {
+        byte type = bb.get(entry);
+        int p = entry + 1;
+        if (type == POINT) {
+            float x = bb.getFloat(p);
+            float y = bb.getFloat(p + 4);
+            return c.intersects(x, y, x, y);
+        } else if (type == RECTANGLE) {
+            return c.intersects(bb.getFloat(p), bb.getFloat(p + 4), bb.getFloat(p + 8),
+                    bb.getFloat(p + 12));
+        } else if (type == CIRCLE) {
+            float x = bb.getFloat(p);
+            float y = bb.getFloat(p + 4);
+            float r = bb.getFloat(p + 8);
+            return c.intersects(x - r, y - r, x + r, y + r) && c.call(geometry(entry));
+        } else {
+            float x1 = bb.getFloat(p);
+            float y1 = bb.getFloat(p + 4);
+            float x2 = bb.getFloat(p + 8);
+            float y2 = bb.getFloat(p + 12);
+            return c.intersects(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2),
+                    Math.max(y1, y2)) && c.call(geometry(entry));
+        }
+    }
+
+    <S extends Geometry> Node<T, S> node(Context<T, S> context, int node, float x1, float y1,
+            float x2, float y2) {
+        if (isLeaf(node))
+            return new LeafQuantized<T, S>(this, context, node, x1, y1, x2, y2);
+        else
+            return new NonLeafQuantized<T, S>(this, context, node, x1, y1, x2, y2);
+    }
+
+    <S extends Geometry> Node<T, S> child(Context<T, S> context, int node, int i, float x1,
+            float y1, float x2, float y2) {
+        int slot = slot(node, i);
+        return node(context, childOffset(slot), bound(slot, 0, x1, x2), bound(slot, 1, y1, y2),
+                bound(slot, 2, x1, x2), bound(slot, 3, y1, y2));
+    }
+
+    <S extends Geometry> Entry<T, S> entry(int leaf, int i) {
+        return Entries.entry(value(firstValue(leaf) + i), this.<S> geometry(entryPosition(leaf, i)));
+    }
+
+    <S extends Geometry> List<Entry<T, S>> entries(int leaf) {
+        int count = count(leaf);
+        int first = firstValue(leaf);
+        List<Entry<T, S>> list = new ArrayList<Entry<T, S>>(count);
+        int p = leaf + ENTRIES;
+        for (int i = 0; i < count; i++) {
+            list.add(Entries.entry(value(first + i), this.<S> geometry(p)));
+            p += 1 + geometrySize(bb.get(p));
+        }
+        return list;
+    }
+
+    /**
+     * Emits the entries below {@code node} that intersect the criterion
+     * rectangle. The node's bounds have already been tested. Child bounds are
+     * dequantized as they are visited so no objects are created until an
+     * entry is emitted.
+     */
+    <S extends Geometry> void search(int node, float x1, float y1, float x2, float y2,
+            IntersectsRectangle c, Subscriber<? super Entry<T, S>> subscriber) {
+        int count = count(node);
+        if (isLeaf(node)) {
+            int first = firstValue(node);
+            int p = node + ENTRIES;
+            for (int i = 0; i < count; i++) {
+                if (subscriber.isUnsubscribed())
+                    return;
+                if (intersects(p, c))
+                    subscriber.onNext(Entries.entry(value(first + i), this.<S> geometry(p)));
+                p += 1 + geometrySize(bb.get(p));
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                if (subscriber.isUnsubscribed())
+                    return;
+                int slot = slot(node, i);
+                float cx1 = bound(slot, 0, x1, x2);
+                float cy1 = bound(slot, 1, y1, y2);
+                float cx2 = bound(slot, 2, x1, x2);
+                float cy2 = bound(slot, 3, y1, y2);
+                if (c.intersects(cx1, cy1, cx2, cy2))
+                    search(childOffset(slot), cx1, cy1, cx2, cy2, c, subscriber);
+            }
+        }
+    }
+
+    /**
+     * Returns the deserialized value with the given index (values are
+     * numbered in the order their entries were written).
+     */
+    T value(int index) {
+        Block b = block(index);
+        int i = index - b.firstIndex;
+        int length = b.lengths[i];
+        if (length == 0)
+            return null;
+        else {
+            byte[] bytes = new byte[length - 1];
+            System.arraycopy(b.raw, b.starts[i], bytes, 0, bytes.length);
+            return deserializer.call(bytes);
+        }
+    }
+
+    private Block block(int index) {
+        Block b = block;
+        if (b != null && index >= b.firstIndex && index - b.firstIndex < b.lengths.length)
+            return b;
+        // binary search for the last block starting at or before index
+        int lo = 0;
+        int hi = blockCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (bb.getInt(blockTable + mid * BLOCK_SLOT) <= index)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        int slot = blockTable + lo * BLOCK_SLOT;
+        int firstIndex = bb.getInt(slot);
+        int offset = bb.getInt(slot + 4);
+        int storedLength = bb.getInt(slot + 8);
+        byte[] raw = new byte[bb.getInt(slot + 12)];
+        if (storedLength < raw.length)
+            Lz4.decompress(bb, offset, storedLength, raw);
+        else
+            for (int i = 0; i < raw.length; i++)
+                raw[i] = bb.get(offset + i);
+        int next = lo + 1 < blockCount ? bb.getInt(slot + BLOCK_SLOT) : valueCount;
+        b = new Block(firstIndex, raw, next - firstIndex);
+        block = b;
+        return b;
+    }
+
+    /**
+     * A decompressed values block. Each value is its length plus one (zero for
+     * null) as a variable length integer followed by its bytes.
+     */
+    private static final class Block {
+        final int firstIndex;
+        final byte[] raw;
+        // position of the bytes of each value in raw
+        final int[] starts;
+        // length plus one of each value, zero if null
+        final int[] lengths;
+
+        Block(int firstIndex, byte[] raw, int count) {
+            this.firstIndex = firstIndex;
+            this.raw = raw;
+            this.starts = new int[count];
+            this.lengths = new int[count];
+            int p = 0;
+            for (int i = 0; i < count; i++) {
+                int length = 0;
+                int shift = 0;
+                int x;
+                do {
+                    x = raw[p++];
+                    length |= (x & 0x7F) << shift;
+                    shift += 7;
+                } while ((x & 0x80) != 0);
+                starts[i] = p;
+                lengths[i] = length;
+                p += Math.max(0, length - 1);
+            }
+        }
+    }
+
+}
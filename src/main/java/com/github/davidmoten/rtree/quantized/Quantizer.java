@@ -0,0 +1,75 @@
+package com.github.davidmoten.rtree.quantized;
+
+/**
+ * Conservative quantization of a coordinate to an integer step between the
+ * bounds of an enclosing interval. A lower bound is rounded down and an upper
+ * bound is rounded up so that the dequantized interval always contains the
+ * original one. The writer and the reader must dequantize with
+ * {@link #value(int, float, float, int)} so that they agree on the bounds
+ * exactly.
+ */
+final class Quantizer {
+
+    private Quantizer() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the largest step whose value is not more than {@code v}.
+     *
+     * @param v
+     *            lower bound to quantize, between p1 and p2
+     * @param p1
+     *            lower bound of the enclosing interval
+     * @param p2
+     *            upper bound of the enclosing interval
+     * @param max
+     *            number of steps
+     * @return step
+     */
+    static int low(float v, float p1, float p2, int max) {
+        if (p2 <= p1)
+            return 0;
+        int q = clamp((int) Math.floor(((double) v - p1) / ((double) p2 - p1) * max), max);
+        // correct for rounding in the float conversion
+        while (q > 0 && value(q, p1, p2, max) > v)
+            q--;
+        return q;
+    }
+
+    /**
+     * Returns the smallest step whose value is not less than {@code v}.
+     *
+     * @param v
+     *            upper bound to quantize, between p1 and p2
+     * @param p1
+     *            lower bound of the enclosing interval
+     * @param p2
+     *            upper bound of the enclosing interval
+     * @param max
+     *            number of steps
+     * @return step
+     */
+    static int high(float v, float p1, float p2, int max) {
+        if (p2 <= p1)
+            return max;
+        int q = clamp((int) Math.ceil(((double) v - p1) / ((double) p2 - p1) * max), max);
+        while (q < max && value(q, p1, p2, max) < v)
+            q++;
+        return q;
+    }
+
+    static float value(int q, float p1, float p2, int max) {
+        if (q == 0)
+            return p1;
+        else if (q == max)
+            return p2;
+        else
+            return (float) (p1 + ((double) p2 - p1) * q / max);
+    }
+
+    private static int clamp(int q, int max) {
+        return Math.max(0, Math.min(max, q));
+    }
+
+}
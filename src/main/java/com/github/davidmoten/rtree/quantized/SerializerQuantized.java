@@ -0,0 +1,425 @@
+package com.github.davidmoten.rtree.quantized;
+
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.BLOCK_SLOT;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.CIRCLE;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.FLAG_COMPRESSED;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.LEAF;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.LINE;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.MAGIC;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.MAX_CHILDREN;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.MBR;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.MIN_CHILDREN;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.NON_LEAF;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.POINT;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.RECTANGLE;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.ROOT;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.SIZE;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.UTF_8;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.VALUES;
+import static com.github.davidmoten.rtree.quantized.QuantizedBuffer.VERSION;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Optional;
+import com.github.davidmoten.guavamini.Preconditions;
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.FileSerializer;
+import com.github.davidmoten.rtree.InternalStructure;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.Selector;
+import com.github.davidmoten.rtree.Serializer;
+import com.github.davidmoten.rtree.SerializerHelper;
+import com.github.davidmoten.rtree.Splitter;
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Line;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.internal.FactoryDefault;
+
+import rx.functions.Func1;
+
+/**
+ * Serializer that stores the bounding rectangle of each child of a non-leaf
+ * as 8 or 16 bit offsets within the bounding rectangle of the non-leaf (as in
+ * the QR-tree). Lower bounds are rounded down and upper bounds up so the
+ * stored rectangles always contain the originals and searches give the same
+ * results. Entry geometries are stored exactly. Values are stored apart from
+ * the nodes in blocks that may be compressed.
+ *
+ * <p>
+ * All numbers are little endian. The layout is a header:
+ *
+ * <pre>
+ * int magic, byte version, byte bits, byte flags, byte 0, int minChildren,
+ * int maxChildren, int size, int rootOffset, int valuesOffset,
+ * float x1, float y1, float x2, float y2 (bounds of the root),
+ * short length, selector class name, short length, splitter class name
+ * </pre>
+ *
+ * then the nodes in pre-order. A non-leaf is:
+ *
+ * <pre>
+ * byte 0, int count, (x1, y1, x2, y2 quantized, int childOffset) per child
+ * </pre>
+ *
+ * and a leaf is:
+ *
+ * <pre>
+ * byte 1, int count, int firstValueIndex, (byte geometryType, floats) per entry
+ * </pre>
+ *
+ * where a point has 2 floats, a circle 3 and a rectangle or line 4. The
+ * values section is:
+ *
+ * <pre>
+ * int valueCount, int blockCount,
+ * (int firstValueIndex, int offset, int storedLength, int rawLength) per block,
+ * blocks
+ * </pre>
+ *
+ * A block holds each value as its length plus one (zero for null) as a
+ * variable length integer followed by its bytes. A block is compressed in
+ * the LZ4 block format if its stored length is less than its raw length.
+ *
+ * <p>
+ * A tree read with {@link InternalStructure#SINGLE_ARRAY} is searched in place
+ * in the serialized form (which is memory mapped when read from a file).
+ * Otherwise it is read into the default in-memory structure. Because the
+ * bounds of nodes read in place are the dequantized bounds they may be
+ * slightly larger than the bounds of the original nodes.
+ *
+ * <p>
+ * The selector and splitter are recreated by class name so must have a
+ * public no-argument constructor.
+ */
+public final class SerializerQuantized<T, S extends Geometry> implements FileSerializer<T, S> {
+
+    /**
+     * Values are added to a block until it reaches this size before
+     * compression.
+     */
+    static final int BLOCK_SIZE = 8192;
+
+    private final Func1<? super T, byte[]> serializer;
+    private final Func1<byte[], ? extends T> deserializer;
+    private final int bits;
+    private final boolean compress;
+
+    private SerializerQuantized(Func1<? super T, byte[]> serializer,
+            Func1<byte[], ? extends T> deserializer, int bits, boolean compress) {
+        Preconditions.checkArgument(bits == 8 || bits == 16, "bits must be 8 or 16");
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.bits = bits;
+        this.compress = compress;
+    }
+
+    /**
+     * Returns a serializer.
+     *
+     * @param serializer
+     *            converts values to bytes
+     * @param deserializer
+     *            converts bytes to values
+     * @param bits
+     *            bits per quantized bound, 8 or 16
+     * @param compress
+     *            whether to compress the values
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return serializer
+     */
+    public static <T, S extends Geometry> Serializer<T, S> create(
+            Func1<? super T, byte[]> serializer, Func1<byte[], ? extends T> deserializer,
+            int bits, boolean compress) {
+        return new SerializerQuantized<T, S>(serializer, deserializer, bits, compress);
+    }
+
+    @Override
+    public void write(RTree<T, S> tree, OutputStream os) throws IOException {
+        Bytes out = new Writer(tree).write();
+        os.write(out.array(), 0, out.position());
+    }
+
+    @Override
+    public void write(RTree<T, S> tree, File file) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            write(tree, os);
+        } finally {
+            os.close();
+        }
+    }
+
+    @Override
+    public RTree<T, S> read(InputStream is, long sizeBytes, InternalStructure structure)
+            throws IOException {
+        return read(ByteBuffer.wrap(SerializerHelper.readFully(is, sizeBytes)), structure);
+    }
+
+    /**
+     * Memory maps the file. With {@link InternalStructure#SINGLE_ARRAY} the
+     * tree is searched directly in the mapped file.
+     */
+    @Override
+    public RTree<T, S> read(File file, InternalStructure structure) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = f.getChannel();
+            long size = channel.size();
+            Preconditions.checkArgument(size <= Integer.MAX_VALUE,
+                    "file too large to map as a single buffer: " + size);
+            // the mapping stays valid after the channel is closed
+            return read(channel.map(MapMode.READ_ONLY, 0, size), structure);
+        } finally {
+            f.close();
+        }
+    }
+
+    private RTree<T, S> read(ByteBuffer bb, InternalStructure structure) throws IOException {
+        QuantizedBuffer<T> buffer = QuantizedBuffer.create(bb, deserializer);
+        ByteBuffer b = buffer.buffer();
+        String[] names = buffer.names();
+        Context<T, S> context = new Context<T, S>(b.getInt(MIN_CHILDREN), b.getInt(MAX_CHILDREN),
+                SerializerHelper.newInstance(names[0], Selector.class),
+                SerializerHelper.newInstance(names[1], Splitter.class),
+                FactoryDefault.<T, S> instance());
+        int root = b.getInt(ROOT);
+        if (root == 0)
+            return SerializerHelper.create(Optional.<Node<T, S>> absent(), 0, context);
+        float x1 = b.getFloat(MBR);
+        float y1 = b.getFloat(MBR + 4);
+        float x2 = b.getFloat(MBR + 8);
+        float y2 = b.getFloat(MBR + 12);
+        final Node<T, S> node;
+        if (structure == InternalStructure.SINGLE_ARRAY)
+            node = buffer.node(context, root, x1, y1, x2, y2);
+        else
+            node = toNodeDefault(buffer, context, root, x1, y1, x2, y2);
+        return SerializerHelper.create(Optional.of(node), b.getInt(SIZE), context);
+    }
+
+    private static <T, S extends Geometry> Node<T, S> toNodeDefault(QuantizedBuffer<T> buffer,
+            Context<T, S> context, int node, float x1, float y1, float x2, float y2) {
+        if (buffer.isLeaf(node))
+            return context.factory().createLeaf(buffer.<S> entries(node), context);
+        int count = buffer.count(node);
+        List<Node<T, S>> children = new ArrayList<Node<T, S>>(count);
+        for (int i = 0; i < count; i++) {
+            int slot = buffer.slot(node, i);
+            children.add(toNodeDefault(buffer, context, buffer.childOffset(slot),
+                    buffer.bound(slot, 0, x1, x2), buffer.bound(slot, 1, y1, y2),
+                    buffer.bound(slot, 2, x1, x2), buffer.bound(slot, 3, y1, y2)));
+        }
+        return context.factory().createNonLeaf(children, context);
+    }
+
+    private final class Writer {
+
+        private final RTree<T, S> tree;
+        private final int max = (1 << bits) - 1;
+        private final int step = bits / 8;
+        private final Bytes out = new Bytes(4096);
+        private final Bytes block = new Bytes(BLOCK_SIZE + 256);
+        // stored (possibly compressed) blocks
+        private final List<byte[]> blocks = new ArrayList<byte[]>();
+        private final List<int[]> blockInfo = new ArrayList<int[]>();
+        private int valueIndex;
+        private int blockFirstIndex;
+
+        Writer(RTree<T, S> tree) {
+            this.tree = tree;
+        }
+
+        Bytes write() {
+            Context<T, S> context = tree.context();
+            out.putInt(MAGIC);
+            out.putByte(VERSION);
+            out.putByte(bits);
+            out.putByte(compress ? FLAG_COMPRESSED : 0);
+            out.putByte(0);
+            out.putInt(context.minChildren());
+            out.putInt(context.maxChildren());
+            out.putInt(tree.size());
+            // root and values offsets are set later
+            out.putInt(0);
+            out.putInt(0);
+            Rectangle mbr = tree.root().isPresent() ? tree.root().get().geometry().mbr() : null;
+            for (int k = 0; k < 4; k++)
+                out.putFloat(mbr == null ? 0 : bound(mbr, k));
+            putString(context.selector().getClass().getName());
+            putString(context.splitter().getClass().getName());
+            if (mbr != null) {
+                out.setInt(ROOT, out.position());
+                writeNode(tree.root().get(), mbr.x1(), mbr.y1(), mbr.x2(), mbr.y2());
+            }
+            closeBlock();
+            writeValues();
+            return out;
+        }
+
+        private void putString(String s) {
+            byte[] bytes = s.getBytes(UTF_8);
+            out.putShort(bytes.length);
+            out.putBytes(bytes, bytes.length);
+        }
+
+        /**
+         * Writes a node whose bounds as seen by the reader are x1, y1, x2, y2.
+         */
+        private void writeNode(Node<T, S> node, float x1, float y1, float x2, float y2) {
+            int count = node.count();
+            if (node instanceof Leaf) {
+                Leaf<T, S> leaf = (Leaf<T, S>) node;
+                out.putByte(LEAF);
+                out.putInt(count);
+                out.putInt(valueIndex);
+                for (int i = 0; i < count; i++) {
+                    Entry<T, S> entry = leaf.entry(i);
+                    putGeometry(entry.geometry());
+                    addValue(entry.value());
+                }
+            } else {
+                NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+                out.putByte(NON_LEAF);
+                out.putInt(count);
+                int slots = out.position();
+                int slotSize = 4 * step + 4;
+                out.skip(count * slotSize);
+                for (int i = 0; i < count; i++) {
+                    Node<T, S> child = nonLeaf.child(i);
+                    Rectangle m = child.geometry().mbr();
+                    int qx1 = Quantizer.low(m.x1(), x1, x2, max);
+                    int qy1 = Quantizer.low(m.y1(), y1, y2, max);
+                    int qx2 = Quantizer.high(m.x2(), x1, x2, max);
+                    int qy2 = Quantizer.high(m.y2(), y1, y2, max);
+                    int slot = slots + i * slotSize;
+                    setQuantized(slot, qx1);
+                    setQuantized(slot + step, qy1);
+                    setQuantized(slot + 2 * step, qx2);
+                    setQuantized(slot + 3 * step, qy2);
+                    out.setInt(slot + 4 * step, out.position());
+                    writeNode(child, Quantizer.value(qx1, x1, x2, max),
+                            Quantizer.value(qy1, y1, y2, max), Quantizer.value(qx2, x1, x2, max),
+                            Quantizer.value(qy2, y1, y2, max));
+                }
+            }
+        }
+
+        private void setQuantized(int position, int q) {
+            if (step == 1)
+                out.setByte(position, q);
+            else
+                out.setShort(position, q);
+        }
+
+        private void putGeometry(Geometry g) {
+            // Point must be checked before Rectangle because Point is a
+            // Rectangle
+            if (g instanceof Point) {
+                Point p = (Point) g;
+                out.putByte(POINT);
+                out.putFloat(p.x());
+                out.putFloat(p.y());
+            } else if (g instanceof Rectangle) {
+                Rectangle r = (Rectangle) g;
+                out.putByte(RECTANGLE);
+                for (int k = 0; k < 4; k++)
+                    out.putFloat(bound(r, k));
+            } else if (g instanceof Circle) {
+                Circle c = (Circle) g;
+                out.putByte(CIRCLE);
+                out.putFloat(c.x());
+                out.putFloat(c.y());
+                out.putFloat(c.radius());
+            } else if (g instanceof Line) {
+                Line line = (Line) g;
+                out.putByte(LINE);
+                out.putFloat(line.x1());
+                out.putFloat(line.y1());
+                out.putFloat(line.x2());
+                out.putFloat(line.y2());
+            } else
+                throw new IllegalArgumentException("unsupported geometry type: " + g.getClass());
+        }
+
+        private void addValue(T value) {
+            byte[] bytes = value == null ? null : serializer.call(value);
+            if (bytes == null)
+                block.putVarint(0);
+            else {
+                block.putVarint(bytes.length + 1);
+                block.putBytes(bytes, bytes.length);
+            }
+            valueIndex++;
+            if (block.position() >= BLOCK_SIZE)
+                closeBlock();
+        }
+
+        private void closeBlock() {
+            if (valueIndex == blockFirstIndex)
+                return;
+            int rawLength = block.position();
+            byte[] stored = null;
+            if (compress) {
+                byte[] compressed = Lz4.compress(block.array(), rawLength);
+                if (compressed.length < rawLength)
+                    stored = compressed;
+            }
+            if (stored == null)
+                stored = Arrays.copyOf(block.array(), rawLength);
+            blocks.add(stored);
+            blockInfo.add(new int[] { blockFirstIndex, rawLength });
+            block.reset();
+            blockFirstIndex = valueIndex;
+        }
+
+        private void writeValues() {
+            out.setInt(VALUES, out.position());
+            out.putInt(valueIndex);
+            out.putInt(blocks.size());
+            int table = out.position();
+            out.skip(blocks.size() * BLOCK_SLOT);
+            for (int i = 0; i < blocks.size(); i++) {
+                byte[] stored = blocks.get(i);
+                int slot = table + i * BLOCK_SLOT;
+                out.setInt(slot, blockInfo.get(i)[0]);
+                out.setInt(slot + 4, out.position());
+                out.setInt(slot + 8, stored.length);
+                out.setInt(slot + 12, blockInfo.get(i)[1]);
+                out.putBytes(stored, stored.length);
+            }
+        }
+
+    }
+
+    private static float bound(Rectangle r, int k) {
+        if (k == 0)
+            return r.x1();
+        else if (k == 1)
+            return r.y1();
+        else if (k == 2)
+            return r.x2();
+        else
+            return r.y2();
+    }
+
+}
@@ -5,7 +5,10 @@ import static com.github.davidmoten.rtree.Utilities.entries1000;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
@@ -15,9 +18,11 @@ import com.github.davidmoten.rtree.fbs.SerializerFlatBuffers;
 import com.github.davidmoten.rtree.geometry.Geometries;
 import com.github.davidmoten.rtree.geometry.Point;
 import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.kryo.SerializerKryo;
 
 import rx.Subscriber;
 import rx.functions.Func1;
+import rx.functions.Func2;
 
 @State(Scope.Benchmark)
 public class BenchmarksRTree {
@@ -76,34 +81,85 @@ public class BenchmarksRTree {
 
     private final RTree<Object, Point> starTreeM10FlatBuffers = createFlatBuffersGreek();
 
+    private final List<Rectangle> greekQueries = createGreekQueries();
+
+    private final RTree<Integer, Rectangle> greekQueriesTree = createGreekQueriesTree();
+
+    private final RTree<Object, Point> starTreeM10BulkLoaded = RTree.maxChildren(10).star()
+            .create(entries);
+
+    private final RTree<Object, Point> starTreeM128BulkLoaded = RTree.maxChildren(128).star()
+            .create(entries);
+
+    private final RTree<Object, Point> starTreeM10HilbertLoaded = RTree.maxChildren(10).star()
+            .loader(new LoaderHilbert()).create(entries);
+
+    private final RTree<Object, Point> starTreeM10OMTLoaded = RTree.maxChildren(10).star()
+            .loader(new LoaderOMT()).create(entries);
+
+    private final RTree<Object, Point> starTreeM10Packed = RTree.maxChildren(10).star()
+            .factory(Factories.packedFactory()).create(entries);
+
+    private final RTree<Object, Point> starTreeM128Packed = RTree.maxChildren(128).star()
+            .factory(Factories.packedFactory()).create(entries);
+
+    private final RTree<Object, Point> starTreeM10Points = RTree.maxChildren(10).star()
+            .factory(Factories.pointFactory()).create(entries);
+
+    private final List<Entry<Object, Point>> clusteredPoints = createClusteredPoints();
+
     @Benchmark
     public void defaultRTreeInsertOneEntryIntoGreekDataEntriesMaxChildren004() {
         insertPoint(defaultTreeM4);
     }
 
+    private static List<Rectangle> createGreekQueries() {
+        // 1000 small windows spread over the region containing the data
+        List<Rectangle> queries = new ArrayList<Rectangle>();
+        for (int i = 0; i < 1000; i++) {
+            float lat = 35 + (i % 40) * 0.15f;
+            float lon = 20 + (i / 40) * 0.3f;
+            queries.add(Geometries.rectangle(lat, lon, lat + 0.1, lon + 0.1));
+        }
+        return queries;
+    }
+
+    private RTree<Integer, Rectangle> createGreekQueriesTree() {
+        List<Entry<Integer, Rectangle>> list = new ArrayList<Entry<Integer, Rectangle>>();
+        for (int i = 0; i < greekQueries.size(); i++)
+            list.add(Entries.entry(i, greekQueries.get(i)));
+        return RTree.maxChildren(10).star().create(list);
+    }
+
+    private static final Func1<Object, byte[]> EMPTY_SERIALIZER = new Func1<Object, byte[]>() {
+        @Override
+        public byte[] call(Object o) {
+            return new byte[0];
+        }
+    };
+
+    private static final Func1<byte[], Object> NULL_DESERIALIZER = new Func1<byte[], Object>() {
+        @Override
+        public Object call(byte[] bytes) {
+            return null;
+        }
+    };
+
+    private static final Serializer<Object, Point> FLAT_BUFFERS_SERIALIZER = SerializerFlatBuffers
+            .create(EMPTY_SERIALIZER, NULL_DESERIALIZER);
+
+    private static final Serializer<Object, Point> KRYO_SERIALIZER = SerializerKryo
+            .create(EMPTY_SERIALIZER, NULL_DESERIALIZER);
+
     private RTree<Object, Point> createFlatBuffersGreek() {
         RTree<Object, Point> tree = RTree.maxChildren(10).star().<Object, Point> create()
                 .add(entries);
         final ByteArrayOutputStream os = new ByteArrayOutputStream();
-        Func1<Object, byte[]> serializer = new Func1<Object, byte[]>() {
-            @Override
-            public byte[] call(Object o) {
-                return new byte[0];
-            }
-        };
-        Func1<byte[], Object> deserializer = new Func1<byte[], Object>() {
-            @Override
-            public Object call(byte[] bytes) {
-                return null;
-            }
-        };
-        Serializer<Object, Point> fbSerializer = SerializerFlatBuffers.create(serializer,
-                deserializer);
         try {
-            fbSerializer.write(tree, os);
+            FLAT_BUFFERS_SERIALIZER.write(tree, os);
             os.close();
             ByteArrayInputStream is = new ByteArrayInputStream(os.toByteArray());
-            return fbSerializer.read(is, os.size(), InternalStructure.SINGLE_ARRAY);
+            return FLAT_BUFFERS_SERIALIZER.read(is, os.size(), InternalStructure.SINGLE_ARRAY);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -124,6 +180,60 @@ public class BenchmarksRTree {
         searchGreek(defaultTreeM10);
     }
 
+    private static List<Entry<Object, Point>> createClusteredPoints() {
+        // 1000 points arriving in one small region of the greek data
+        Random random = new Random(1);
+        List<Entry<Object, Point>> list = new ArrayList<Entry<Object, Point>>();
+        for (int i = 0; i < 1000; i++)
+            list.add(Entries.<Object, Point> entry(i, Geometries.point(38 + random.nextFloat() * 0.2,
+                    23 + random.nextFloat() * 0.2)));
+        return list;
+    }
+
+    @Benchmark
+    public RTree<Object, Point> rStarTreeInsert1000ClusteredEntriesOneAtATimeIntoGreekDataMaxChildren010() {
+        RTree<Object, Point> tree = starTreeM10;
+        for (Entry<Object, Point> entry : clusteredPoints)
+            tree = tree.add(entry);
+        return tree;
+    }
+
+    @Benchmark
+    public RTree<Object, Point> rStarTreeInsert1000ClusteredEntriesAsBatchIntoGreekDataMaxChildren010() {
+        return starTreeM10.add(clusteredPoints);
+    }
+
+    @Benchmark
+    public RTree<Object, Point> rStarTreeMoveEntryByDeleteAndAddInGreekDataMaxChildren010() {
+        Entry<Object, Point> entry = entries.get(1000);
+        Point p = entry.geometry();
+        return starTreeM10.delete(entry).add(entry.value(), Geometries.point(p.x() + 0.001f, p.y()));
+    }
+
+    @Benchmark
+    public RTree<Object, Point> rStarTreeMoveEntryInGreekDataMaxChildren010() {
+        Entry<Object, Point> entry = entries.get(1000);
+        Point p = entry.geometry();
+        return starTreeM10.move(entry, Geometries.point(p.x() + 0.001f, p.y()));
+    }
+
+    @Benchmark
+    public RTree<Object, Point> rStarTreeCreateGreekDataOneAtATimeMaxChildren010() {
+        RTree<Object, Point> tree = RTree.maxChildren(10).star().create();
+        for (Entry<Object, Point> entry : entries)
+            tree = tree.add(entry);
+        return tree;
+    }
+
+    @Benchmark
+    public RTree<Object, Point> rStarTreeCreateGreekDataTransientMaxChildren010() {
+        TransientRTree<Object, Point> tree = RTree.maxChildren(10).star()
+                .<Object, Point> create().asTransient();
+        for (Entry<Object, Point> entry : entries)
+            tree.add(entry);
+        return tree.freeze();
+    }
+
     @Benchmark
     public void rStarTreeInsertOneEntryIntoGreekDataEntriesMaxChildren004() {
         insertPoint(starTreeM4);
@@ -149,6 +259,16 @@ public class BenchmarksRTree {
         searchGreek(starTreeM10FlatBuffers);
     }
 
+    @Benchmark
+    public RTree<Object, Point> rStarTreeSerializeGreekDataPointsMaxChildren010FlatBuffers() {
+        return serializeAndRead(FLAT_BUFFERS_SERIALIZER, starTreeM10);
+    }
+
+    @Benchmark
+    public RTree<Object, Point> rStarTreeSerializeGreekDataPointsMaxChildren010Kryo() {
+        return serializeAndRead(KRYO_SERIALIZER, starTreeM10);
+    }
+
     @Benchmark
     public void rStarTreeSearchOfGreekDataPointsMaxChildren010FlatBuffersBackpressure() {
         searchGreekBackpressure(starTreeM10FlatBuffers);
@@ -159,6 +279,31 @@ public class BenchmarksRTree {
         searchGreekWithBackpressure(starTreeM10);
     }
 
+    @Benchmark
+    public int rStarTreeSearchOfGreekDataPointsMaxChildren010UsingIterator() {
+        return searchGreekUsingIterator(starTreeM10);
+    }
+
+    @Benchmark
+    public int rStarTreeSearchOfGreekDataPointsMaxChildren010UsingVisitor() {
+        return searchGreekUsingVisitor(starTreeM10);
+    }
+
+    @Benchmark
+    public List<List<Entry<Object, Point>>> rStarTreeSearchBatchOfGreekDataPointsMaxChildren010() {
+        return starTreeM10.searchBatch(greekQueries);
+    }
+
+    @Benchmark
+    public int rStarTreeJoinOfGreekDataPointsMaxChildren010() {
+        return starTreeM10.join(greekQueriesTree, new Func2<Point, Rectangle, Boolean>() {
+            @Override
+            public Boolean call(Point p, Rectangle r) {
+                return p.intersects(r);
+            }
+        }).count().toBlocking().single();
+    }
+
     @Benchmark
     public void defaultRTreeInsertOneEntryIntoGreekDataEntriesMaxChildren032() {
         insertPoint(defaultTreeM32);
@@ -289,6 +434,81 @@ public class BenchmarksRTree {
         searchNearestGreek(starTreeM4);
     }
 
+    @Benchmark
+    public void searchNearestGreekWithoutMaxDistance() {
+        starTreeM4.nearest(Geometries.point(40.0, 27.0)).take(300).subscribe();
+    }
+
+    @Benchmark
+    public void searchNearestGreekPoints() {
+        searchNearestGreek(starTreeM10Points);
+    }
+
+    @Benchmark
+    public void rStarTreeCreateFromGreekDataByAddingMaxChildren010() {
+        RTree.maxChildren(10).star().<Object, Point> create().add(entries);
+    }
+
+    @Benchmark
+    public void rStarTreeCreateFromGreekDataByBulkLoadingMaxChildren010() {
+        RTree.maxChildren(10).star().create(entries);
+    }
+
+    @Benchmark
+    public void rStarTreeCreateFromGreekDataByAddingMaxChildren128() {
+        RTree.maxChildren(128).star().<Object, Point> create().add(entries);
+    }
+
+    @Benchmark
+    public void rStarTreeCreateFromGreekDataByBulkLoadingMaxChildren128() {
+        RTree.maxChildren(128).star().create(entries);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren010BulkLoaded() {
+        searchGreek(starTreeM10BulkLoaded);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren128BulkLoaded() {
+        searchGreek(starTreeM128BulkLoaded);
+    }
+
+    @Benchmark
+    public void rStarTreeCreateFromGreekDataByHilbertLoadingMaxChildren010() {
+        RTree.maxChildren(10).star().loader(new LoaderHilbert()).create(entries);
+    }
+
+    @Benchmark
+    public void rStarTreeCreateFromGreekDataByOMTLoadingMaxChildren010() {
+        RTree.maxChildren(10).star().loader(new LoaderOMT()).create(entries);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren010HilbertLoaded() {
+        searchGreek(starTreeM10HilbertLoaded);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren010OMTLoaded() {
+        searchGreek(starTreeM10OMTLoaded);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren010Packed() {
+        searchGreek(starTreeM10Packed);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren128Packed() {
+        searchGreek(starTreeM128Packed);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren010Points() {
+        searchGreek(starTreeM10Points);
+    }
+
     private void deleteAll(RTree<Object, Point> tree) {
         tree.delete(entries.get(1000), true);
     }
@@ -308,6 +528,31 @@ public class BenchmarksRTree {
         tree.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).take(1000).subscribe();
     }
 
+    private int searchGreekUsingIterator(RTree<Object, Point> tree) {
+        // should return 22 results
+        Iterator<Entry<Object, Point>> it = tree
+                .searchIterator(Geometries.rectangle(40, 27.0, 40.5, 27.5));
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    private int searchGreekUsingVisitor(RTree<Object, Point> tree) {
+        // should return 22 results
+        final int[] count = new int[1];
+        tree.search(Geometries.rectangle(40, 27.0, 40.5, 27.5), new EntryVisitor<Object, Point>() {
+            @Override
+            public boolean visit(Entry<Object, Point> entry) {
+                count[0]++;
+                return true;
+            }
+        });
+        return count[0];
+    }
+
     private void searchNearestGreek(RTree<Object, Point> tree) {
         tree.nearest(Geometries.point(40.0, 27.0), 1, 300).subscribe();
     }
@@ -338,6 +583,18 @@ public class BenchmarksRTree {
         });
     }
 
+    private static RTree<Object, Point> serializeAndRead(Serializer<Object, Point> serializer,
+            RTree<Object, Point> tree) {
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            serializer.write(tree, os);
+            return serializer.read(new ByteArrayInputStream(os.toByteArray()), os.size(),
+                    InternalStructure.DEFAULT);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void insertRectangle(RTree<Object, Rectangle> tree) {
         tree.add(new Object(), RTreeTest.random());
     }
@@ -0,0 +1,118 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.circle;
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Intersects;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rx.util.Pair;
+
+import rx.Observable;
+import rx.functions.Func2;
+
+public class JoinIteratorTest {
+
+    @Test
+    public void testJoinMatchesNestedLoop() {
+        List<Entry<Integer, Rectangle>> a = rectangles(2000, 1);
+        List<Entry<Integer, Rectangle>> b = rectangles(1500, 2);
+        RTree<Integer, Rectangle> treeA = RTree.star().maxChildren(8).create(a);
+        RTree<Integer, Rectangle> treeB = RTree.maxChildren(4).<Integer, Rectangle> create()
+                .add(b);
+        Set<String> expected = nestedLoop(a, b);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, toSet(treeA.join(treeB, RECTANGLES_INTERSECT)));
+    }
+
+    @Test
+    public void testJoinOfTreesWithDifferentHeights() {
+        List<Entry<Integer, Rectangle>> a = rectangles(3, 3);
+        List<Entry<Integer, Rectangle>> b = rectangles(3000, 4);
+        RTree<Integer, Rectangle> treeA = RTree.create(a);
+        RTree<Integer, Rectangle> treeB = RTree.maxChildren(4).create(b);
+        assertTrue(treeA.calculateDepth() < treeB.calculateDepth());
+        assertEquals(nestedLoop(a, b), toSet(treeA.join(treeB, RECTANGLES_INTERSECT)));
+        assertEquals(nestedLoop(b, a), toSet(treeB.join(treeA, RECTANGLES_INTERSECT)));
+    }
+
+    @Test
+    public void testJoinUsesPredicate() {
+        RTree<Integer, Point> points = RTree.<Integer, Point> create().add(1, point(0.9f, 0.9f))
+                .add(2, point(0.1f, 0.1f));
+        RTree<Integer, Circle> circles = RTree.<Integer, Circle> create().add(10,
+                circle(0, 0, 1));
+        List<Pair<Entry<Integer, Point>, Entry<Integer, Circle>>> list = points
+                .join(circles, Intersects.pointIntersectsCircle).toList().toBlocking().single();
+        assertEquals(1, list.size());
+        assertEquals(2, (int) list.get(0).a().value());
+        assertEquals(10, (int) list.get(0).b().value());
+    }
+
+    @Test
+    public void testJoinWithEmptyTree() {
+        RTree<Integer, Rectangle> tree = RTree.create(rectangles(100, 5));
+        RTree<Integer, Rectangle> empty = RTree.create();
+        assertTrue(toSet(tree.join(empty, RECTANGLES_INTERSECT)).isEmpty());
+        assertTrue(toSet(empty.join(tree, RECTANGLES_INTERSECT)).isEmpty());
+    }
+
+    @Test
+    public void testJoinTake() {
+        RTree<Integer, Rectangle> tree = RTree.create(rectangles(1000, 6));
+        assertEquals(5,
+                (int) tree.join(tree, RECTANGLES_INTERSECT).take(5).count().toBlocking().single());
+    }
+
+    private static final Func2<Geometry, Geometry, Boolean> RECTANGLES_INTERSECT = new Func2<Geometry, Geometry, Boolean>() {
+        @Override
+        public Boolean call(Geometry a, Geometry b) {
+            return a.mbr().intersects(b.mbr());
+        }
+    };
+
+    private static List<Entry<Integer, Rectangle>> rectangles(int n, long seed) {
+        Random r = new Random(seed);
+        List<Entry<Integer, Rectangle>> list = new ArrayList<Entry<Integer, Rectangle>>();
+        for (int i = 0; i < n; i++) {
+            float x = r.nextFloat() * 1000;
+            float y = r.nextFloat() * 1000;
+            list.add(Entries.entry(i, rectangle(x, y, x + r.nextFloat() * 20, y + r.nextFloat() * 20)));
+        }
+        return list;
+    }
+
+    private static Set<String> nestedLoop(List<Entry<Integer, Rectangle>> a,
+            List<Entry<Integer, Rectangle>> b) {
+        Set<String> set = new HashSet<String>();
+        for (Entry<Integer, Rectangle> x : a)
+            for (Entry<Integer, Rectangle> y : b)
+                if (x.geometry().intersects(y.geometry()))
+                    set.add(x.value() + ":" + y.value());
+        return set;
+    }
+
+    private static Set<String> toSet(
+            Observable<Pair<Entry<Integer, Rectangle>, Entry<Integer, Rectangle>>> pairs) {
+        Set<String> set = new HashSet<String>();
+        for (Pair<Entry<Integer, Rectangle>, Entry<Integer, Rectangle>> pair : pairs.toList()
+                .toBlocking().single())
+            assertTrue(set.add(pair.a().value() + ":" + pair.b().value()));
+        return set;
+    }
+
+}
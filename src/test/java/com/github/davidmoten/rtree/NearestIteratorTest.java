@@ -0,0 +1,86 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.internal.Comparators;
+
+public class NearestIteratorTest {
+
+    @Test
+    public void testNearestIteratorReturnsAllEntriesInAscendingDistance() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> tree = RTree.star().maxChildren(4).<Object, Rectangle> create()
+                .add(entries);
+        Random random = new Random(789);
+        for (int i = 0; i < 20; i++) {
+            Rectangle r = rectangle(random.nextInt(1000), random.nextInt(1000),
+                    random.nextInt(1000) + 1000, random.nextInt(1000) + 1000);
+            List<Entry<Object, Rectangle>> expected = new ArrayList<Entry<Object, Rectangle>>(
+                    entries);
+            Collections.sort(expected, Comparators.<Object, Rectangle> ascendingDistance(r));
+            List<Entry<Object, Rectangle>> found = toList(tree.nearestIterator(r));
+            assertEquals(expected.size(), found.size());
+            for (int j = 0; j < expected.size(); j++)
+                assertEquals(expected.get(j).geometry().distance(r),
+                        found.get(j).geometry().distance(r), 0.0);
+        }
+    }
+
+    @Test
+    public void testNearestTakeK() {
+        RTree<Integer, Point> tree = RTree.maxChildren(4).<Integer, Point> create();
+        for (int i = 0; i < 100; i++)
+            tree = tree.add(i, point(i, 0));
+        List<Entry<Integer, Point>> list = tree.nearest(point(50.2, 3)).take(3).toList()
+                .toBlocking().single();
+        assertEquals(3, list.size());
+        assertEquals(50, (int) list.get(0).value());
+        assertEquals(51, (int) list.get(1).value());
+        assertEquals(49, (int) list.get(2).value());
+    }
+
+    @Test
+    public void testNearestOfEmptyTree() {
+        RTree<Integer, Point> tree = RTree.create();
+        assertFalse(tree.nearestIterator(rectangle(0, 0, 1, 1)).hasNext());
+        assertEquals(0, (int) tree.nearest(point(1, 1)).count().toBlocking().single());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNearestIteratorNextWhenFinishedThrows() {
+        RTree<Integer, Point> tree = RTree.<Integer, Point> create().add(1, point(1, 1));
+        Iterator<Entry<Integer, Point>> it = tree.nearestIterator(rectangle(0, 0, 0, 0));
+        it.next();
+        it.next();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNearestIteratorRemoveThrows() {
+        RTree<Integer, Point> tree = RTree.<Integer, Point> create().add(1, point(1, 1));
+        Iterator<Entry<Integer, Point>> it = tree.nearestIterator(rectangle(0, 0, 0, 0));
+        it.next();
+        it.remove();
+    }
+
+    private static <T> List<T> toList(Iterator<T> it) {
+        List<T> list = new ArrayList<T>();
+        while (it.hasNext())
+            list.add(it.next());
+        return list;
+    }
+
+}
@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -40,6 +41,7 @@ import com.github.davidmoten.rtree.geometry.HasGeometry;
 import com.github.davidmoten.rtree.geometry.Intersects;
 import com.github.davidmoten.rtree.geometry.Point;
 import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.internal.Util;
 
 import rx.Observable;
 import rx.Subscriber;
@@ -1001,6 +1003,184 @@ public class RTreeTest {
 
     }
 
+    @Test
+    public void testBulkLoadEmptyList() {
+        RTree<Object, Rectangle> tree = RTree.create(new ArrayList<Entry<Object, Rectangle>>());
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.root().isPresent());
+    }
+
+    @Test
+    public void testBulkLoadOneEntry() {
+        Entry<Object, Rectangle> entry = e(1);
+        RTree<Object, Rectangle> tree = RTree.create(Collections.singletonList(entry));
+        assertEquals(1, tree.size());
+        assertEquals(1, tree.calculateDepth());
+        assertEquals(Collections.singletonList(entry), tree.entries().toList().toBlocking().single());
+    }
+
+    @Test
+    public void testBulkLoadReturnsSameSearchResultsAsIncrementalLoad() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> bulk = RTree.star().maxChildren(10).create(entries);
+        RTree<Object, Rectangle> incremental = RTree.star().maxChildren(10)
+                .<Object, Rectangle> create().add(entries);
+        assertEquals(entries.size(), bulk.size());
+        assertEquals(entries.size(), (int) bulk.entries().count().toBlocking().single());
+        for (int i = 0; i < 100; i++) {
+            Rectangle r = rectangle(i * 10, i * 5, i * 10 + 100, i * 5 + 200);
+            assertEquals(new HashSet<Entry<Object, Rectangle>>(
+                    incremental.search(r).toList().toBlocking().single()),
+                    new HashSet<Entry<Object, Rectangle>>(
+                            bulk.search(r).toList().toBlocking().single()));
+        }
+    }
+
+    @Test
+    public void testBulkLoadIsBalancedAndRespectsLoadingFactor() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> tree = RTree.maxChildren(10).loadingFactor(0.5).create(entries);
+        // 1000 entries at 5 per node gives 200 leaves, 40, 8, 2, 1
+        assertEquals(5, tree.calculateDepth());
+        checkBulkLoadedNode(tree.root().get(), 5, 1, tree.calculateDepth());
+    }
+
+    private static void checkBulkLoadedNode(Node<Object, Rectangle> node, int maxChildren,
+            int depth, int expectedDepth) {
+        assertTrue(node.count() <= maxChildren);
+        if (node instanceof Leaf) {
+            assertEquals(expectedDepth, depth);
+        } else {
+            NonLeaf<Object, Rectangle> nonLeaf = (NonLeaf<Object, Rectangle>) node;
+            assertEquals(Util.mbr(nonLeaf.children()), node.geometry().mbr());
+            for (int i = 0; i < nonLeaf.count(); i++) {
+                checkBulkLoadedNode(nonLeaf.child(i), maxChildren, depth + 1, expectedDepth);
+            }
+        }
+    }
+
+    @Test
+    public void testBulkLoadDoesNotModifyList() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        List<Entry<Object, Rectangle>> copy = new ArrayList<Entry<Object, Rectangle>>(entries);
+        RTree.create(entries);
+        assertEquals(copy, entries);
+    }
+
+    @Test
+    public void testBulkLoadedTreeSupportsAddAndDelete() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> tree = RTree.star().maxChildren(4).create(entries);
+        Entry<Object, Rectangle> entry = e(10000);
+        tree = tree.add(entry).delete(entries.get(0)).delete(entries.get(1));
+        assertEquals(999, tree.size());
+        assertEquals(999, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testHilbertBulkLoadReturnsSameSearchResultsAsIncrementalLoad() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> bulk = RTree.hilbert().maxChildren(10).create(entries);
+        RTree<Object, Rectangle> incremental = RTree.maxChildren(10)
+                .<Object, Rectangle> create().add(entries);
+        assertEquals(entries.size(), bulk.size());
+        assertEquals(entries.size(), (int) bulk.entries().count().toBlocking().single());
+        for (int i = 0; i < 100; i++) {
+            Rectangle r = rectangle(i * 10, i * 5, i * 10 + 100, i * 5 + 200);
+            assertEquals(new HashSet<Entry<Object, Rectangle>>(
+                    incremental.search(r).toList().toBlocking().single()),
+                    new HashSet<Entry<Object, Rectangle>>(
+                            bulk.search(r).toList().toBlocking().single()));
+        }
+    }
+
+    @Test
+    public void testHilbertBulkLoadIsBalancedAndRespectsLoadingFactor() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> tree = RTree.hilbert().maxChildren(10).loadingFactor(0.5)
+                .create(entries);
+        assertEquals(5, tree.calculateDepth());
+        checkBulkLoadedNode(tree.root().get(), 5, 1, tree.calculateDepth());
+    }
+
+    @Test
+    public void testHilbertBulkLoadOfIdenticalPoints() {
+        List<Entry<Object, Point>> entries = new ArrayList<Entry<Object, Point>>();
+        for (int i = 0; i < 100; i++)
+            entries.add(Entries.<Object, Point> entry(i, point(1, 2)));
+        RTree<Object, Point> tree = RTree.hilbert().maxChildren(4).create(entries);
+        assertEquals(100, (int) tree.search(point(1, 2)).count().toBlocking().single());
+    }
+
+    @Test
+    public void testOMTBulkLoadReturnsSameSearchResultsAsIncrementalLoad() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> bulk = RTree.loader(new LoaderOMT()).maxChildren(10)
+                .create(entries);
+        RTree<Object, Rectangle> incremental = RTree.maxChildren(10)
+                .<Object, Rectangle> create().add(entries);
+        assertEquals(entries.size(), bulk.size());
+        assertEquals(entries.size(), (int) bulk.entries().count().toBlocking().single());
+        for (int i = 0; i < 100; i++) {
+            Rectangle r = rectangle(i * 10, i * 5, i * 10 + 100, i * 5 + 200);
+            assertEquals(new HashSet<Entry<Object, Rectangle>>(
+                    incremental.search(r).toList().toBlocking().single()),
+                    new HashSet<Entry<Object, Rectangle>>(
+                            bulk.search(r).toList().toBlocking().single()));
+        }
+    }
+
+    @Test
+    public void testOMTBulkLoadHasMinimalHeightAndRespectsLoadingFactor() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> tree = RTree.loader(new LoaderOMT()).maxChildren(10)
+                .loadingFactor(0.5).create(entries);
+        // 5^4 < 1000 <= 5^5
+        assertEquals(5, tree.calculateDepth());
+        checkBulkLoadedNode(tree.root().get(), 5, 1, tree.calculateDepth());
+    }
+
+    @Test
+    public void testOMTBulkLoadRootChildrenDoNotOverlap() {
+        List<Entry<Object, Point>> entries = new ArrayList<Entry<Object, Point>>();
+        for (int i = 0; i < 1000; i++)
+            // distinct x and y values so no two points tie in either sort
+            entries.add(Entries.<Object, Point> entry(i, point(i, (i * 7919) % 1000)));
+        RTree<Object, Point> tree = RTree.loader(new LoaderOMT()).maxChildren(10)
+                .create(entries);
+        NonLeaf<Object, Point> root = (NonLeaf<Object, Point>) tree.root().get();
+        for (int i = 0; i < root.count(); i++)
+            for (int j = i + 1; j < root.count(); j++)
+                assertFalse(root.child(i).geometry().mbr()
+                        .intersects(root.child(j).geometry().mbr()));
+    }
+
+    @Test
+    public void testBulkLoadUsesCustomLoader() {
+        final AtomicInteger calls = new AtomicInteger();
+        Loader loader = new Loader() {
+            @Override
+            public <T, S extends Geometry> Node<T, S> load(List<Entry<T, S>> entries,
+                    int capacity, Context<T, S> context, Optional<ExecutorService> executor) {
+                calls.incrementAndGet();
+                return new LoaderSTR().load(entries, capacity, context, executor);
+            }
+        };
+        RTree<Object, Rectangle> tree = RTree.loader(loader).create(Utilities.entries1000());
+        assertEquals(1, calls.get());
+        assertEquals(1000, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadingFactorMustBePositive() {
+        RTree.loadingFactor(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadingFactorMustBeAtMostOne() {
+        RTree.loadingFactor(1.1);
+    }
+
     private static Func2<Point, Circle, Double> distanceCircleToPoint = new Func2<Point, Circle, Double>() {
         @Override
         public Double call(Point point, Circle circle) {
@@ -0,0 +1,85 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class SearchIteratorTest {
+
+    @Test
+    public void testSearchIteratorReturnsSameEntriesInSameOrderAsSearch() {
+        RTree<Object, Rectangle> tree = RTree.star().maxChildren(4).<Object, Rectangle> create()
+                .add(Utilities.entries1000());
+        for (int i = 0; i < 100; i++) {
+            Rectangle r = rectangle(i * 10, i * 5, i * 10 + 100, i * 5 + 200);
+            assertEquals(tree.search(r).toList().toBlocking().single(), toList(tree.searchIterator(r)));
+        }
+    }
+
+    @Test
+    public void testSearchIterableCanBeIteratedMoreThanOnce() {
+        RTree<Object, Rectangle> tree = RTree.create(Utilities.entries1000());
+        Rectangle r = rectangle(0, 0, 300, 300);
+        Iterable<Entry<Object, Rectangle>> iterable = tree.searchIterable(r);
+        List<Entry<Object, Rectangle>> list = new ArrayList<Entry<Object, Rectangle>>();
+        for (Entry<Object, Rectangle> entry : iterable)
+            list.add(entry);
+        assertFalse(list.isEmpty());
+        assertEquals(list, toList(iterable.iterator()));
+    }
+
+    @Test
+    public void testSearchIteratorOnEmptyTree() {
+        RTree<Object, Rectangle> tree = RTree.create();
+        assertFalse(tree.searchIterator(rectangle(0, 0, 1, 1)).hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testSearchIteratorNextWhenFinishedThrows() {
+        RTree<Object, Point> tree = RTree.<Object, Point> create().add(1, point(1, 1));
+        Iterator<Entry<Object, Point>> it = tree.searchIterator(rectangle(0, 0, 2, 2));
+        assertTrue(it.hasNext());
+        it.next();
+        assertFalse(it.hasNext());
+        it.next();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSearchIteratorRemoveThrows() {
+        RTree<Object, Point> tree = RTree.<Object, Point> create().add(1, point(1, 1));
+        Iterator<Entry<Object, Point>> it = tree.searchIterator(rectangle(0, 0, 2, 2));
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void testSearchIteratorOnDeepTree() {
+        List<Entry<Integer, Point>> entries = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < 70000; i++)
+            entries.add(Entries.entry(i, point(i % 300, i / 300)));
+        RTree<Integer, Point> tree = RTree.maxChildren(3).loadingFactor(0.5)
+                .create(entries);
+        // deeper than the initial stack capacity
+        assertTrue(tree.calculateDepth() > 16);
+        assertEquals(70000, toList(tree.searchIterator(rectangle(0, 0, 300, 300))).size());
+    }
+
+    private static <T> List<T> toList(Iterator<T> it) {
+        List<T> list = new ArrayList<T>();
+        while (it.hasNext())
+            list.add(it.next());
+        return list;
+    }
+}
@@ -1,8 +1,17 @@
 package com.github.davidmoten.rtree;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 import org.junit.Test;
 
 import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
 
 public class SerializerHelperTest {
     
@@ -11,4 +20,30 @@ public class SerializerHelperTest {
         Asserts.assertIsUtilityClass(SerializerHelper.class);
     }
 
+    @Test
+    public void testWriteAndReadFileWithStreamOnlySerializer() throws IOException {
+        final Serializer<String, Point> fbs = Serializers.flatBuffers().utf8();
+        // hides the file support of the flatbuffers serializer
+        Serializer<String, Point> serializer = new Serializer<String, Point>() {
+
+            @Override
+            public void write(RTree<String, Point> tree, OutputStream os) throws IOException {
+                fbs.write(tree, os);
+            }
+
+            @Override
+            public RTree<String, Point> read(InputStream is, long sizeBytes,
+                    InternalStructure structure) throws IOException {
+                return fbs.read(is, sizeBytes, structure);
+            }
+        };
+        RTree<String, Point> tree = RTree.<String, Point> create()
+                .add("a", Geometries.point(1, 2)).add("b", Geometries.point(3, 4));
+        File file = new File("target/helper");
+        SerializerHelper.write(serializer, tree, file);
+        RTree<String, Point> tree2 = SerializerHelper.read(serializer, file,
+                InternalStructure.DEFAULT);
+        assertEquals(tree.asString(), tree2.asString());
+    }
+
 }
@@ -0,0 +1,125 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.internal.TransientHelper;
+
+import rx.Observable;
+
+public class TransientRTreeTest {
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(TransientHelper.class);
+    }
+
+    @Test
+    public void testBuildsSameTreeAsImmutableInsertion() {
+        for (RTree.Builder builder : new RTree.Builder[] { RTree.maxChildren(4),
+                RTree.star().maxChildren(6), RTree.maxChildren(10).minChildren(2) }) {
+            List<Entry<Integer, Point>> entries = points(0, 2000);
+            RTree<Integer, Point> expected = builder.<Integer, Point> create().add(entries.get(0));
+            for (Entry<Integer, Point> entry : entries.subList(1, entries.size()))
+                expected = expected.add(entry);
+            RTree<Integer, Point> tree = builder.<Integer, Point> create().asTransient()
+                    .add(entries).freeze();
+            assertEquals(entries.size(), tree.size());
+            assertEquals(expected.asString(), tree.asString());
+        }
+    }
+
+    @Test
+    public void testOriginalTreeIsUnchanged() {
+        List<Entry<Integer, Point>> entries = points(0, 1000);
+        RTree<Integer, Point> tree = RTree.star().maxChildren(4).create(entries);
+        String before = tree.asString();
+        TransientRTree<Integer, Point> t = tree.asTransient();
+        List<Entry<Integer, Point>> more = points(1000, 1000);
+        t.add(more);
+        assertEquals(before, tree.asString());
+        RTree<Integer, Point> tree2 = t.freeze();
+        List<Entry<Integer, Point>> all = new ArrayList<Entry<Integer, Point>>(entries);
+        all.addAll(more);
+        assertEquals(new HashSet<Entry<Integer, Point>>(all), toSet(tree2.entries()));
+        assertEquals(before, tree.asString());
+    }
+
+    @Test
+    public void testFrozenTreeIsNotChangedByLaterTransients() {
+        RTree<Integer, Point> frozen = RTree.maxChildren(4).<Integer, Point> create()
+                .asTransient().add(points(0, 500)).freeze();
+        String before = frozen.asString();
+        // immutable and transient additions to the frozen tree copy its nodes
+        frozen.add(-1, point(1, 1));
+        frozen.add(points(500, 100));
+        RTree<Integer, Point> other = frozen.asTransient().add(points(600, 500)).freeze();
+        assertEquals(before, frozen.asString());
+        assertEquals(1000, other.size());
+        assertEquals(1000, (int) other.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testDelete() {
+        List<Entry<Integer, Point>> entries = points(0, 500);
+        TransientRTree<Integer, Point> t = RTree.maxChildren(4).<Integer, Point> create()
+                .asTransient().add(entries);
+        for (int i = 0; i < 250; i++)
+            t.delete(entries.get(i));
+        // deleting an entry that is not present changes nothing
+        t.delete(-1, point(1, 1));
+        t.add(-2, point(2, 2));
+        RTree<Integer, Point> tree = t.freeze();
+        assertEquals(251, tree.size());
+        Set<Entry<Integer, Point>> expected = new HashSet<Entry<Integer, Point>>(
+                entries.subList(250, 500));
+        expected.add(Entries.entry(-2, point(2, 2)));
+        assertEquals(expected, toSet(tree.entries()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUseAfterFreezeThrows() {
+        TransientRTree<Integer, Point> t = RTree.<Integer, Point> create().asTransient();
+        t.freeze();
+        t.add(1, point(1, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonDefaultFactoryThrows() {
+        RTree.maxChildren(4).factory(Factories.<Integer> pointFactory())
+                .<Integer, Point> create().asTransient();
+    }
+
+    @Test
+    public void testEmptyTransient() {
+        RTree<Integer, Point> tree = RTree.<Integer, Point> create();
+        RTree<Integer, Point> frozen = tree.asTransient().freeze();
+        assertEquals(0, frozen.size());
+        assertSame(tree.context(), frozen.context());
+    }
+
+    private static Set<Entry<Integer, Point>> toSet(Observable<Entry<Integer, Point>> entries) {
+        return new HashSet<Entry<Integer, Point>>(entries.toList().toBlocking().single());
+    }
+
+    private static List<Entry<Integer, Point>> points(int start, int n) {
+        Random random = new Random(start);
+        List<Entry<Integer, Point>> list = new ArrayList<Entry<Integer, Point>>(n);
+        for (int i = 0; i < n; i++)
+            list.add(Entries.entry(start + i,
+                    point(random.nextFloat() * 100, random.nextFloat() * 100)));
+        return list;
+    }
+
+}
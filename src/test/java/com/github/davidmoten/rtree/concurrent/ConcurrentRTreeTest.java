@@ -0,0 +1,163 @@
+package com.github.davidmoten.rtree.concurrent;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.Context;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Factories;
+import com.github.davidmoten.rtree.Factory;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class ConcurrentRTreeTest {
+
+    @Test
+    public void testAddAndDeleteFromOneThread() {
+        RTree<Integer, Geometry> initial = RTree.maxChildren(4).create();
+        ConcurrentRTree<Integer, Geometry> c = ConcurrentRTree.create(initial);
+        for (int i = 0; i < 100; i++)
+            c.add(i, point(i, i));
+        RTree<Integer, Geometry> tree = c.delete(5, point(5, 5));
+        assertEquals(99, tree.size());
+        c.add(7, point(7, 7));
+        c.delete(Entries.<Integer, Geometry> entry(7, point(7, 7)), true);
+        assertEquals(98, c.tree().size());
+        assertEquals(0, initial.size());
+        // without contention every mutation is its own batch
+        assertEquals(103, c.batches());
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        final int threads = 8;
+        final int perThread = 2000;
+        final ConcurrentRTree<Integer, Geometry> c = ConcurrentRTree
+                .create(RTree.star().maxChildren(6).<Integer, Geometry> create());
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> list = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int base = t * perThread;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = base; i < base + perThread; i++) {
+                            RTree<Integer, Geometry> tree = c.add(i, point(i % 100, i / 100));
+                            // the returned tree includes this thread's addition
+                            if (tree.size() == 0)
+                                throw new AssertionError("addition not visible");
+                            // every second addition by this thread is deleted
+                            if (i % 2 == 0)
+                                c.delete(i, point(i % 100, i / 100));
+                        }
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            });
+            thread.start();
+            list.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : list)
+            thread.join();
+        if (error.get() != null)
+            throw new RuntimeException(error.get());
+        RTree<Integer, Geometry> tree = c.tree();
+        assertEquals(threads * perThread / 2, tree.size());
+        Set<Integer> values = new HashSet<Integer>();
+        for (Entry<Integer, Geometry> entry : tree.entries().toBlocking().toIterable())
+            values.add(entry.value());
+        for (int i = 0; i < threads * perThread; i++)
+            assertEquals(i % 2 == 1, values.contains(i));
+        assertTrue(c.batches() <= threads * perThread * 3 / 2);
+    }
+
+    @Test
+    public void testFailingMutationDoesNotAffectOthers() {
+        ConcurrentRTree<Integer, Geometry> c = ConcurrentRTree
+                .create(RTree.maxChildren(4).<Integer, Geometry> create());
+        c.add(1, point(1, 1));
+        try {
+            c.add(2, new BadGeometry());
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(1, c.tree().size());
+        assertEquals(2, c.add(3, point(3, 3)).size());
+    }
+
+    @Test
+    public void testEntriesAreCreatedByTheTreeFactory() {
+        final AtomicInteger created = new AtomicInteger();
+        final Factory<Integer, Geometry> factory = Factories.defaultFactory();
+        ConcurrentRTree<Integer, Geometry> c = ConcurrentRTree
+                .create(RTree.maxChildren(4).factory(new Factory<Integer, Geometry>() {
+
+                    @Override
+                    public Leaf<Integer, Geometry> createLeaf(
+                            List<Entry<Integer, Geometry>> entries,
+                            Context<Integer, Geometry> context) {
+                        return factory.createLeaf(entries, context);
+                    }
+
+                    @Override
+                    public NonLeaf<Integer, Geometry> createNonLeaf(
+                            List<? extends Node<Integer, Geometry>> children,
+                            Context<Integer, Geometry> context) {
+                        return factory.createNonLeaf(children, context);
+                    }
+
+                    @Override
+                    public Entry<Integer, Geometry> createEntry(Integer value,
+                            Geometry geometry) {
+                        created.incrementAndGet();
+                        return factory.createEntry(value, geometry);
+                    }
+                }).<Integer, Geometry> create());
+        c.add(1, point(1, 1));
+        c.delete(1, point(1, 1));
+        assertEquals(2, created.get());
+        assertEquals(0, c.tree().size());
+    }
+
+    private static final class BadGeometry implements Geometry {
+
+        @Override
+        public double distance(Rectangle r) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Rectangle mbr() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean intersects(Rectangle r) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,345 @@
+package com.github.davidmoten.rtree.durable;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.circle;
+import static com.github.davidmoten.rtree.geometry.Geometries.line;
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.InternalStructure;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.Serializer;
+import com.github.davidmoten.rtree.Serializers;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+public class DurableRTreeTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(LogRecords.class);
+    }
+
+    @Test
+    public void testRecoversFromLogWithoutSnapshot() throws IOException {
+        File dir = directory("target/durable1");
+        DurableRTree<String, Geometry> d = open(dir, 0);
+        d.add("a", point(1, 2));
+        d.add("b", rectangle(1, 2, 3, 4));
+        d.add(null, circle(5, 6, 1));
+        d.add("d", line(1, 1, 2, 3));
+        d.add("b", rectangle(1, 2, 3, 4));
+        d.delete("a", point(1, 2));
+        d.delete(Entries.<String, Geometry> entry("b", rectangle(1, 2, 3, 4)), true);
+        RTree<String, Geometry> expected = d.tree();
+        assertEquals(2, expected.size());
+        d.close();
+        DurableRTree<String, Geometry> recovered = open(dir, 0);
+        assertEquals(toSet(expected.entries()), toSet(recovered.tree().entries()));
+        recovered.close();
+    }
+
+    @Test
+    public void testCheckpointWritesSnapshotAndRemovesOldSegments() throws IOException {
+        File dir = directory("target/durable2");
+        DurableRTree<String, Geometry> d = open(dir, 0);
+        for (int i = 0; i < 100; i++)
+            d.add("a" + i, point(i, i));
+        d.checkpoint();
+        for (int i = 0; i < 50; i++)
+            d.delete("a" + i, point(i, i));
+        d.add("b", point(1, 1));
+        RTree<String, Geometry> expected = d.tree();
+        d.close();
+        Set<String> names = new HashSet<String>();
+        for (File f : dir.listFiles())
+            names.add(f.getName());
+        assertEquals(new HashSet<String>(Arrays.asList("snapshot.1", "log.1")), names);
+        DurableRTree<String, Geometry> recovered = open(dir, 0);
+        assertEquals(51, recovered.tree().size());
+        assertEquals(toSet(expected.entries()), toSet(recovered.tree().entries()));
+        // the recovered tree keeps logging into the latest segment
+        recovered.add("c", point(2, 2));
+        recovered.close();
+        assertEquals(52, open(dir, 0).tree().size());
+    }
+
+    @Test
+    public void testTornTailIsDroppedOnRecovery() throws IOException {
+        File dir = directory("target/durable3");
+        DurableRTree<String, Geometry> d = open(dir, 0);
+        d.add("a", point(1, 2));
+        d.add("b", point(3, 4));
+        d.close();
+        File log = new File(dir, "log.0");
+        long length = log.length();
+        // simulate a crash part way through writing a record
+        RandomAccessFile f = new RandomAccessFile(log, "rw");
+        f.setLength(length - 3);
+        f.close();
+        DurableRTree<String, Geometry> recovered = open(dir, 0);
+        assertEquals(1, recovered.tree().size());
+        recovered.add("c", point(5, 6));
+        recovered.close();
+        RTree<String, Geometry> tree = open(dir, 0).tree();
+        assertEquals(2, tree.size());
+        assertEquals(toSet(Observable.just(Entries.<String, Geometry> entry("a", point(1, 2)),
+                Entries.<String, Geometry> entry("c", point(5, 6)))), toSet(tree.entries()));
+    }
+
+    @Test
+    public void testAutomaticCheckpoint() throws IOException {
+        File dir = directory("target/durable4");
+        DurableRTree<String, Geometry> d = open(dir, 10);
+        for (int i = 0; i < 25; i++)
+            d.add("a" + i, point(i, i));
+        d.close();
+        // checkpoints ran after the 10th and 20th additions
+        assertTrue(new File(dir, "snapshot.2").exists());
+        assertFalse(new File(dir, "log.0").exists());
+        assertEquals(25, open(dir, 0).tree().size());
+    }
+
+    @Test
+    public void testConcurrentWritersShareCommits() throws Exception {
+        File dir = directory("target/durable5");
+        final DurableRTree<String, Geometry> d = open(dir, 0);
+        final int threads = 8;
+        final int perThread = 200;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> list = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int n = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < perThread; i++)
+                            d.add(n + ":" + i, point(n, i));
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            });
+            thread.start();
+            list.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : list)
+            thread.join();
+        assertEquals(null, error.get());
+        assertTrue(d.commits() <= threads * perThread);
+        d.close();
+        assertEquals(threads * perThread, open(dir, 0).tree().size());
+    }
+
+    @Test
+    public void testUnsupportedGeometryLeavesTreeUnchanged() throws IOException {
+        File dir = directory("target/durable6");
+        DurableRTree<String, Geometry> d = open(dir, 0);
+        d.add("a", point(1, 2));
+        Geometry g = new Geometry() {
+
+            @Override
+            public double distance(Rectangle r) {
+                return 0;
+            }
+
+            @Override
+            public Rectangle mbr() {
+                return rectangle(0, 0, 1, 1);
+            }
+
+            @Override
+            public boolean intersects(Rectangle r) {
+                return true;
+            }
+        };
+        try {
+            d.add("b", g);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(1, d.tree().size());
+        d.add("c", point(3, 4));
+        d.close();
+        assertEquals(2, open(dir, 0).tree().size());
+    }
+
+    @Test
+    public void testCheckpointsWhileWritersAreRunningDoNotReplayRecordsTwice()
+            throws Exception {
+        File dir = directory("target/durable7");
+        final DurableRTree<String, Geometry> d = open(dir, 0);
+        final int threads = 4;
+        final int perThread = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> list = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int n = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < perThread; i++)
+                            d.add(n + ":" + i, point(n, i));
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            });
+            thread.start();
+            list.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : list) {
+            while (thread.isAlive())
+                d.checkpoint();
+            thread.join();
+        }
+        assertEquals(null, error.get());
+        d.close();
+        DurableRTree<String, Geometry> recovered = open(dir, 0);
+        assertEquals(threads * perThread, recovered.tree().size());
+        recovered.close();
+    }
+
+    @Test
+    public void testClosedTreeRefusesMutationsAndCheckpoints() throws IOException {
+        File dir = directory("target/durable8");
+        DurableRTree<String, Geometry> d = open(dir, 0);
+        d.add("a", point(1, 2));
+        d.close();
+        // closing twice has no effect
+        d.close();
+        try {
+            d.add("b", point(3, 4));
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            d.checkpoint();
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(1, d.tree().size());
+        assertEquals(new HashSet<String>(Arrays.asList("log.0")),
+                new HashSet<String>(Arrays.asList(dir.list())));
+    }
+
+    @Test
+    public void testBackgroundCheckpointFailureIsReported() throws IOException {
+        File dir = directory("target/durable9");
+        final IOException failure = new IOException("boom");
+        Serializer<String, Geometry> snapshots = new Serializer<String, Geometry>() {
+
+            @Override
+            public void write(RTree<String, Geometry> tree, OutputStream os) throws IOException {
+                throw failure;
+            }
+
+            @Override
+            public RTree<String, Geometry> read(InputStream is, long sizeBytes,
+                    InternalStructure structure) throws IOException {
+                throw failure;
+            }
+        };
+        DurableRTree<String, Geometry> d = open(dir, 1, snapshots);
+        // the addition is logged even though the checkpoint after it fails
+        d.add("a", point(1, 2));
+        try {
+            d.checkpoint();
+            fail();
+        } catch (IOException e) {
+            assertEquals(failure, e.getCause());
+        }
+        d.add("b", point(3, 4));
+        try {
+            d.close();
+            fail();
+        } catch (IOException e) {
+            assertEquals(failure, e.getCause());
+        }
+        assertEquals(2, open(dir, 0).tree().size());
+    }
+
+    private static DurableRTree<String, Geometry> open(File dir, long checkpointAfter)
+            throws IOException {
+        return open(dir, checkpointAfter, Serializers.flatBuffers().<Geometry> utf8());
+    }
+
+    private static DurableRTree<String, Geometry> open(File dir, long checkpointAfter,
+            Serializer<String, Geometry> snapshots) throws IOException {
+        return DurableRTree.directory(dir) //
+                .snapshots(snapshots) //
+                .values(SERIALIZER, DESERIALIZER) //
+                .initial(RTree.maxChildren(4).<String, Geometry> create()) //
+                .checkpointAfter(checkpointAfter) //
+                .scheduler(Schedulers.immediate()) //
+                .open();
+    }
+
+    private static File directory(String name) {
+        File dir = new File(name);
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        return dir;
+    }
+
+    private static final Func1<String, byte[]> SERIALIZER = new Func1<String, byte[]>() {
+        @Override
+        public byte[] call(String s) {
+            return s.getBytes(UTF_8);
+        }
+    };
+
+    private static final Func1<byte[], String> DESERIALIZER = new Func1<byte[], String>() {
+        @Override
+        public String call(byte[] bytes) {
+            return new String(bytes, UTF_8);
+        }
+    };
+
+    private static <T, S extends Geometry> Set<Entry<T, S>> toSet(
+            Observable<Entry<T, S>> entries) {
+        return new HashSet<Entry<T, S>>(entries.toList().toBlocking().single());
+    }
+
+}
@@ -1,6 +1,9 @@
 package com.github.davidmoten.rtree.fbs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -8,16 +11,30 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
+import com.github.davidmoten.rtree.Entries;
 import com.github.davidmoten.rtree.Entry;
 import com.github.davidmoten.rtree.GreekEarthquakes;
 import com.github.davidmoten.rtree.InternalStructure;
 import com.github.davidmoten.rtree.RTree;
 import com.github.davidmoten.rtree.Serializer;
+import com.github.davidmoten.rtree.SerializerHelper;
+import com.github.davidmoten.rtree.Serializers;
 import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
 import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
 
 import rx.Observable;
 import rx.functions.Func1;
@@ -26,6 +43,8 @@ public class SerializerFlatBuffersTest {
 
     private static final byte[] EMPTY = new byte[] {};
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     @Test
     public void testSerializeRoundTripToFlatBuffersSingleArray() throws Exception {
         roundTrip(InternalStructure.SINGLE_ARRAY, false);
@@ -104,6 +123,256 @@ public class SerializerFlatBuffersTest {
         System.out.println(tr.size());
     }
     
+    @Test
+    public void testReadMemoryMappedFileSingleArray() throws Exception {
+        readMemoryMapped(InternalStructure.SINGLE_ARRAY);
+    }
+
+    @Test
+    public void testReadMemoryMappedFileDefaultStructure() throws Exception {
+        readMemoryMapped(InternalStructure.DEFAULT);
+    }
+
+    private static void readMemoryMapped(InternalStructure structure) throws Exception {
+        List<Entry<String, Point>> entries = new ArrayList<Entry<String, Point>>();
+        for (int i = 0; i < 1000; i++)
+            entries.add(Entries.entry("item" + i, Geometries.point(i % 37, i / 37)));
+        RTree<String, Point> tree = RTree.star().maxChildren(10).create(entries);
+        Serializer<String, Point> serializer = Serializers.flatBuffers().utf8();
+        File file = new File("target/mapped");
+        FileOutputStream os = new FileOutputStream(file);
+        serializer.write(tree, os);
+        os.close();
+        RTree<String, Point> tr = SerializerHelper.read(serializer, file, structure);
+        assertEquals(tree.size(), tr.size());
+        Rectangle r = Geometries.rectangle(3, 4, 10, 12);
+        assertEquals(new HashSet<Entry<String, Point>>(tree.search(r).toList().toBlocking().single()),
+                new HashSet<Entry<String, Point>>(tr.search(r).toList().toBlocking().single()));
+        assertEquals(new HashSet<Entry<String, Point>>(entries),
+                new HashSet<Entry<String, Point>>(tr.entries().toList().toBlocking().single()));
+    }
+
+    @Test
+    public void testWriteToFileReadsSameAsWriteToStream() throws Exception {
+        List<Entry<String, Point>> entries = new ArrayList<Entry<String, Point>>();
+        for (int i = 0; i < 5000; i++)
+            entries.add(Entries.entry("item" + i, Geometries.point(i % 71, i / 71)));
+        checkWriteToFile(RTree.star().maxChildren(4).<String, Point> create().add(entries));
+        checkWriteToFile(RTree.maxChildren(32).create(entries));
+    }
+
+    @Test
+    public void testWriteToFileWhenRootIsLeaf() throws Exception {
+        checkWriteToFile(RTree.<String, Point> create().add("a", Geometries.point(1, 2))
+                .add("b", Geometries.point(3, 4)));
+    }
+
+    @Test
+    public void testWriteToFileOfEmptyTree() throws Exception {
+        checkWriteToFile(RTree.<String, Point> create());
+    }
+
+    @Test
+    public void testWriteToFileReplacesLongerFile() throws Exception {
+        File file = new File("target/streamed");
+        Serializer<String, Point> serializer = Serializers.flatBuffers().utf8();
+        List<Entry<String, Point>> entries = new ArrayList<Entry<String, Point>>();
+        for (int i = 0; i < 1000; i++)
+            entries.add(Entries.entry("item" + i, Geometries.point(i, i)));
+        SerializerHelper.write(serializer, RTree.create(entries), file);
+        long length = file.length();
+        RTree<String, Point> tree = RTree.<String, Point> create().add("a", Geometries.point(1, 2));
+        SerializerHelper.write(serializer, tree, file);
+        assertTrue(file.length() < length);
+        assertEquals(1,
+                SerializerHelper.read(serializer, file, InternalStructure.SINGLE_ARRAY).size());
+    }
+
+    private static void checkWriteToFile(RTree<String, Point> tree) throws Exception {
+        Serializer<String, Point> serializer = Serializers.flatBuffers().utf8();
+        File file = new File("target/streamed");
+        SerializerHelper.write(serializer, tree, file);
+        for (InternalStructure structure : InternalStructure.values()) {
+            RTree<String, Point> mapped = SerializerHelper.read(serializer, file, structure);
+            InputStream is = new FileInputStream(file);
+            RTree<String, Point> streamed = serializer.read(is, file.length(), structure);
+            is.close();
+            for (RTree<String, Point> tr : Arrays.asList(mapped, streamed)) {
+                assertEquals(tree.size(), tr.size());
+                assertEquals(tree.context().maxChildren(), tr.context().maxChildren());
+                assertEquals(tree.context().minChildren(), tr.context().minChildren());
+                assertEquals(tree.root().isPresent(), tr.root().isPresent());
+                if (tree.root().isPresent()) {
+                    assertEquals(tree.root().get().geometry(), tr.root().get().geometry());
+                    assertEquals(tree.calculateDepth(), tr.calculateDepth());
+                }
+                assertEquals(toSet(tree.entries()), toSet(tr.entries()));
+                Rectangle r = Geometries.rectangle(3, 4, 20, 30);
+                assertEquals(toSet(tree.search(r)), toSet(tr.search(r)));
+            }
+        }
+    }
+
+    @Test
+    public void testSearchDeserializesValuesOnDemand() throws Exception {
+        final AtomicInteger deserialized = new AtomicInteger();
+        Func1<byte[], String> deserializer = new Func1<byte[], String>() {
+            @Override
+            public String call(byte[] bytes) {
+                deserialized.incrementAndGet();
+                return new String(bytes, UTF_8);
+            }
+        };
+        Serializer<String, Point> serializer = Serializers.flatBuffers()
+                .serializer(new Func1<String, byte[]>() {
+                    @Override
+                    public byte[] call(String s) {
+                        return s.getBytes(UTF_8);
+                    }
+                }).deserializer(deserializer).create();
+        List<Entry<String, Point>> entries = new ArrayList<Entry<String, Point>>();
+        for (int i = 0; i < 1000; i++)
+            entries.add(Entries.entry("item" + i, Geometries.point(i % 31, i / 31)));
+        File file = new File("target/lazy");
+        SerializerHelper.write(serializer, RTree.maxChildren(4).create(entries), file);
+        RTree<String, Point> tree =
+                SerializerHelper.read(serializer, file, InternalStructure.SINGLE_ARRAY);
+        Rectangle r = Geometries.rectangle(2, 3, 10, 12);
+        List<Entry<String, Point>> found = tree.search(r).toList().toBlocking().single();
+        assertEquals(9 * 10, found.size());
+        assertEquals(0, deserialized.get());
+
+        EntryFlatBuffers<String, Point> entry = (EntryFlatBuffers<String, Point>) found.get(0);
+        ByteBuffer bytes = entry.valueBytes();
+        byte[] array = new byte[bytes.remaining()];
+        bytes.get(array);
+        assertEquals(0, deserialized.get());
+        String value = entry.value();
+        assertEquals(new String(array, UTF_8), value);
+        assertEquals(1, deserialized.get());
+        assertTrue(value == entry.value());
+        assertEquals(1, deserialized.get());
+        // the raw accessor is unaffected by earlier reads
+        assertEquals(array.length, entry.valueBytes().remaining());
+
+        Set<Entry<String, Point>> expected = new HashSet<Entry<String, Point>>();
+        for (Entry<String, Point> e : entries)
+            if (e.geometry().intersects(r))
+                expected.add(e);
+        assertEquals(expected, new HashSet<Entry<String, Point>>(found));
+        assertEquals(tree.size() - 1, tree.delete(entries.get(0)).size());
+    }
+
+    @Test
+    public void testLazyEntryEqualityAndAbsentValue() throws Exception {
+        Serializer<String, Point> serializer = Serializers.flatBuffers().utf8();
+        RTree<String, Point> tree = RTree.<String, Point> create().add("a",
+                Geometries.point(1, 2));
+        File file = new File("target/lazy");
+        SerializerHelper.write(serializer, tree, file);
+        Entry<String, Point> entry =
+                SerializerHelper.read(serializer, file, InternalStructure.SINGLE_ARRAY)
+                        .entries().toBlocking().single();
+        assertTrue(entry instanceof EntryFlatBuffers);
+        assertEquals(Entries.entry("a", Geometries.point(1, 2)), entry);
+        assertEquals(entry, Entries.entry("a", Geometries.point(1, 2)));
+        assertEquals(Entries.entry("a", Geometries.point(1, 2)).hashCode(), entry.hashCode());
+        EntryFlatBuffers<String, Point> empty = new EntryFlatBuffers<String, Point>(
+                Geometries.point(1, 2), null, null);
+        assertNull(empty.value());
+        assertNull(empty.valueBytes());
+    }
+
+    @Test
+    public void testLazyEntryEqualsAndHashCodeConsistentWithDefaultEntry() throws Exception {
+        final AtomicInteger deserialized = new AtomicInteger();
+        Serializer<String, Point> serializer = Serializers.flatBuffers()
+                .serializer(new Func1<String, byte[]>() {
+                    @Override
+                    public byte[] call(String s) {
+                        return s.getBytes(UTF_8);
+                    }
+                }).deserializer(new Func1<byte[], String>() {
+                    @Override
+                    public String call(byte[] bytes) {
+                        deserialized.incrementAndGet();
+                        return new String(bytes, UTF_8);
+                    }
+                }).create();
+        List<Entry<String, Point>> entries = new ArrayList<Entry<String, Point>>();
+        for (int i = 0; i < 100; i++)
+            entries.add(Entries.entry("item" + i, Geometries.point(i % 10, i / 10)));
+        // same geometry as the first entry with a different value
+        entries.add(Entries.entry("other", Geometries.point(0, 0)));
+        File file = new File("target/lazy");
+        SerializerHelper.write(serializer, RTree.maxChildren(4).create(entries), file);
+        List<Entry<String, Point>> lazy =
+                SerializerHelper.read(serializer, file, InternalStructure.SINGLE_ARRAY)
+                        .entries().toList().toBlocking().single();
+        // entries with different geometries are unequal without
+        // deserializing
+        assertFalse(lazy.get(0).equals(Entries.entry("x", Geometries.point(-1, -1))));
+        assertEquals(0, deserialized.get());
+        Set<Entry<String, Point>> lazySet = new HashSet<Entry<String, Point>>(lazy);
+        Set<Entry<String, Point>> defaultSet = new HashSet<Entry<String, Point>>(entries);
+        // hashing deserializes each value once
+        assertEquals(entries.size(), lazySet.size());
+        assertEquals(entries.size(), deserialized.get());
+        for (Entry<String, Point> e : lazy) {
+            Entry<String, Point> d = Entries.entry(e.value(), e.geometry());
+            assertEquals(d, e);
+            assertEquals(e, d);
+            assertEquals(d.hashCode(), e.hashCode());
+        }
+        assertEquals(defaultSet, lazySet);
+        assertEquals(lazySet, defaultSet);
+    }
+
+    @Test
+    public void testRectangleSearchOfAllGeometryTypesMatchesDefaultTree() throws Exception {
+        Random random = new Random(123);
+        List<Entry<String, Geometry>> entries = new ArrayList<Entry<String, Geometry>>();
+        for (int i = 0; i < 2000; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            final Geometry g;
+            if (i % 4 == 0)
+                g = Geometries.point(x, y);
+            else if (i % 4 == 1)
+                g = Geometries.rectangle(x, y, x + random.nextFloat() * 3,
+                        y + random.nextFloat() * 3);
+            else if (i % 4 == 2)
+                g = Geometries.circle(x, y, random.nextFloat() * 3);
+            else
+                // lines running in every direction
+                g = Geometries.line(x, y, x + random.nextFloat() * 6 - 3,
+                        y + random.nextFloat() * 6 - 3);
+            entries.add(Entries.entry("item" + i, g));
+        }
+        RTree<String, Geometry> tree = RTree.star().maxChildren(6).create(entries);
+        Serializer<String, Geometry> serializer = Serializers.flatBuffers().utf8();
+        File file = new File("target/geometries");
+        SerializerHelper.write(serializer, tree, file);
+        RTree<String, Geometry> tr =
+                SerializerHelper.read(serializer, file, InternalStructure.SINGLE_ARRAY);
+        for (int i = 0; i < 50; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            Rectangle r = Geometries.rectangle(x, y, x + random.nextFloat() * 20,
+                    y + random.nextFloat() * 20);
+            Set<Entry<String, Geometry>> expected = new HashSet<Entry<String, Geometry>>(
+                    tree.search(r).toList().toBlocking().single());
+            assertEquals(expected, new HashSet<Entry<String, Geometry>>(
+                    tr.search(r).toList().toBlocking().single()));
+        }
+        assertEquals(3, (int) tr.search(Geometries.rectangle(0, 0, 100, 100)).take(3).count()
+                .toBlocking().single());
+    }
+
+    private static Set<Entry<String, Point>> toSet(Observable<Entry<String, Point>> entries) {
+        return new HashSet<Entry<String, Point>>(entries.toList().toBlocking().single());
+    }
+
     @Test(expected=RuntimeException.class)
     public void testInputStreamNotAsLongAsExpected() throws IOException {
         SerializerFlatBuffers.readFully(new ByteArrayInputStream(new byte[10]), 12);
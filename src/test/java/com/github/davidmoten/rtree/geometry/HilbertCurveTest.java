@@ -0,0 +1,70 @@
+package com.github.davidmoten.rtree.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+
+public class HilbertCurveTest {
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(HilbertCurve.class);
+    }
+
+    @Test
+    public void testIndexOfFirstOrderCurve() {
+        assertEquals(0, HilbertCurve.index(0, 0, 1));
+        assertEquals(1, HilbertCurve.index(0, 1, 1));
+        assertEquals(2, HilbertCurve.index(1, 1, 1));
+        assertEquals(3, HilbertCurve.index(1, 0, 1));
+    }
+
+    @Test
+    public void testIndexIsBijectionAndConsecutiveCellsAreAdjacent() {
+        int bits = 4;
+        int n = 1 << bits;
+        long[] xs = new long[n * n];
+        long[] ys = new long[n * n];
+        Set<Long> indexes = new HashSet<Long>();
+        for (int x = 0; x < n; x++)
+            for (int y = 0; y < n; y++) {
+                long d = HilbertCurve.index(x, y, bits);
+                assertTrue(indexes.add(d));
+                xs[(int) d] = x;
+                ys[(int) d] = y;
+            }
+        for (int d = 1; d < n * n; d++)
+            assertEquals(1, Math.abs(xs[d] - xs[d - 1]) + Math.abs(ys[d] - ys[d - 1]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexOutOfRangeThrows() {
+        HilbertCurve.index(2, 0, 1);
+    }
+
+    @Test
+    public void testKeyOfBoundsCornersAndDegenerateBounds() {
+        Rectangle bounds = Geometries.rectangle(0, 0, 100, 100);
+        assertEquals(0, HilbertCurve.key(bounds, Geometries.point(0, 0)));
+        long max = (1L << (2 * HilbertCurve.DEFAULT_BITS)) - 1;
+        assertEquals(max, HilbertCurve.key(bounds, Geometries.point(100, 0)));
+        assertEquals(0, HilbertCurve.key(Geometries.rectangle(5, 5, 5, 5),
+                Geometries.point(5, 5)));
+    }
+
+    @Test
+    public void testComparator() {
+        Rectangle bounds = Geometries.rectangle(0, 0, 100, 100);
+        assertTrue(HilbertCurve.comparator(bounds).compare(Geometries.point(0, 0),
+                Geometries.point(100, 0)) < 0);
+        assertEquals(0, HilbertCurve.comparator(bounds).compare(Geometries.point(3, 4),
+                Geometries.point(3, 4)));
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.github.davidmoten.rtree.indexed;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.functions.Func1;
+
+public class IndexedRTreeTest {
+
+    private static final Func1<String, String> FIRST_WORD = new Func1<String, String>() {
+        @Override
+        public String call(String value) {
+            return value.split(" ")[0];
+        }
+    };
+
+    @Test
+    public void testIndexesInitialTree() {
+        RTree<String, Geometry> tree = RTree.<String, Geometry> create().add("a 1", point(1, 1))
+                .add("b 1", point(2, 2));
+        IndexedRTree<String, String, Geometry> ix = IndexedRTree.create(tree, FIRST_WORD);
+        assertEquals(2, ix.size());
+        assertEquals(Entries.<String, Geometry> entry("b 1", point(2, 2)), ix.get("b").get());
+        assertFalse(ix.get("c").isPresent());
+        assertEquals(1, ix.delete("a").size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateKeysInInitialTreeThrows() {
+        RTree<String, Geometry> tree = RTree.<String, Geometry> create().add("a 1", point(1, 1))
+                .add("a 2", point(2, 2));
+        IndexedRTree.create(tree, FIRST_WORD);
+    }
+
+    @Test
+    public void testAddReplacesEntryWithSameKey() {
+        IndexedRTree<String, String, Geometry> ix = IndexedRTree
+                .create(RTree.<String, Geometry> create(), FIRST_WORD);
+        ix.add("a 1", point(1, 1));
+        RTree<String, Geometry> tree = ix.add("a 2", point(2, 2));
+        assertEquals(1, tree.size());
+        assertEquals(Entries.<String, Geometry> entry("a 2", point(2, 2)),
+                tree.entries().toBlocking().single());
+    }
+
+    @Test
+    public void testDeleteAndUpdateMissingKeyDoNothing() {
+        IndexedRTree<String, String, Geometry> ix = IndexedRTree
+                .create(RTree.<String, Geometry> create(), FIRST_WORD);
+        RTree<String, Geometry> tree = ix.add("a 1", point(1, 1));
+        assertEquals(tree, ix.delete("b"));
+        assertEquals(tree, ix.update("b", point(2, 2)));
+    }
+
+    @Test
+    public void testMovingObjects() {
+        int n = 2000;
+        Random random = new Random(1);
+        IndexedRTree<Integer, Integer, Rectangle> ix = IndexedRTree.create(
+                RTree.star().maxChildren(6).<Integer, Rectangle> create(),
+                new Func1<Integer, Integer>() {
+                    @Override
+                    public Integer call(Integer value) {
+                        return value;
+                    }
+                });
+        float[] x = new float[n];
+        float[] y = new float[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = random.nextFloat() * 100;
+            y[i] = random.nextFloat() * 100;
+            ix.add(i, rectangle(x[i], y[i], x[i] + 5, y[i] + 5));
+        }
+        for (int j = 0; j < 10000; j++) {
+            int i = random.nextInt(n);
+            x[i] += random.nextFloat() - 0.5f;
+            y[i] += random.nextFloat() - 0.5f;
+            ix.update(i, rectangle(x[i], y[i], x[i] + 5, y[i] + 5));
+        }
+        for (int i = 0; i < n; i += 2)
+            ix.delete(i);
+        Set<Entry<Integer, Rectangle>> expected = new HashSet<Entry<Integer, Rectangle>>();
+        for (int i = 1; i < n; i += 2)
+            expected.add(Entries.entry(i, rectangle(x[i], y[i], x[i] + 5, y[i] + 5)));
+        assertEquals(n / 2, ix.size());
+        assertEquals(n / 2, ix.tree().size());
+        assertEquals(expected, new HashSet<Entry<Integer, Rectangle>>(
+                ix.tree().entries().toList().toBlocking().single()));
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.github.davidmoten.rtree.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Observable;
+
+public class BatchInsertHelperTest {
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(BatchInsertHelper.class);
+    }
+
+    @Test
+    public void testBatchesIntoEmptyTree() {
+        List<Entry<Integer, Point>> entries = points(0, 1000, 100);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).<Integer, Point> create().add(entries);
+        check(tree, entries);
+    }
+
+    @Test
+    public void testRepeatedBatchesWithQuadraticAndStarSplitters() {
+        for (boolean star : new boolean[] { false, true }) {
+            RTree.Builder builder = star ? RTree.star().maxChildren(6) : RTree.maxChildren(6);
+            List<Entry<Integer, Point>> all = new ArrayList<Entry<Integer, Point>>();
+            RTree<Integer, Point> tree = builder.create();
+            for (int batch = 0; batch < 20; batch++) {
+                // batches of varying size, the first one empty
+                List<Entry<Integer, Point>> entries = points(batch * 1000, batch * 37 % 300,
+                        100);
+                all.addAll(entries);
+                tree = tree.add(entries);
+                check(tree, all);
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBatchIntoSmallRegionOfExistingTree() {
+        List<Entry<Integer, Point>> entries = points(0, 2000, 100);
+        RTree<Integer, Point> tree = RTree.star().maxChildren(8).create(entries);
+        // a burst of entries that all land in the same leaf
+        List<Entry<Integer, Point>> burst = points(10000, 5000, 1);
+        tree = tree.add(burst);
+        List<Entry<Integer, Point>> all = new ArrayList<Entry<Integer, Point>>(entries);
+        all.addAll(burst);
+        check(tree, all);
+    }
+
+    @Test
+    public void testLargeClusteredBatchKeepsNodesAtLeastMinChildren() {
+        for (int maxChildren = 4; maxChildren <= 12; maxChildren++) {
+            for (boolean star : new boolean[] { false, true }) {
+                RTree.Builder builder = star ? RTree.star().maxChildren(maxChildren)
+                        : RTree.maxChildren(maxChildren);
+                RTree<Integer, Point> tree = builder.create();
+                // built one entry at a time so that every node starts with
+                // at least minChildren children
+                List<Entry<Integer, Point>> all = points(0, 1000, 100);
+                for (Entry<Integer, Point> entry : all)
+                    tree = tree.add(entry);
+                for (int batch = 1; batch <= 3; batch++) {
+                    List<Entry<Integer, Point>> burst = points(batch * 10000,
+                            1000 * batch + maxChildren, 1);
+                    all.addAll(burst);
+                    tree = tree.add(burst);
+                    check(tree, all);
+                    NonLeaf<Integer, Point> root = (NonLeaf<Integer, Point>) tree.root().get();
+                    for (Node<Integer, Point> child : root.children())
+                        checkMinChildren(child, tree.context().minChildren());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUntouchedSubtreesAreShared() {
+        List<Entry<Integer, Point>> entries = points(0, 5000, 100);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).create(entries);
+        RTree<Integer, Point> tree2 = tree
+                .add(Collections.singletonList(Entries.entry(-1, Geometries.point(0.5, 0.5))));
+        tree2 = tree2.add(points(-100, 10, 1));
+        NonLeaf<Integer, Point> root = (NonLeaf<Integer, Point>) tree.root().get();
+        NonLeaf<Integer, Point> root2 = (NonLeaf<Integer, Point>) tree2.root().get();
+        int shared = 0;
+        for (Node<Integer, Point> child : root.children())
+            for (Node<Integer, Point> child2 : root2.children())
+                if (child == child2)
+                    shared++;
+        assertTrue(shared > 0);
+        assertSame(tree.context(), tree2.context());
+    }
+
+    @Test
+    public void testEmptyBatchReturnsSameTree() {
+        RTree<Integer, Point> tree = RTree.create(points(0, 10, 100));
+        assertSame(tree, tree.add(Collections.<Entry<Integer, Point>> emptyList()));
+    }
+
+    private static void check(RTree<Integer, Point> tree, List<Entry<Integer, Point>> entries) {
+        assertEquals(entries.size(), tree.size());
+        assertEquals(new HashSet<Entry<Integer, Point>>(entries), toSet(tree.entries()));
+        if (tree.root().isPresent())
+            checkNode(tree.root().get(), tree.context().maxChildren(), 1, tree.calculateDepth());
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            Rectangle r = Geometries.rectangle(x, y, x + 10, y + 10);
+            Set<Entry<Integer, Point>> expected = new HashSet<Entry<Integer, Point>>();
+            for (Entry<Integer, Point> entry : entries)
+                if (entry.geometry().intersects(r))
+                    expected.add(entry);
+            assertEquals(expected, toSet(tree.search(r)));
+        }
+    }
+
+    private static void checkNode(Node<Integer, Point> node, int maxChildren, int depth,
+            int expectedDepth) {
+        assertTrue(node.count() <= maxChildren);
+        assertTrue(node.count() > 0);
+        if (node instanceof Leaf) {
+            assertEquals(expectedDepth, depth);
+            assertEquals(Util.mbr(((Leaf<Integer, Point>) node).entries()), node.geometry().mbr());
+        } else {
+            NonLeaf<Integer, Point> nonLeaf = (NonLeaf<Integer, Point>) node;
+            assertEquals(Util.mbr(nonLeaf.children()), node.geometry().mbr());
+            for (int i = 0; i < nonLeaf.count(); i++)
+                checkNode(nonLeaf.child(i), maxChildren, depth + 1, expectedDepth);
+        }
+    }
+
+    private static void checkMinChildren(Node<Integer, Point> node, int minChildren) {
+        assertTrue(node.count() >= minChildren);
+        if (node instanceof NonLeaf)
+            for (Node<Integer, Point> child : ((NonLeaf<Integer, Point>) node).children())
+                checkMinChildren(child, minChildren);
+    }
+
+    private static Set<Entry<Integer, Point>> toSet(Observable<Entry<Integer, Point>> entries) {
+        return new HashSet<Entry<Integer, Point>>(entries.toList().toBlocking().single());
+    }
+
+    private static List<Entry<Integer, Point>> points(int start, int n, float extent) {
+        Random random = new Random(start);
+        List<Entry<Integer, Point>> list = new ArrayList<Entry<Integer, Point>>(n);
+        for (int i = 0; i < n; i++)
+            list.add(Entries.entry(start + i,
+                    Geometries.point(random.nextFloat() * extent, random.nextFloat() * extent)));
+        return list;
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.github.davidmoten.rtree.internal;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.circle;
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Factories;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Observable;
+
+public class FactoryPackedTest {
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(PackedHelper.class);
+    }
+
+    @Test
+    public void testPackedFactoryCreatesPackedNodes() {
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(Factories.packedFactory())
+                .create(points(100));
+        assertTrue(tree.root().get() instanceof NonLeafPacked);
+        assertTrue(((NonLeaf<Integer, Point>) tree.root().get()).child(0) instanceof NonLeaf);
+    }
+
+    @Test
+    public void testSearchPointsMatchesDefaultFactory() {
+        List<Entry<Integer, Point>> entries = points(3000);
+        RTree<Integer, Point> expected = RTree.maxChildren(4).create(entries);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(Factories.packedFactory())
+                .create(entries);
+        checkSearches(expected, tree);
+    }
+
+    @Test
+    public void testSearchRectanglesAddedOneAtATimeMatchesDefaultFactory() {
+        Random random = new Random(2);
+        RTree<Integer, Rectangle> expected = RTree.star().maxChildren(4).create();
+        RTree<Integer, Rectangle> tree = RTree.star().maxChildren(4)
+                .factory(Factories.packedFactory()).create();
+        for (int i = 0; i < 1000; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            Rectangle r = rectangle(x, y, x + random.nextFloat() * 5, y + random.nextFloat() * 5);
+            expected = expected.add(i, r);
+            tree = tree.add(i, r);
+        }
+        checkSearches(expected, tree);
+    }
+
+    @Test
+    public void testSearchCirclesUsesExactIntersection() {
+        RTree<Integer, Circle> tree = RTree.maxChildren(4).factory(Factories.packedFactory())
+                .<Integer, Circle> create().add(1, circle(0, 0, 1)).add(2, circle(10, 10, 1));
+        // overlaps the mbr of the first circle but not the circle itself
+        assertTrue(tree.search(rectangle(0.9, 0.9, 1, 1)).isEmpty().toBlocking().single());
+        List<Entry<Integer, Circle>> list = tree.search(rectangle(0, 0, 1, 1)).toList()
+                .toBlocking().single();
+        assertEquals(1, list.size());
+        assertEquals(Entries.entry(1, circle(0, 0, 1)), list.get(0));
+    }
+
+    @Test
+    public void testLeafRecreatesEqualEntries() {
+        List<Entry<Integer, Geometry>> entries = new ArrayList<Entry<Integer, Geometry>>();
+        entries.add(Entries.<Integer, Geometry> entry(1, point(1, 2)));
+        entries.add(Entries.<Integer, Geometry> entry(2, rectangle(1, 2, 3, 4)));
+        RTree<Integer, Geometry> tree = RTree.maxChildren(4).factory(Factories.packedFactory())
+                .<Integer, Geometry> create().add(entries);
+        Leaf<Integer, Geometry> leaf = (Leaf<Integer, Geometry>) tree.root().get();
+        assertEquals(entries, leaf.entries());
+        assertEquals(rectangle(1, 2, 3, 4), leaf.geometry());
+    }
+
+    @Test
+    public void testDelete() {
+        List<Entry<Integer, Point>> entries = points(500);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(Factories.packedFactory())
+                .create(entries);
+        for (int i = 0; i < 250; i++)
+            tree = tree.delete(entries.get(i));
+        assertEquals(250, tree.size());
+        Set<Entry<Integer, Point>> expected = new HashSet<Entry<Integer, Point>>(
+                entries.subList(250, 500));
+        assertEquals(expected, toSet(tree.entries()));
+    }
+
+    @Test
+    public void testNonRectangleCriterion() {
+        List<Entry<Integer, Point>> entries = points(1000);
+        RTree<Integer, Point> expected = RTree.maxChildren(4).create(entries);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(Factories.packedFactory())
+                .create(entries);
+        Point p = point(50, 50);
+        assertEquals(toSet(expected.search(p, 10)), toSet(tree.search(p, 10)));
+    }
+
+    @Test
+    public void testSearchStopsOnUnsubscribe() {
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(Factories.packedFactory())
+                .create(points(1000));
+        assertEquals(3, (int) tree.search(rectangle(0, 0, 100, 100)).take(3).count().toBlocking()
+                .single());
+    }
+
+    private static <T, S extends Geometry> void checkSearches(RTree<T, S> expected,
+            RTree<T, S> tree) {
+        assertEquals(expected.size(), tree.size());
+        Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            Rectangle r = rectangle(x, y, x + random.nextFloat() * 20, y + random.nextFloat() * 20);
+            assertEquals(toSet(expected.search(r)), toSet(tree.search(r)));
+        }
+    }
+
+    private static <T, S extends Geometry> Set<Entry<T, S>> toSet(
+            Observable<Entry<T, S>> entries) {
+        return new HashSet<Entry<T, S>>(entries.toList().toBlocking().single());
+    }
+
+    private static List<Entry<Integer, Point>> points(int n) {
+        Random random = new Random(1);
+        List<Entry<Integer, Point>> list = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < n; i++)
+            list.add(Entries.entry(i, point(random.nextFloat() * 100, random.nextFloat() * 100)));
+        return list;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.github.davidmoten.rtree.internal;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Factories;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Observable;
+
+public class FactoryPointsTest {
+
+    @Test
+    public void testPointFactoryCreatesPointLeaves() {
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(Factories.pointFactory())
+                .create(points(100));
+        assertTrue(tree.root().get() instanceof NonLeafPacked);
+        NonLeaf<Integer, Point> node = (NonLeaf<Integer, Point>) tree.root().get();
+        while (node.child(0) instanceof NonLeaf)
+            node = (NonLeaf<Integer, Point>) node.child(0);
+        assertTrue(node.child(0) instanceof LeafPoints);
+    }
+
+    @Test
+    public void testSearchMatchesDefaultFactory() {
+        List<Entry<Integer, Point>> entries = points(3000);
+        RTree<Integer, Point> expected = RTree.maxChildren(4).create(entries);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(Factories.pointFactory())
+                .create(entries);
+        assertEquals(expected.size(), tree.size());
+        Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            Rectangle r = rectangle(x, y, x + random.nextFloat() * 20, y + random.nextFloat() * 20);
+            assertEquals(toSet(expected.search(r)), toSet(tree.search(r)));
+        }
+    }
+
+    @Test
+    public void testSearchWithinDistanceMatchesDefaultFactory() {
+        List<Entry<Integer, Point>> entries = points(1000);
+        RTree<Integer, Point> expected = RTree.maxChildren(4).create(entries);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(Factories.pointFactory())
+                .create(entries);
+        Point p = point(50, 50);
+        assertEquals(toSet(expected.search(p, 10)), toSet(tree.search(p, 10)));
+    }
+
+    @Test
+    public void testNearestMatchesDefaultFactory() {
+        List<Entry<Integer, Point>> entries = points(2000);
+        RTree<Integer, Point> expected = RTree.star().maxChildren(6).create(entries);
+        RTree<Integer, Point> tree = RTree.star().maxChildren(6)
+                .factory(Factories.pointFactory()).create(entries);
+        Random random = new Random(4);
+        for (int i = 0; i < 20; i++) {
+            Rectangle r = rectangle(random.nextFloat() * 100, random.nextFloat() * 100, 100, 100);
+            List<Entry<Integer, Point>> a = expected.nearest(r, Double.MAX_VALUE, 50).toList()
+                    .toBlocking().single();
+            List<Entry<Integer, Point>> b = tree.nearest(r, Double.MAX_VALUE, 50).toList()
+                    .toBlocking().single();
+            assertEquals(a.size(), b.size());
+            for (int j = 0; j < a.size(); j++)
+                assertEquals(a.get(j).geometry().distance(r), b.get(j).geometry().distance(r),
+                        0.0);
+        }
+    }
+
+    @Test
+    public void testDistanceEqualsPointDistance() {
+        List<Entry<Integer, Point>> entries = points(50);
+        entries.add(Entries.entry(50, point(10, 10)));
+        LeafPoints<Integer> leaf = new LeafPoints<Integer>(entries, null);
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            float x = random.nextInt(100);
+            float y = random.nextInt(100);
+            Rectangle r = rectangle(x, y, x + random.nextInt(20), y + random.nextInt(20));
+            for (int j = 0; j < entries.size(); j++)
+                assertEquals(entries.get(j).geometry().distance(r), leaf.distance(j, r), 0.0);
+        }
+    }
+
+    @Test
+    public void testAddAndDelete() {
+        List<Entry<Integer, Point>> entries = points(500);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(Factories.pointFactory())
+                .create();
+        for (Entry<Integer, Point> entry : entries)
+            tree = tree.add(entry);
+        for (int i = 0; i < 250; i++)
+            tree = tree.delete(entries.get(i));
+        assertEquals(250, tree.size());
+        assertEquals(new HashSet<Entry<Integer, Point>>(entries.subList(250, 500)),
+                toSet(tree.entries()));
+    }
+
+    private static Set<Entry<Integer, Point>> toSet(Observable<Entry<Integer, Point>> entries) {
+        return new HashSet<Entry<Integer, Point>>(entries.toList().toBlocking().single());
+    }
+
+    private static List<Entry<Integer, Point>> points(int n) {
+        Random random = new Random(1);
+        List<Entry<Integer, Point>> list = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < n; i++)
+            list.add(Entries.entry(i, point(random.nextFloat() * 100, random.nextFloat() * 100)));
+        return list;
+    }
+
+}
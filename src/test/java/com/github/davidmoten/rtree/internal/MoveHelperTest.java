@@ -0,0 +1,166 @@
+package com.github.davidmoten.rtree.internal;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.Factories;
+import com.github.davidmoten.rtree.Leaf;
+import com.github.davidmoten.rtree.Node;
+import com.github.davidmoten.rtree.NonLeaf;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class MoveHelperTest {
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(MoveHelper.class);
+    }
+
+    @Test
+    public void testSmallMoveCopiesOnlyThePathToTheLeaf() {
+        RTree<Integer, Point> tree = grid(RTree.maxChildren(4).<Integer, Point> create());
+        // move an entry of the last leaf to the centre of that leaf
+        Node<Integer, Point> node = tree.root().get();
+        while (node instanceof NonLeaf) {
+            NonLeaf<Integer, Point> nonLeaf = (NonLeaf<Integer, Point>) node;
+            node = nonLeaf.child(nonLeaf.count() - 1);
+        }
+        Leaf<Integer, Point> leaf = (Leaf<Integer, Point>) node;
+        Entry<Integer, Point> entry = leaf.entry(0);
+        Rectangle r = leaf.geometry().mbr();
+        Point p = point((r.x1() + r.x2()) / 2, (r.y1() + r.y2()) / 2);
+        RTree<Integer, Point> moved = tree.move(entry, p);
+        assertEquals(tree.size(), moved.size());
+        assertEquals(tree.calculateDepth(), moved.calculateDepth());
+        // every child not on the path to the moved entry is shared and keeps
+        // its position
+        NonLeaf<Integer, Point> a = (NonLeaf<Integer, Point>) tree.root().get();
+        NonLeaf<Integer, Point> b = (NonLeaf<Integer, Point>) moved.root().get();
+        assertEquals(a.count(), b.count());
+        for (int i = 0; i < a.count() - 1; i++)
+            assertSame(a.child(i), b.child(i));
+        assertNotSame(a.child(a.count() - 1), b.child(b.count() - 1));
+        assertFalse(contains(moved, entry));
+        assertTrue(contains(moved, Entries.entry(entry.value(), p)));
+        assertTrue(contains(tree, entry));
+    }
+
+    @Test
+    public void testLargeMoveFallsBackToDeleteAndAdd() {
+        RTree<Integer, Point> tree = grid(RTree.maxChildren(4).<Integer, Point> create());
+        Entry<Integer, Point> entry = Entries.entry(0, point(0, 0));
+        Node<Integer, Point> root = tree.root().get();
+        assertFalse(MoveHelper.move(root, entry, Entries.entry(0, point(9, 9.5f))).isPresent());
+        RTree<Integer, Point> moved = tree.move(entry, point(9, 9.5f));
+        assertEquals(tree.size(), moved.size());
+        assertFalse(contains(moved, entry));
+        assertTrue(contains(moved, Entries.entry(0, point(9, 9.5f))));
+    }
+
+    @Test
+    public void testMoveOfMissingEntryHasNoEffect() {
+        RTree<Integer, Point> tree = grid(RTree.maxChildren(4).<Integer, Point> create());
+        assertSame(tree, tree.move(Entries.entry(-1, point(5, 5)), point(6, 6)));
+        RTree<Integer, Point> empty = RTree.create();
+        assertSame(empty, empty.move(Entries.entry(-1, point(5, 5)), point(6, 6)));
+    }
+
+    @Test
+    public void testMoveInRootLeaf() {
+        RTree<Integer, Point> tree = RTree.<Integer, Point> create().add(1, point(1, 1)).add(2,
+                point(2, 2));
+        RTree<Integer, Point> moved = tree.move(Entries.entry(1, point(1, 1)), point(100, 100));
+        assertNotSame(tree, moved);
+        assertEquals(rectangle(2, 2, 100, 100), moved.mbr().get());
+        assertEquals(2, moved.size());
+    }
+
+    @Test
+    public void testMovesOnlyOneOfDuplicates() {
+        RTree<Integer, Point> tree = RTree.<Integer, Point> create().add(1, point(1, 1)).add(1,
+                point(1, 1));
+        RTree<Integer, Point> moved = tree.move(Entries.entry(1, point(1, 1)), point(2, 2));
+        assertTrue(contains(moved, Entries.entry(1, point(1, 1))));
+        assertTrue(contains(moved, Entries.entry(1, point(2, 2))));
+    }
+
+    @Test
+    public void testRandomMovesWithDefaultAndPackedNodes() {
+        for (boolean packed : new boolean[] { false, true }) {
+            RTree.Builder builder = RTree.star().maxChildren(6);
+            if (packed)
+                builder = builder.factory(Factories.<Integer, Rectangle> packedFactory());
+            RTree<Integer, Rectangle> tree = builder.create();
+            Random random = new Random(1);
+            Map<Integer, Rectangle> positions = new HashMap<Integer, Rectangle>();
+            for (int i = 0; i < 1000; i++) {
+                float x = random.nextFloat() * 100;
+                float y = random.nextFloat() * 100;
+                positions.put(i, rectangle(x, y, x + 1, y + 1));
+                tree = tree.add(i, positions.get(i));
+            }
+            for (int j = 0; j < 5000; j++) {
+                int i = random.nextInt(1000);
+                Rectangle r = positions.get(i);
+                // mostly small moves with the occasional jump
+                float d = j % 50 == 0 ? 50 : 0.5f;
+                float x = r.x1() + (random.nextFloat() - 0.5f) * d;
+                float y = r.y1() + (random.nextFloat() - 0.5f) * d;
+                Rectangle r2 = rectangle(x, y, x + 1, y + 1);
+                tree = tree.move(Entries.entry(i, r), r2);
+                positions.put(i, r2);
+            }
+            assertEquals(1000, tree.size());
+            List<Entry<Integer, Rectangle>> list = tree.entries().toList().toBlocking().single();
+            assertEquals(1000, list.size());
+            for (Entry<Integer, Rectangle> entry : list)
+                assertEquals(positions.get(entry.value()), entry.geometry());
+            checkBounds(tree.root().get());
+        }
+    }
+
+    private static RTree<Integer, Point> grid(RTree<Integer, Point> tree) {
+        List<Entry<Integer, Point>> entries = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < 10; i++)
+            for (int j = 0; j < 10; j++)
+                entries.add(Entries.entry(i * 10 + j, point(i, j)));
+        for (Entry<Integer, Point> entry : entries)
+            tree = tree.add(entry);
+        return tree;
+    }
+
+    private static <T> boolean contains(RTree<T, Point> tree, Entry<T, Point> entry) {
+        return tree.search(entry.geometry()).contains(entry).toBlocking().single();
+    }
+
+    private static <T, S extends Geometry> void checkBounds(Node<T, S> node) {
+        if (node instanceof Leaf)
+            assertEquals(Util.mbr(((Leaf<T, S>) node).entries()), node.geometry().mbr());
+        else {
+            List<Node<T, S>> children = ((NonLeaf<T, S>) node).children();
+            assertEquals(Util.mbr(children), node.geometry().mbr());
+            for (Node<T, S> child : children)
+                checkBounds(child);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.github.davidmoten.rtree.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
+
+public class PackingHelperTest {
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(PackingHelper.class);
+    }
+
+    @Test
+    public void testParallelSortIsStableAndMatchesSequentialSort() {
+        Random r = new Random(123);
+        List<int[]> list = new ArrayList<int[]>();
+        for (int i = 0; i < 10000; i++)
+            list.add(new int[] { r.nextInt(100), i });
+        Comparator<int[]> comparator = new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+            }
+        };
+        List<int[]> expected = new ArrayList<int[]>(list);
+        Collections.sort(expected, comparator);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int chunks = 1; chunks <= 7; chunks++) {
+                assertEquals(expected,
+                        PackingHelper.sort(list, comparator, executor, chunks));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelPackingProducesSameTreeAsSequentialPacking() {
+        Random r = new Random(456);
+        List<Entry<Integer, Point>> entries = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < 50000; i++)
+            // use a coarse grid so there are plenty of ties in the sorts
+            entries.add(Entries.entry(i, Geometries.point(r.nextInt(300), r.nextInt(300))));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            RTree<Integer, Point> sequential = RTree.maxChildren(8).create(entries);
+            RTree<Integer, Point> parallel = RTree.maxChildren(8).parallel(executor)
+                    .create(entries);
+            assertEquals(sequential.size(), parallel.size());
+            assertEquals(sequential.asString(), parallel.asString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPackingOnSingleThreadedExecutorDoesNotDeadlock() {
+        List<Entry<Integer, Point>> entries = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < 20000; i++)
+            entries.add(Entries.entry(i, Geometries.point(i % 97, i % 89)));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RTree<Integer, Point> tree = RTree.maxChildren(10).parallel(executor).create(entries);
+            assertEquals(20000, (int) tree.entries().count().toBlocking().single());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
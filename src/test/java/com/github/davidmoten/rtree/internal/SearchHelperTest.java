@@ -0,0 +1,163 @@
+package com.github.davidmoten.rtree.internal;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.circle;
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.EntryVisitor;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.fbs.FactoryFlatBuffers;
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.functions.Func1;
+
+public class SearchHelperTest {
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(SearchHelper.class);
+    }
+
+    @Test
+    public void testVisitorSearchMatchesObservableSearch() {
+        RTree<Integer, Point> tree = RTree.star().maxChildren(4).create(points());
+        for (int i = 0; i < 50; i++) {
+            Rectangle r = rectangle(i, i * 2, i + 10, i * 2 + 7);
+            assertEquals(tree.search(r).toList().toBlocking().single(), visit(tree, r));
+        }
+    }
+
+    @Test
+    public void testVisitorSearchOfNonRectangleGeometriesUsesExactIntersection() {
+        RTree<Integer, Circle> tree = RTree.<Integer, Circle> create().add(1, circle(0, 0, 1))
+                .add(2, circle(10, 10, 1));
+        // overlaps the mbr of the first circle but not the circle itself
+        Rectangle r = rectangle(0.9, 0.9, 1, 1);
+        assertTrue(visit(tree, r).isEmpty());
+        assertEquals(1, visit(tree, rectangle(0, 0, 1, 1)).size());
+    }
+
+    @Test
+    public void testVisitorCanStopSearchEarly() {
+        RTree<Integer, Point> tree = RTree.maxChildren(4).create(points());
+        final List<Entry<Integer, Point>> list = new ArrayList<Entry<Integer, Point>>();
+        tree.search(rectangle(0, 0, 100, 100), new EntryVisitor<Integer, Point>() {
+            @Override
+            public boolean visit(Entry<Integer, Point> entry) {
+                list.add(entry);
+                return list.size() < 3;
+            }
+        });
+        assertEquals(3, list.size());
+    }
+
+    @Test
+    public void testVisitorSearchOfEmptyTree() {
+        RTree<Integer, Point> tree = RTree.create();
+        assertTrue(visit(tree, rectangle(0, 0, 100, 100)).isEmpty());
+    }
+
+    @Test
+    public void testVisitorSearchOfFlatBuffersTree() {
+        RTree<Integer, Point> tree = RTree.maxChildren(4)
+                .factory(new FactoryFlatBuffers<Integer, Point>(serializer(), deserializer()))
+                .create(points());
+        Rectangle r = rectangle(3, 3, 12, 20);
+        assertEquals(tree.search(r).toList().toBlocking().single(), visit(tree, r));
+    }
+
+    @Test
+    public void testSearchBatchMatchesIndividualSearches() {
+        RTree<Integer, Point> tree = RTree.star().maxChildren(4).create(points());
+        List<Rectangle> queries = new ArrayList<Rectangle>();
+        for (int i = 0; i < 200; i++)
+            queries.add(rectangle(i % 40, i % 97, i % 40 + 3, i % 97 + 5));
+        // a query that matches nothing
+        queries.add(rectangle(500, 500, 501, 501));
+        List<List<Entry<Integer, Point>>> results = tree.searchBatch(queries);
+        assertEquals(queries.size(), results.size());
+        for (int i = 0; i < queries.size(); i++)
+            assertEquals(tree.search(queries.get(i)).toList().toBlocking().single(),
+                    results.get(i));
+        assertTrue(results.get(queries.size() - 1).isEmpty());
+    }
+
+    @Test
+    public void testSearchBatchOfNonRectangleGeometriesUsesExactIntersection() {
+        RTree<Integer, Circle> tree = RTree.<Integer, Circle> create().add(1, circle(0, 0, 1))
+                .add(2, circle(10, 10, 1));
+        List<List<Entry<Integer, Circle>>> results = tree
+                .searchBatch(Arrays.asList(rectangle(0.9, 0.9, 1, 1), rectangle(0, 0, 1, 1)));
+        assertTrue(results.get(0).isEmpty());
+        assertEquals(1, results.get(1).size());
+    }
+
+    @Test
+    public void testSearchBatchOfEmptyTree() {
+        RTree<Integer, Point> tree = RTree.create();
+        List<List<Entry<Integer, Point>>> results = tree
+                .searchBatch(Arrays.asList(rectangle(0, 0, 1, 1), rectangle(0, 0, 2, 2)));
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isEmpty());
+        assertTrue(results.get(1).isEmpty());
+    }
+
+    @Test
+    public void testSearchBatchWithNoQueries() {
+        RTree<Integer, Point> tree = RTree.create(points());
+        assertTrue(tree.searchBatch(new ArrayList<Rectangle>()).isEmpty());
+    }
+
+    private static List<Entry<Integer, Point>> points() {
+        List<Entry<Integer, Point>> entries = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < 1000; i++)
+            entries.add(Entries.entry(i, point(i % 37, i % 101)));
+        return entries;
+    }
+
+    private static <S extends Geometry> List<Entry<Integer, S>> visit(RTree<Integer, S> tree,
+            Rectangle r) {
+        final List<Entry<Integer, S>> list = new ArrayList<Entry<Integer, S>>();
+        tree.search(r, new EntryVisitor<Integer, S>() {
+            @Override
+            public boolean visit(Entry<Integer, S> entry) {
+                list.add(entry);
+                return true;
+            }
+        });
+        return list;
+    }
+
+    private static Func1<Integer, byte[]> serializer() {
+        return new Func1<Integer, byte[]>() {
+            @Override
+            public byte[] call(Integer n) {
+                return String.valueOf(n).getBytes();
+            }
+        };
+    }
+
+    private static Func1<byte[], Integer> deserializer() {
+        return new Func1<byte[], Integer>() {
+            @Override
+            public Integer call(byte[] bytes) {
+                return Integer.parseInt(new String(bytes));
+            }
+        };
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.github.davidmoten.rtree.kryo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.GreekEarthquakes;
+import com.github.davidmoten.rtree.InternalStructure;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.SelectorMinimalAreaIncrease;
+import com.github.davidmoten.rtree.SelectorRStar;
+import com.github.davidmoten.rtree.Serializer;
+import com.github.davidmoten.rtree.SerializerHelper;
+import com.github.davidmoten.rtree.Serializers;
+import com.github.davidmoten.rtree.SplitterQuadratic;
+import com.github.davidmoten.rtree.SplitterRStar;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+
+import rx.Observable;
+
+public class SerializerKryoTest {
+
+    @Test
+    public void testRoundTripAllGeometryTypes() throws IOException {
+        RTree<String, Geometry> tree = RTree.star().maxChildren(4).create();
+        for (int i = 0; i < 100; i++) {
+            final Geometry g;
+            if (i % 4 == 0)
+                g = Geometries.point(i, i + 1);
+            else if (i % 4 == 1)
+                g = Geometries.rectangle(i, i + 1, i + 2, i + 3);
+            else if (i % 4 == 2)
+                g = Geometries.circle(i, i + 1, 2);
+            else
+                g = Geometries.line(i + 2, i + 1, i, i + 3);
+            tree = tree.add("item" + i, g);
+        }
+        Serializer<String, Geometry> serializer = Serializers.kryo().utf8();
+        RTree<String, Geometry> tree2 = roundTrip(serializer, tree);
+        assertEquals(tree.size(), tree2.size());
+        assertEquals(tree.calculateDepth(), tree2.calculateDepth());
+        assertEquals(tree.root().get().geometry(), tree2.root().get().geometry());
+        assertEquals(toSet(tree.entries()), toSet(tree2.entries()));
+        assertEquals(tree.asString(), tree2.asString());
+    }
+
+    @Test
+    public void testRoundTripContext() throws IOException {
+        Serializer<String, Point> serializer = Serializers.kryo().utf8();
+        RTree<String, Point> star = RTree.star().minChildren(3).maxChildren(7).create();
+        RTree<String, Point> star2 = roundTrip(serializer, star.add("a", Geometries.point(1, 2)));
+        assertEquals(3, star2.context().minChildren());
+        assertEquals(7, star2.context().maxChildren());
+        assertTrue(star2.context().selector() instanceof SelectorRStar);
+        assertTrue(star2.context().splitter() instanceof SplitterRStar);
+        RTree<String, Point> quadratic = roundTrip(serializer, RTree.<String, Point> create());
+        assertTrue(quadratic.context().selector() instanceof SelectorMinimalAreaIncrease);
+        assertTrue(quadratic.context().splitter() instanceof SplitterQuadratic);
+    }
+
+    @Test
+    public void testRoundTripEmptyTree() throws IOException {
+        Serializer<String, Point> serializer = Serializers.kryo().utf8();
+        RTree<String, Point> tree = roundTrip(serializer, RTree.<String, Point> create());
+        assertTrue(tree.isEmpty());
+        assertTrue(!tree.root().isPresent());
+    }
+
+    @Test
+    public void testRoundTripNullValue() throws IOException {
+        Serializer<String, Point> serializer = Serializers.kryo().utf8();
+        RTree<String, Point> tree = roundTrip(serializer,
+                RTree.<String, Point> create().add(null, Geometries.point(1, 2)));
+        Entry<String, Point> entry = tree.entries().toBlocking().single();
+        assertNull(entry.value());
+        assertEquals(Geometries.point(1, 2), entry.geometry());
+    }
+
+    @Test
+    public void testRoundTripJavaIoValuesThroughFile() throws IOException {
+        List<Entry<Integer, Point>> entries = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < 2000; i++)
+            entries.add(Entries.entry(i, Geometries.point(i % 47, i / 47)));
+        RTree<Integer, Point> tree = RTree.maxChildren(10).create(entries);
+        Serializer<Integer, Point> serializer = Serializers.kryo().javaIo();
+        File file = new File("target/kryo");
+        SerializerHelper.write(serializer, tree, file);
+        RTree<Integer, Point> tree2 =
+                SerializerHelper.read(serializer, file, InternalStructure.DEFAULT);
+        assertEquals(toSet(tree.entries()), toSet(tree2.entries()));
+        assertEquals(tree.asString(), tree2.asString());
+    }
+
+    @Test
+    public void testReadsOnlyTheTreeFromALargerStream() throws IOException {
+        Serializer<String, Point> serializer = Serializers.kryo().utf8();
+        RTree<String, Point> tree = RTree.<String, Point> create().add("a",
+                Geometries.point(1, 2));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write(tree, bytes);
+        int size = bytes.size();
+        bytes.write(new byte[] { 7, 8 });
+        ByteArrayInputStream is = new ByteArrayInputStream(bytes.toByteArray());
+        RTree<String, Point> tree2 = serializer.read(is, size, InternalStructure.SINGLE_ARRAY);
+        assertEquals(tree.asString(), tree2.asString());
+        assertEquals(7, is.read());
+        assertEquals(8, is.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedStreamThrows() throws IOException {
+        Serializer<String, Point> serializer = Serializers.kryo().utf8();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write(RTree.<String, Point> create().add("a", Geometries.point(1, 2)), bytes);
+        serializer.read(new ByteArrayInputStream(bytes.toByteArray()), bytes.size() + 1,
+                InternalStructure.DEFAULT);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownVersionThrows() throws IOException {
+        Serializer<String, Point> serializer = Serializers.kryo().utf8();
+        serializer.read(new ByteArrayInputStream(new byte[] { 99 }), 1,
+                InternalStructure.DEFAULT);
+    }
+
+    @Test
+    public void testCompareWithFlatBuffers() throws IOException {
+        List<Entry<String, Point>> entries = new ArrayList<Entry<String, Point>>();
+        for (Entry<Object, Point> entry : GreekEarthquakes.entries().toBlocking().toIterable())
+            entries.add(Entries.entry(String.valueOf(entries.size()), entry.geometry()));
+        RTree<String, Point> tree = RTree.star().maxChildren(10).create(entries);
+        Serializer<String, Point> kryo = Serializers.kryo().utf8();
+        Serializer<String, Point> flatBuffers = Serializers.flatBuffers().utf8();
+        for (int i = 0; i < 3; i++) {
+            long kryoSize = time("kryo", kryo, tree);
+            long flatBuffersSize = time("flatbuffers", flatBuffers, tree);
+            assertTrue(kryoSize < flatBuffersSize);
+        }
+    }
+
+    private static long time(String name, Serializer<String, Point> serializer,
+            RTree<String, Point> tree) throws IOException {
+        long t = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write(tree, bytes);
+        long written = System.nanoTime();
+        byte[] array = bytes.toByteArray();
+        RTree<String, Point> tree2 = serializer.read(new ByteArrayInputStream(array),
+                array.length, InternalStructure.DEFAULT);
+        long read = System.nanoTime();
+        assertEquals(tree.size(), tree2.size());
+        System.out.println(name + ": size=" + array.length + " bytes, written in "
+                + (written - t) / 1000000 + "ms, read in " + (read - written) / 1000000 + "ms");
+        return array.length;
+    }
+
+    private static <T, S extends Geometry> RTree<T, S> roundTrip(Serializer<T, S> serializer,
+            RTree<T, S> tree) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write(tree, bytes);
+        byte[] array = bytes.toByteArray();
+        return serializer.read(new ByteArrayInputStream(array), array.length,
+                InternalStructure.DEFAULT);
+    }
+
+    private static <T, S extends Geometry> Set<Entry<T, S>> toSet(
+            Observable<Entry<T, S>> entries) {
+        return new HashSet<Entry<T, S>>(entries.toList().toBlocking().single());
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.github.davidmoten.rtree.offheap;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.circle;
+import static com.github.davidmoten.rtree.geometry.Geometries.line;
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+public class FactoryOffHeapTest {
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(OffHeapHelper.class);
+    }
+
+    @Test
+    public void testBulkLoadedSearchMatchesDefaultFactory() {
+        List<Entry<Integer, Point>> entries = points(3000);
+        RTree<Integer, Point> expected = RTree.maxChildren(4).create(entries);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(FactoryOffHeapTest.<Point> factory())
+                .create(entries);
+        assertTrue(tree.root().get() instanceof NonLeafOffHeap);
+        checkSearches(expected, tree);
+        assertEquals(toSet(expected.entries()), toSet(tree.entries()));
+    }
+
+    @Test
+    public void testAddedOneAtATimeSearchMatchesDefaultFactory() {
+        Random random = new Random(2);
+        RTree<Integer, Geometry> expected = RTree.star().maxChildren(4).create();
+        RTree<Integer, Geometry> tree = RTree.star().maxChildren(4)
+                .factory(FactoryOffHeapTest.<Geometry> factory()).create();
+        for (int i = 0; i < 1000; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            final Geometry g;
+            if (i % 4 == 0)
+                g = point(x, y);
+            else if (i % 4 == 1)
+                g = rectangle(x, y, x + random.nextFloat() * 5, y + random.nextFloat() * 5);
+            else if (i % 4 == 2)
+                g = circle(x, y, random.nextFloat() * 3);
+            else
+                g = line(x, y, x - random.nextFloat() * 5, y + random.nextFloat() * 5);
+            expected = expected.add(i, g);
+            tree = tree.add(i, g);
+        }
+        checkSearches(expected, tree);
+    }
+
+    @Test
+    public void testDeleteAndNearest() {
+        List<Entry<Integer, Point>> entries = points(500);
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(FactoryOffHeapTest.<Point> factory())
+                .create(entries);
+        for (int i = 0; i < 250; i++)
+            tree = tree.delete(entries.get(i));
+        assertEquals(250, tree.size());
+        RTree<Integer, Point> expected = RTree.maxChildren(4).create(entries.subList(250, 500));
+        assertEquals(toSet(expected.entries()), toSet(tree.entries()));
+        Point p = point(50, 50);
+        assertEquals(toSet(expected.nearest(p, 10, 20)), toSet(tree.nearest(p, 10, 20)));
+        assertEquals(toSet(expected.search(p, 10)), toSet(tree.search(p, 10)));
+    }
+
+    @Test
+    public void testNullValue() {
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(FactoryOffHeapTest.<Point> factory())
+                .<Integer, Point> create().add(null, point(1, 2));
+        Entry<Integer, Point> entry = tree.entries().toBlocking().single();
+        assertNull(entry.value());
+        assertEquals(point(1, 2), entry.geometry());
+    }
+
+    @Test
+    public void testSmallChunksAndCustomAllocator() {
+        final AtomicInteger allocations = new AtomicInteger();
+        Arena arena = new Arena(100, new Func1<Integer, ByteBuffer>() {
+            @Override
+            public ByteBuffer call(Integer size) {
+                allocations.incrementAndGet();
+                return ByteBuffer.allocate(size);
+            }
+        });
+        List<Entry<Integer, Point>> entries = points(1000);
+        RTree<Integer, Point> tree = RTree.maxChildren(8)
+                .factory(new FactoryOffHeap<Integer, Point>(arena, SERIALIZER, DESERIALIZER))
+                .create(entries);
+        assertEquals(arena.chunks(), allocations.get());
+        assertTrue(arena.chunks() > 1);
+        assertTrue(arena.bytesAllocated() > 1000 * OffHeapHelper.ENTRY_SIZE);
+        checkSearches(RTree.maxChildren(8).create(entries), tree);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedGeometryThrows() {
+        Geometry g = new Geometry() {
+
+            @Override
+            public double distance(Rectangle r) {
+                return 0;
+            }
+
+            @Override
+            public Rectangle mbr() {
+                return rectangle(0, 0, 1, 1);
+            }
+
+            @Override
+            public boolean intersects(Rectangle r) {
+                return true;
+            }
+        };
+        RTree.maxChildren(4).factory(FactoryOffHeapTest.<Geometry> factory()).<Integer, Geometry> create().add(1, g);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChildrenFromAnotherArenaThrows() {
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(FactoryOffHeapTest.<Point> factory())
+                .<Integer, Point> create().add(1, point(1, 2));
+        FactoryOffHeap<Integer, Point> other = factory();
+        other.createNonLeaf(Collections.singletonList(tree.root().get()), null);
+    }
+
+    @Test
+    public void testSearchStopsOnUnsubscribe() {
+        RTree<Integer, Point> tree = RTree.maxChildren(4).factory(FactoryOffHeapTest.<Point> factory())
+                .create(points(1000));
+        assertEquals(3, (int) tree.search(rectangle(0, 0, 100, 100)).take(3).count().toBlocking()
+                .single());
+        assertFalse(tree.search(rectangle(200, 200, 300, 300)).count().toBlocking().single() > 0);
+    }
+
+    private static final Func1<Integer, byte[]> SERIALIZER = new Func1<Integer, byte[]>() {
+        @Override
+        public byte[] call(Integer n) {
+            return ByteBuffer.allocate(4).putInt(n).array();
+        }
+    };
+
+    private static final Func1<byte[], Integer> DESERIALIZER = new Func1<byte[], Integer>() {
+        @Override
+        public Integer call(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    private static <S extends Geometry> FactoryOffHeap<Integer, S> factory() {
+        return new FactoryOffHeap<Integer, S>(SERIALIZER, DESERIALIZER);
+    }
+
+    private static <T, S extends Geometry> void checkSearches(RTree<T, S> expected,
+            RTree<T, S> tree) {
+        assertEquals(expected.size(), tree.size());
+        Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            Rectangle r = rectangle(x, y, x + random.nextFloat() * 20, y + random.nextFloat() * 20);
+            assertEquals(toSet(expected.search(r)), toSet(tree.search(r)));
+        }
+    }
+
+    private static <T, S extends Geometry> Set<Entry<T, S>> toSet(
+            Observable<Entry<T, S>> entries) {
+        return new HashSet<Entry<T, S>>(entries.toList().toBlocking().single());
+    }
+
+    private static List<Entry<Integer, Point>> points(int n) {
+        Random random = new Random(1);
+        List<Entry<Integer, Point>> list = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < n; i++)
+            list.add(Entries.entry(i, point(random.nextFloat() * 100, random.nextFloat() * 100)));
+        return list;
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.github.davidmoten.rtree.paged;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.circle;
+import static com.github.davidmoten.rtree.geometry.Geometries.line;
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+public class FactoryPagedTest {
+
+    private static final File FILE = new File("target/paged");
+
+    @Test
+    public void isUtilityClass() {
+        Asserts.assertIsUtilityClass(PagedHelper.class);
+    }
+
+    @Test
+    public void testBulkLoadedSearchMatchesDefaultFactory() throws IOException {
+        PageFile file = new PageFile(FILE);
+        try {
+            List<Entry<Integer, Point>> entries = points(3000);
+            RTree<Integer, Point> expected = RTree.maxChildren(4).create(entries);
+            RTree<Integer, Point> tree = RTree.maxChildren(4)
+                    .factory(FactoryPagedTest.<Point> factory(file)).create(entries);
+            assertTrue(tree.root().get() instanceof NonLeafPaged);
+            checkSearches(expected, tree);
+            assertEquals(toSet(expected.entries()), toSet(tree.entries()));
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void testAddedOneAtATimeWithSmallCacheMatchesDefaultFactory() throws IOException {
+        PageFile file = new PageFile(FILE, 256, 8);
+        try {
+            Random random = new Random(2);
+            RTree<Integer, Geometry> expected = RTree.star().maxChildren(4).create();
+            RTree<Integer, Geometry> tree = RTree.star().maxChildren(4)
+                    .factory(FactoryPagedTest.<Geometry> factory(file)).create();
+            for (int i = 0; i < 1000; i++) {
+                float x = random.nextFloat() * 100;
+                float y = random.nextFloat() * 100;
+                final Geometry g;
+                if (i % 4 == 0)
+                    g = point(x, y);
+                else if (i % 4 == 1)
+                    g = rectangle(x, y, x + random.nextFloat() * 5, y + random.nextFloat() * 5);
+                else if (i % 4 == 2)
+                    g = circle(x, y, random.nextFloat() * 3);
+                else
+                    g = line(x, y, x - random.nextFloat() * 5, y + random.nextFloat() * 5);
+                expected = expected.add(i, g);
+                tree = tree.add(i, g);
+            }
+            checkSearches(expected, tree);
+            assertTrue(file.residentPages() <= 8);
+            assertTrue(file.evictions() > 0);
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void testDeleteAndNearest() throws IOException {
+        PageFile file = new PageFile(FILE);
+        try {
+            List<Entry<Integer, Point>> entries = points(500);
+            RTree<Integer, Point> tree = RTree.maxChildren(4)
+                    .factory(FactoryPagedTest.<Point> factory(file)).create(entries);
+            for (int i = 0; i < 250; i++)
+                tree = tree.delete(entries.get(i));
+            assertEquals(250, tree.size());
+            RTree<Integer, Point> expected = RTree.maxChildren(4)
+                    .create(entries.subList(250, 500));
+            assertEquals(toSet(expected.entries()), toSet(tree.entries()));
+            Point p = point(50, 50);
+            assertEquals(toSet(expected.nearest(p, 10, 20)), toSet(tree.nearest(p, 10, 20)));
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void testSearchFaultsInOnlyTouchedPages() throws IOException {
+        PageFile file = new PageFile(FILE, 1024, 1000);
+        try {
+            RTree<Integer, Point> tree = RTree.maxChildren(8)
+                    .factory(FactoryPagedTest.<Point> factory(file)).create(points(10000));
+            long pages = file.pages();
+            file.clearCache();
+            file.resetCounters();
+            assertEquals(0, file.residentPages());
+            int found = tree.search(rectangle(10, 10, 12, 12)).count().toBlocking().single();
+            assertTrue(found > 0);
+            assertTrue(file.misses() > 0);
+            assertTrue(file.residentPages() < pages / 20);
+            long misses = file.misses();
+            // the same search again is served from the cache
+            tree.search(rectangle(10, 10, 12, 12)).count().toBlocking().single();
+            assertEquals(misses, file.misses());
+            assertTrue(file.hits() > 0);
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void testRecordsSpanningSeveralPagesAndNullValues() throws IOException {
+        PageFile file = new PageFile(FILE, 64, 4);
+        try {
+            List<Entry<Integer, Point>> entries = new ArrayList<Entry<Integer, Point>>();
+            entries.add(Entries.<Integer, Point> entry(null, point(1, 2)));
+            entries.addAll(points(200));
+            RTree<Integer, Point> tree = RTree.maxChildren(16)
+                    .factory(FactoryPagedTest.<Point> factory(file)).create(entries);
+            file.clearCache();
+            assertEquals(toSet(RTree.maxChildren(16).create(entries).entries()),
+                    toSet(tree.entries()));
+            Entry<Integer, Point> entry = tree.search(rectangle(1, 2, 1, 2)).toBlocking().first();
+            assertNull(entry.value());
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChildrenFromAnotherPageFileThrows() throws IOException {
+        PageFile file = new PageFile(FILE);
+        PageFile other = new PageFile(new File("target/paged2"));
+        try {
+            RTree<Integer, Point> tree = RTree.maxChildren(4)
+                    .factory(FactoryPagedTest.<Point> factory(file)).<Integer, Point> create()
+                    .add(1, point(1, 2));
+            FactoryPagedTest.<Point> factory(other)
+                    .createNonLeaf(Collections.singletonList(tree.root().get()), null);
+        } finally {
+            file.close();
+            other.close();
+        }
+    }
+
+    private static final Func1<Integer, byte[]> SERIALIZER = new Func1<Integer, byte[]>() {
+        @Override
+        public byte[] call(Integer n) {
+            return ByteBuffer.allocate(4).putInt(n).array();
+        }
+    };
+
+    private static final Func1<byte[], Integer> DESERIALIZER = new Func1<byte[], Integer>() {
+        @Override
+        public Integer call(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    private static <S extends Geometry> FactoryPaged<Integer, S> factory(PageFile file) {
+        return new FactoryPaged<Integer, S>(file, SERIALIZER, DESERIALIZER);
+    }
+
+    private static <T, S extends Geometry> void checkSearches(RTree<T, S> expected,
+            RTree<T, S> tree) {
+        assertEquals(expected.size(), tree.size());
+        Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            Rectangle r = rectangle(x, y, x + random.nextFloat() * 20, y + random.nextFloat() * 20);
+            assertEquals(toSet(expected.search(r)), toSet(tree.search(r)));
+        }
+    }
+
+    private static <T, S extends Geometry> Set<Entry<T, S>> toSet(
+            Observable<Entry<T, S>> entries) {
+        return new HashSet<Entry<T, S>>(entries.toList().toBlocking().single());
+    }
+
+    private static List<Entry<Integer, Point>> points(int n) {
+        Random random = new Random(1);
+        List<Entry<Integer, Point>> list = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < n; i++)
+            list.add(Entries.entry(i, point(random.nextFloat() * 100, random.nextFloat() * 100)));
+        return list;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.github.davidmoten.rtree.quantized;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Lz4Test {
+
+    @Test
+    public void testRoundTripShortInputs() {
+        Random random = new Random(1);
+        for (int length = 0; length < 40; length++) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = (byte) random.nextInt(3);
+            checkRoundTrip(bytes);
+        }
+    }
+
+    @Test
+    public void testRoundTripRepetitiveInputIsSmaller() {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            s.append("item").append(i % 50).append(',');
+        byte[] bytes = s.toString().getBytes();
+        byte[] compressed = checkRoundTrip(bytes);
+        assertTrue(compressed.length < bytes.length / 4);
+    }
+
+    @Test
+    public void testRoundTripLongRunsAndLongLiterals() {
+        Random random = new Random(2);
+        // random literals longer than 15 + 255 then a long overlapping run
+        byte[] bytes = new byte[5000];
+        for (int i = 0; i < 1000; i++)
+            bytes[i] = (byte) random.nextInt();
+        for (int i = 1000; i < 4000; i++)
+            bytes[i] = 7;
+        for (int i = 4000; i < bytes.length; i++)
+            bytes[i] = (byte) random.nextInt();
+        checkRoundTrip(bytes);
+    }
+
+    @Test
+    public void testRoundTripRandomInput() {
+        Random random = new Random(3);
+        byte[] bytes = new byte[100000];
+        random.nextBytes(bytes);
+        byte[] compressed = checkRoundTrip(bytes);
+        assertTrue(compressed.length <= bytes.length + bytes.length / 255 + 16);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDecompressToWrongLengthThrows() {
+        byte[] compressed = Lz4.compress(new byte[100], 100);
+        Lz4.decompress(ByteBuffer.wrap(compressed), 0, compressed.length, new byte[99]);
+    }
+
+    private static byte[] checkRoundTrip(byte[] bytes) {
+        byte[] compressed = Lz4.compress(bytes, bytes.length);
+        // decompress from a position other than zero
+        ByteBuffer bb = ByteBuffer.allocate(compressed.length + 3);
+        bb.position(3);
+        bb.put(compressed);
+        byte[] result = new byte[bytes.length];
+        Lz4.decompress(bb, 3, compressed.length, result);
+        assertArrayEquals(bytes, result);
+        return compressed;
+    }
+
+}
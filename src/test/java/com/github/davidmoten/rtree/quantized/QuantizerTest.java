@@ -0,0 +1,48 @@
+package com.github.davidmoten.rtree.quantized;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QuantizerTest {
+
+    @Test
+    public void testQuantizationIsConservative() {
+        Random random = new Random(4);
+        for (int max : new int[] { 255, 65535 }) {
+            for (int i = 0; i < 100000; i++) {
+                float p1 = (random.nextFloat() - 0.5f) * 1000;
+                float p2 = p1 + random.nextFloat() * 10;
+                float a = p1 + random.nextFloat() * (p2 - p1);
+                float b = p1 + random.nextFloat() * (p2 - p1);
+                float v1 = Math.min(a, b);
+                float v2 = Math.max(a, b);
+                int q1 = Quantizer.low(v1, p1, p2, max);
+                int q2 = Quantizer.high(v2, p1, p2, max);
+                assertTrue(Quantizer.value(q1, p1, p2, max) <= v1);
+                assertTrue(Quantizer.value(q2, p1, p2, max) >= v2);
+                assertTrue(q1 <= q2);
+            }
+        }
+    }
+
+    @Test
+    public void testEndsAreExact() {
+        assertEquals(1.1f, Quantizer.value(0, 1.1f, 7.3f, 255), 0);
+        assertEquals(7.3f, Quantizer.value(255, 1.1f, 7.3f, 255), 0);
+        assertEquals(255, Quantizer.high(7.3f, 1.1f, 7.3f, 255));
+        assertEquals(0, Quantizer.low(1.1f, 1.1f, 7.3f, 255));
+    }
+
+    @Test
+    public void testDegenerateInterval() {
+        assertEquals(0, Quantizer.low(2, 2, 2, 255));
+        assertEquals(255, Quantizer.high(2, 2, 2, 255));
+        assertEquals(2, Quantizer.value(0, 2, 2, 255), 0);
+        assertEquals(2, Quantizer.value(255, 2, 2, 255), 0);
+    }
+
+}
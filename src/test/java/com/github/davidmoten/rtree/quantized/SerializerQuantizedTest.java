@@ -0,0 +1,222 @@
+package com.github.davidmoten.rtree.quantized;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.Entries;
+import com.github.davidmoten.rtree.Entry;
+import com.github.davidmoten.rtree.GreekEarthquakes;
+import com.github.davidmoten.rtree.InternalStructure;
+import com.github.davidmoten.rtree.RTree;
+import com.github.davidmoten.rtree.SelectorRStar;
+import com.github.davidmoten.rtree.Serializer;
+import com.github.davidmoten.rtree.SerializerHelper;
+import com.github.davidmoten.rtree.Serializers;
+import com.github.davidmoten.rtree.SplitterRStar;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+import rx.Observable;
+
+public class SerializerQuantizedTest {
+
+    @Test
+    public void testRoundTripAllGeometryTypes() throws IOException {
+        RTree<String, Geometry> tree = RTree.star().maxChildren(6).create(geometries(3000, 1));
+        for (int bits : new int[] { 8, 16 })
+            for (boolean compress : new boolean[] { false, true }) {
+                Serializer<String, Geometry> serializer = Serializers.quantized()
+                        .quantizationBits(bits).compress(compress).utf8();
+                for (InternalStructure structure : InternalStructure.values())
+                    checkSame(tree, roundTrip(serializer, tree, structure));
+            }
+    }
+
+    @Test
+    public void testReadFromFileSearchesInPlace() throws IOException {
+        RTree<String, Geometry> tree = RTree.maxChildren(4).create(geometries(2000, 2));
+        Serializer<String, Geometry> serializer = Serializers.quantized().quantizationBits(8)
+                .compress(true).utf8();
+        File file = new File("target/quantized");
+        SerializerHelper.write(serializer, tree, file);
+        RTree<String, Geometry> tr =
+                SerializerHelper.read(serializer, file, InternalStructure.SINGLE_ARRAY);
+        assertTrue(tr.root().get() instanceof NonLeafQuantized);
+        checkSame(tree, tr);
+        // additions and deletions combine buffer nodes with default nodes
+        Entry<String, Geometry> first = tree.entries().toBlocking().first();
+        RTree<String, Geometry> tr2 = tr.delete(first).add("extra", Geometries.point(50, 50));
+        assertEquals(tree.size(), tr2.size());
+        assertFalse(toSet(tr2.entries()).contains(first));
+        assertTrue(toSet(tr2.search(Geometries.rectangle(49.99, 49.99, 50.01, 50.01)))
+                .contains(Entries.entry("extra", Geometries.point(50, 50))));
+    }
+
+    @Test
+    public void testRoundTripContext() throws IOException {
+        RTree<String, Point> tree = RTree.star().minChildren(3).maxChildren(7).<String, Point> create()
+                .add("a", Geometries.point(1, 2));
+        RTree<String, Point> tr = roundTrip(Serializers.quantized().<Point> utf8(), tree,
+                InternalStructure.DEFAULT);
+        assertEquals(3, tr.context().minChildren());
+        assertEquals(7, tr.context().maxChildren());
+        assertTrue(tr.context().selector() instanceof SelectorRStar);
+        assertTrue(tr.context().splitter() instanceof SplitterRStar);
+    }
+
+    @Test
+    public void testRoundTripEmptyTree() throws IOException {
+        for (InternalStructure structure : InternalStructure.values()) {
+            RTree<String, Point> tr = roundTrip(Serializers.quantized().<Point> utf8(),
+                    RTree.<String, Point> create(), structure);
+            assertTrue(tr.isEmpty());
+            assertFalse(tr.root().isPresent());
+        }
+    }
+
+    @Test
+    public void testNullAndLargeValuesSpanningBlocks() throws IOException {
+        List<Entry<String, Point>> entries = new ArrayList<Entry<String, Point>>();
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 3 * SerializerQuantized.BLOCK_SIZE; i++)
+            big.append((char) ('a' + i % 26));
+        for (int i = 0; i < 500; i++) {
+            final String value;
+            if (i % 7 == 0)
+                value = null;
+            else if (i % 100 == 1)
+                value = big.toString() + i;
+            else
+                value = "v" + i;
+            entries.add(Entries.entry(value, Geometries.point(i, i % 13)));
+        }
+        RTree<String, Point> tree = RTree.maxChildren(5).create(entries);
+        for (boolean compress : new boolean[] { false, true })
+            for (InternalStructure structure : InternalStructure.values()) {
+                RTree<String, Point> tr = roundTrip(
+                        Serializers.quantized().compress(compress).<Point> utf8(), tree,
+                        structure);
+                assertEquals(toSet(tree.entries()), toSet(tr.entries()));
+            }
+    }
+
+    @Test
+    public void testNullValueOfLeafRoot() throws IOException {
+        RTree<String, Point> tree = RTree.<String, Point> create().add(null,
+                Geometries.point(1, 2));
+        RTree<String, Point> tr = roundTrip(Serializers.quantized().<Point> utf8(), tree,
+                InternalStructure.SINGLE_ARRAY);
+        assertTrue(tr.root().get() instanceof LeafQuantized);
+        assertNull(tr.entries().toBlocking().single().value());
+        assertEquals(1, (int) tr.search(Geometries.rectangle(0, 0, 5, 5)).count().toBlocking()
+                .single());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOtherFormatThrows() throws IOException {
+        byte[] bytes = new byte[100];
+        Serializers.quantized().<Point> utf8().read(new ByteArrayInputStream(bytes),
+                bytes.length, InternalStructure.DEFAULT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedBitsThrows() {
+        Serializers.quantized().quantizationBits(12);
+    }
+
+    @Test
+    public void testSmallerThanFlatBuffers() throws IOException {
+        List<Entry<String, Point>> entries = new ArrayList<Entry<String, Point>>();
+        for (Entry<Object, Point> entry : GreekEarthquakes.entries().toBlocking().toIterable())
+            entries.add(Entries.entry("quake" + entries.size(), entry.geometry()));
+        RTree<String, Point> tree = RTree.star().maxChildren(10).create(entries);
+        int flatBuffers = size(Serializers.flatBuffers().<Point> utf8(), tree);
+        int quantized16 = size(Serializers.quantized().<Point> utf8(), tree);
+        int quantized8 = size(Serializers.quantized().quantizationBits(8).<Point> utf8(), tree);
+        int compressed = size(
+                Serializers.quantized().quantizationBits(8).compress(true).<Point> utf8(), tree);
+        System.out.println("flatbuffers=" + flatBuffers + ", quantized16=" + quantized16
+                + ", quantized8=" + quantized8 + ", quantized8 compressed=" + compressed);
+        assertTrue(quantized16 < flatBuffers);
+        assertTrue(quantized8 < quantized16);
+        assertTrue(compressed < quantized8);
+    }
+
+    private static <S extends Geometry> int size(Serializer<String, S> serializer,
+            RTree<String, S> tree) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write(tree, bytes);
+        return bytes.size();
+    }
+
+    private static void checkSame(RTree<String, Geometry> tree, RTree<String, Geometry> tr) {
+        assertEquals(tree.size(), tr.size());
+        assertEquals(tree.calculateDepth(), tr.calculateDepth());
+        assertEquals(toSet(tree.entries()), toSet(tr.entries()));
+        // the bounds of the root are stored exactly
+        assertEquals(tree.root().get().geometry().mbr(), tr.root().get().geometry().mbr());
+        Random random = new Random(5);
+        for (int i = 0; i < 50; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            Rectangle r = Geometries.rectangle(x, y, x + random.nextFloat() * 15,
+                    y + random.nextFloat() * 15);
+            assertEquals(toSet(tree.search(r)), toSet(tr.search(r)));
+            // a criterion other than rectangle intersection
+            assertEquals(toSet(tree.search(r, 2)), toSet(tr.search(r, 2)));
+        }
+    }
+
+    private static <S extends Geometry> RTree<String, S> roundTrip(
+            Serializer<String, S> serializer, RTree<String, S> tree, InternalStructure structure)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write(tree, bytes);
+        byte[] array = bytes.toByteArray();
+        return serializer.read(new ByteArrayInputStream(array), array.length, structure);
+    }
+
+    private static List<Entry<String, Geometry>> geometries(int n, long seed) {
+        Random random = new Random(seed);
+        List<Entry<String, Geometry>> entries = new ArrayList<Entry<String, Geometry>>();
+        for (int i = 0; i < n; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            final Geometry g;
+            if (i % 4 == 0)
+                g = Geometries.point(x, y);
+            else if (i % 4 == 1)
+                g = Geometries.rectangle(x, y, x + random.nextFloat() * 3,
+                        y + random.nextFloat() * 3);
+            else if (i % 4 == 2)
+                g = Geometries.circle(x, y, random.nextFloat() * 3);
+            else
+                g = Geometries.line(x, y, x + random.nextFloat() * 6 - 3,
+                        y + random.nextFloat() * 6 - 3);
+            entries.add(Entries.entry("item" + i, g));
+        }
+        return entries;
+    }
+
+    private static <S extends Geometry> Set<Entry<String, S>> toSet(
+            Observable<Entry<String, S>> entries) {
+        return new HashSet<Entry<String, S>>(entries.toList().toBlocking().single());
+    }
+
+}